@@ -0,0 +1,48 @@
+package com.ratelimiter.algorithm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up the algorithm bean configured for a service
+ */
+@Slf4j
+@Component
+public class AlgorithmRegistry {
+
+    private final Map<AlgorithmType, RateLimitAlgorithm> algorithms = new EnumMap<>(AlgorithmType.class);
+
+    public AlgorithmRegistry(List<RateLimitAlgorithm> algorithms) {
+        for (RateLimitAlgorithm algorithm : algorithms) {
+            this.algorithms.put(algorithm.getType(), algorithm);
+        }
+        log.info("Registered rate limit algorithms: {}", this.algorithms.keySet());
+    }
+
+    /**
+     * Get the algorithm for a type, token bucket when the service did not set one
+     */
+    public RateLimitAlgorithm get(AlgorithmType type) {
+        RateLimitAlgorithm algorithm = algorithms.get(type == null ? AlgorithmType.TOKEN_BUCKET : type);
+        if (algorithm == null) {
+            throw new IllegalArgumentException("No rate limit algorithm registered for: " + type);
+        }
+        return algorithm;
+    }
+
+    public Collection<RateLimitAlgorithm> getAll() {
+        return algorithms.values();
+    }
+
+    /**
+     * Reset a key under every algorithm, since the admin API does not know which one a service used
+     */
+    public void resetAll(String key) {
+        algorithms.values().forEach(algorithm -> algorithm.reset(key));
+    }
+}
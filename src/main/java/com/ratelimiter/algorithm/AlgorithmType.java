@@ -0,0 +1,12 @@
+package com.ratelimiter.algorithm;
+
+/**
+ * Rate limit algorithms a service can choose in application.yml
+ */
+public enum AlgorithmType {
+    TOKEN_BUCKET,
+    FIXED_WINDOW,
+    SLIDING_WINDOW_LOG,
+    SLIDING_WINDOW_COUNTER,
+    GCRA
+}
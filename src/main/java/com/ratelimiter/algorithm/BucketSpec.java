@@ -0,0 +1,13 @@
+package com.ratelimiter.algorithm;
+
+import lombok.Value;
+
+/**
+ * A single bucket to evaluate: Redis key plus its limit and window
+ */
+@Value
+public class BucketSpec {
+    String key;
+    int limit;
+    int windowSeconds;
+}
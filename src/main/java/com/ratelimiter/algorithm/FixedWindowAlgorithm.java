@@ -0,0 +1,88 @@
+package com.ratelimiter.algorithm;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed window counter: one integer per key that expires with the window.
+ * Cheapest option, but allows up to twice the limit around a window boundary.
+ */
+@Component
+public class FixedWindowAlgorithm extends RedisScriptAlgorithm {
+
+    /**
+     * ARGV[1] is the current time in ms, then (limit, window_ms) for each key.
+     * The window starts with the first request and ends when the key expires.
+     */
+    private static final String LUA_SCRIPT =
+            "local now = tonumber(ARGV[1]) " +
+                    "local counts = {} " +
+                    "local ttls = {} " +
+                    "local allowed = 1 " +
+
+                    "for i = 1, #KEYS do " +
+                    "  local limit = tonumber(ARGV[i * 2]) " +
+                    "  counts[i] = tonumber(redis.call('GET', KEYS[i]) or '0') " +
+                    "  ttls[i] = redis.call('PTTL', KEYS[i]) " +
+                    "  if counts[i] >= limit then " +
+                    "    allowed = 0 " +
+                    "  end " +
+                    "end " +
+
+                    "local result = {allowed} " +
+                    "for i = 1, #KEYS do " +
+                    "  local limit = tonumber(ARGV[i * 2]) " +
+                    "  local window = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local count = counts[i] " +
+                    "  local ttl = ttls[i] " +
+                    "  if allowed == 1 then " +
+                    "    count = redis.call('INCR', KEYS[i]) " +
+                    "    if ttl < 0 then " +
+                    "      redis.call('PEXPIRE', KEYS[i], window) " +
+                    "    end " +
+                    "  end " +
+                    "  if ttl < 0 then " +
+                    "    ttl = window " +
+                    "  end " +
+                    "  local key_allowed = 0 " +
+                    "  if counts[i] < limit then " +
+                    "    key_allowed = 1 " +
+                    "  end " +
+                    "  table.insert(result, key_allowed) " +
+                    "  table.insert(result, math.max(0, limit - count)) " +
+                    "  table.insert(result, now + ttl) " +
+                    "end " +
+                    "return result";
+
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(LUA_SCRIPT, List.class);
+
+    @Override
+    public AlgorithmType getType() {
+        return AlgorithmType.FIXED_WINDOW;
+    }
+
+    @Override
+    public RedisScript<List> getScript() {
+        return SCRIPT;
+    }
+
+    @Override
+    protected String getKeySuffix() {
+        return ":fw";
+    }
+
+    @Override
+    public List<String> buildArgs(List<BucketSpec> buckets, long nowMillis) {
+        List<String> args = new ArrayList<>(1 + buckets.size() * 2);
+        args.add(String.valueOf(nowMillis));
+        for (BucketSpec bucket : buckets) {
+            args.add(String.valueOf(bucket.getLimit()));
+            args.add(String.valueOf(bucket.getWindowSeconds() * 1000L));
+        }
+        return args;
+    }
+}
@@ -0,0 +1,91 @@
+package com.ratelimiter.algorithm;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generic Cell Rate Algorithm: same behaviour as a token bucket with the
+ * limit as burst, but the whole state is one integer per key, the
+ * theoretical arrival time (TAT) in ms, written with a single SET ... PX.
+ * Millisecond time keeps per-second limits from bursting within a second.
+ */
+@Component
+public class GcraAlgorithm extends RedisScriptAlgorithm {
+
+    /**
+     * ARGV[1] is the current time in ms, then (limit, emission_interval_ms) for each key.
+     * A request is allowed if max(tat, now) + interval stays within limit * interval of now.
+     * The key expires when the TAT passes, since a missing key means a full bucket.
+     */
+    private static final String LUA_SCRIPT =
+            "local now = tonumber(ARGV[1]) " +
+                    "local new_tats = {} " +
+                    "local allow_ats = {} " +
+                    "local allowed = 1 " +
+
+                    "for i = 1, #KEYS do " +
+                    "  local limit = tonumber(ARGV[i * 2]) " +
+                    "  local interval = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local tat = tonumber(redis.call('GET', KEYS[i]) or now) " +
+                    "  new_tats[i] = math.max(tat, now) + interval " +
+                    "  allow_ats[i] = new_tats[i] - interval * limit " +
+                    "  if now < allow_ats[i] then " +
+                    "    allowed = 0 " +
+                    "  end " +
+                    "end " +
+
+                    "local result = {allowed} " +
+                    "for i = 1, #KEYS do " +
+                    "  local interval = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local key_allowed = 0 " +
+                    "  local reset_at " +
+                    "  if now >= allow_ats[i] then " +
+                    "    key_allowed = 1 " +
+                    "    reset_at = new_tats[i] " +
+                    "  else " +
+                    "    reset_at = allow_ats[i] " +
+                    "  end " +
+                    "  if allowed == 1 then " +
+                    "    local new_tat = math.floor(new_tats[i] + 0.5) " +
+                    "    redis.call('SET', KEYS[i], new_tat, 'PX', math.max(1, new_tat - now)) " +
+                    "  end " +
+                    "  table.insert(result, key_allowed) " +
+                    "  table.insert(result, math.max(0, math.floor((now - allow_ats[i]) / interval))) " +
+                    "  table.insert(result, math.ceil(reset_at)) " +
+                    "end " +
+                    "return result";
+
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(LUA_SCRIPT, List.class);
+
+    @Override
+    public AlgorithmType getType() {
+        return AlgorithmType.GCRA;
+    }
+
+    @Override
+    public RedisScript<List> getScript() {
+        return SCRIPT;
+    }
+
+    @Override
+    protected String getKeySuffix() {
+        return ":gcra";
+    }
+
+    @Override
+    public List<String> buildArgs(List<BucketSpec> buckets, long nowMillis) {
+        List<String> args = new ArrayList<>(1 + buckets.size() * 2);
+        args.add(String.valueOf(nowMillis));
+        for (BucketSpec bucket : buckets) {
+            // Time between requests at a steady rate, e.g. 60 requests / 60s = one every 1000 ms
+            double emissionInterval = bucket.getWindowSeconds() * 1000.0 / bucket.getLimit();
+            args.add(String.valueOf(bucket.getLimit()));
+            args.add(String.valueOf(emissionInterval));
+        }
+        return args;
+    }
+}
@@ -0,0 +1,13 @@
+package com.ratelimiter.algorithm;
+
+import lombok.Value;
+
+/**
+ * Result of leasing a block of tokens from a Redis bucket
+ */
+@Value
+public class LeaseGrant {
+    long granted;
+    long remaining;
+    long resetAtMillis;
+}
@@ -0,0 +1,29 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.responseDto.RateLimiterResponse;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A rate limit algorithm backed by Redis.
+ * Implementations are Spring beans and are picked per service by {@link AlgorithmType}.
+ */
+public interface RateLimitAlgorithm {
+
+    AlgorithmType getType();
+
+    /**
+     * Check several buckets atomically in one Redis round trip.
+     * The request is only counted against the buckets if all of them allow it.
+     * Returns one response per bucket, in the same order as the specs.
+     * Throws RedisUnavailableException if Redis could not decide.
+     */
+    List<RateLimiterResponse> isAllowed(List<BucketSpec> buckets);
+
+    default RateLimiterResponse isAllowed(String key, int limit, int windowSeconds) {
+        return isAllowed(Collections.singletonList(new BucketSpec(key, limit, windowSeconds))).get(0);
+    }
+
+    void reset(String key);
+}
@@ -0,0 +1,127 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.exception.RedisUnavailableException;
+import com.ratelimiter.metrics.RateLimiterMetrics;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base for algorithms that run as one Lua script over all buckets of a request.
+ *
+ * Every script returns {allowed, then (key_allowed, remaining, reset_at) per key},
+ * with reset_at in Unix milliseconds, so running and parsing is shared here and
+ * subclasses only supply the script and its arguments.
+ */
+@Slf4j
+public abstract class RedisScriptAlgorithm implements RateLimitAlgorithm {
+
+    private static final int FIELDS_PER_KEY = 3;
+
+    @Autowired
+    protected RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    protected RedisScriptExecutor scriptExecutor;
+
+    @Autowired
+    protected RateLimiterMetrics rateLimiterMetrics;
+
+    private volatile Timer scriptTimer;
+
+    public abstract RedisScript<List> getScript();
+
+    /**
+     * Script arguments for the buckets, after the keys
+     */
+    public abstract List<String> buildArgs(List<BucketSpec> buckets, long nowMillis);
+
+    /**
+     * Algorithms store different Redis types, so each one gets its own key
+     * and switching a service's algorithm never hits a WRONGTYPE error
+     */
+    protected String getKeySuffix() {
+        return "";
+    }
+
+    /**
+     * Timer for the rate limit script of this algorithm
+     */
+    public Timer getScriptTimer() {
+        Timer timer = scriptTimer;
+        if (timer == null) {
+            timer = rateLimiterMetrics.redisScriptTimer(getType(), "check");
+            scriptTimer = timer;
+        }
+        return timer;
+    }
+
+    public List<String> buildKeys(List<BucketSpec> buckets) {
+        List<String> keys = new ArrayList<>(buckets.size());
+        for (BucketSpec bucket : buckets) {
+            keys.add(bucket.getKey() + getKeySuffix());
+        }
+        return keys;
+    }
+
+    @Override
+    public List<RateLimiterResponse> isAllowed(List<BucketSpec> buckets) {
+        long nowMillis = System.currentTimeMillis();
+        List<Long> result;
+        try {
+            List<String> keys = buildKeys(buckets);
+            long start = System.nanoTime();
+            // Execute Lua script atomically in Redis
+            result = scriptExecutor.execute(getScript(), keys, buildArgs(buckets, nowMillis));
+            getScriptTimer().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            log.error("Error checking {} rate limit for buckets: {}", getType(), buckets, e);
+            throw new RedisUnavailableException("Rate limit script failed", e);
+        }
+        return parseResult(result, buckets);
+    }
+
+    /**
+     * Turn the script result into one response per bucket
+     */
+    public List<RateLimiterResponse> parseResult(List<Long> result, List<BucketSpec> buckets) {
+        if (result == null || result.size() != 1 + buckets.size() * FIELDS_PER_KEY) {
+            log.error("Unexpected Redis response for buckets: {}", buckets);
+            throw new RedisUnavailableException("Unexpected Redis response: " + result);
+        }
+        List<RateLimiterResponse> responses = new ArrayList<>(buckets.size());
+        for (int b = 0; b < buckets.size(); b++) {
+            BucketSpec bucket = buckets.get(b);
+            long keyAllowed = result.get(1 + b * FIELDS_PER_KEY);
+            long remaining = result.get(2 + b * FIELDS_PER_KEY);
+            long resetAtMillis = result.get(3 + b * FIELDS_PER_KEY);
+
+            if (keyAllowed == 1) {
+                log.debug("✓ Bucket has capacity - Key: {}, Remaining: {}", bucket.getKey(), remaining);
+                responses.add(RateLimiterResponse.allowedUntil(bucket.getLimit(), remaining, resetAtMillis));
+            } else {
+                log.debug("✗ Request blocked - Key: {}, Reset at: {}ms", bucket.getKey(), resetAtMillis);
+                responses.add(RateLimiterResponse.blockedUntil(bucket.getLimit(), resetAtMillis, "Rate limit exceeded"));
+            }
+        }
+        return responses;
+    }
+
+    @Override
+    public void reset(String key) {
+        String redisKey = key + getKeySuffix();
+        try {
+            redisTemplate.delete(redisKey);
+            log.info("Reset rate limit for key: {}", redisKey);
+        } catch (Exception e) {
+            log.error("Error resetting rate limit for key: {}", redisKey, e);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.exception.RedisUnavailableException;
+import com.ratelimiter.fallback.RedisCircuitBreaker;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs rate limit scripts against Redis, optionally micro-batched.
+ *
+ * Every call is bounded by the circuit breaker's call budget, so a slow Redis costs a
+ * request the budget and not the client timeout. Single calls go through Lettuce's
+ * async API and the wait is cancelled once the budget is spent, which also drops the
+ * command if it was not written yet. One already sent still runs in Redis. Redis errors
+ * and timeouts feed the breaker, and while it is open calls fail immediately without
+ * touching Redis.
+ *
+ * With batching enabled, concurrent calls are queued and a single flusher thread
+ * sends them as one pipeline, either when max-batch-size calls are waiting or
+ * when the oldest one has waited max-wait-micros. Each caller blocks on its own
+ * future until its result comes back, calls that gave up before their flush are
+ * not sent. Batching is turned off against Redis Cluster.
+ */
+@Slf4j
+@Component
+public class RedisScriptExecutor {
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Value("${rate-limiter.batching.enabled:false}")
+    private boolean batchingEnabled;
+
+    @Value("${rate-limiter.batching.max-batch-size:64}")
+    private int maxBatchSize;
+
+    @Value("${rate-limiter.batching.max-wait-micros:200}")
+    private long maxWaitMicros;
+
+    @Value("${rate-limiter.batching.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<PendingCall> queue;
+    private final Set<String> loadedScripts = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    private Thread flusher;
+
+    private DistributionSummary batchSize;
+    private Timer batchWait;
+    private Timer flushTime;
+
+    @PostConstruct
+    public void start() {
+        if (batchingEnabled && redisTemplate.getConnectionFactory() instanceof LettuceConnectionFactory factory
+                && factory.isClusterAware()) {
+            // The batcher preloads scripts on one node and pipelines across shards
+            log.warn("Redis script batching is not supported with Redis Cluster, executing calls individually");
+            batchingEnabled = false;
+        }
+        if (!batchingEnabled) {
+            return;
+        }
+        batchSize = DistributionSummary.builder("ratelimiter.redis.batch.size")
+                .description("Script calls sent per pipelined flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        batchWait = Timer.builder("ratelimiter.redis.batch.wait")
+                .description("Time a script call waited in the queue before its batch was flushed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        flushTime = Timer.builder("ratelimiter.redis.batch.flush")
+                .description("Round trip time of one pipelined flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        flusher = new Thread(this::flushLoop, "redis-script-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Redis script batching enabled - Max batch: {}, Max wait: {}us", maxBatchSize, maxWaitMicros);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+    }
+
+    /**
+     * Run a script and return its result, through the batcher when it is enabled.
+     * Throws RedisUnavailableException if the breaker is open, the call fails or it runs over budget.
+     */
+    public List<Long> execute(RedisScript<List> script, List<String> keys, List<String> args) {
+        if (circuitBreaker.isOpen()) {
+            throw new RedisUnavailableException("Redis circuit breaker is open");
+        }
+        Duration budget = circuitBreaker.getCallBudget();
+        long start = System.nanoTime();
+        try {
+            PendingCall call = batchingEnabled ? enqueue(script, keys, args) : null;
+            List<Long> result = call != null ? await(call, budget) : executeAsync(script, keys, args, budget);
+            circuitBreaker.recordSuccess(System.nanoTime() - start);
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RedisUnavailableException("Interrupted waiting for Redis", e);
+        } catch (Exception e) {
+            Throwable cause = Exceptions.unwrap(e instanceof ExecutionException ? e.getCause() : e);
+            if (cause instanceof TimeoutException) {
+                circuitBreaker.recordFailure(System.nanoTime() - start);
+                throw new RedisUnavailableException("Redis call exceeded its " + budget.toMillis() + "ms budget", cause);
+            }
+            // The batcher turning a call away says nothing about Redis
+            if (!(cause instanceof RejectedExecutionException)) {
+                circuitBreaker.recordFailure(System.nanoTime() - start);
+            }
+            throw new RedisUnavailableException("Redis script call failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Queue a call for the next flush, or null if the queue is full and it should run on its own
+     */
+    private PendingCall enqueue(RedisScript<List> script, List<String> keys, List<String> args) {
+        PendingCall call = new PendingCall(script, keys, args);
+        return queue.offer(call) ? call : null;
+    }
+
+    private List<Long> await(PendingCall call, Duration budget) throws Exception {
+        try {
+            return call.result.get(budget.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Still queued calls are skipped by the flusher
+            call.result.cancel(false);
+            throw e;
+        }
+    }
+
+    private List<Long> executeAsync(RedisScript<List> script, List<String> keys, List<String> args, Duration budget) {
+        return reactiveRedisTemplate.execute(script, keys, args)
+                // The script result may arrive as one list or in several chunks
+                .reduce(new ArrayList<Long>(), (results, chunk) -> {
+                    for (Object value : (List<?>) chunk) {
+                        results.add((Long) value);
+                    }
+                    return results;
+                })
+                .timeout(budget)
+                .block();
+    }
+
+    private void flushLoop() {
+        List<PendingCall> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                PendingCall first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAtNanos + TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingCall next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Error flushing Redis script batch", e);
+                batch.forEach(call -> call.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+        PendingCall leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.result.completeExceptionally(new RejectedExecutionException("Redis script batcher stopped"));
+        }
+    }
+
+    private void flush(List<PendingCall> batch) {
+        // Callers that ran out of budget have cancelled their calls
+        batch.removeIf(call -> call.result.isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        long flushStart = System.nanoTime();
+        batchSize.record(batch.size());
+        for (PendingCall call : batch) {
+            batchWait.record(flushStart - call.enqueuedAtNanos, TimeUnit.NANOSECONDS);
+        }
+        try {
+            List<Object> results = executePipelined(batch);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(toLongs(results.get(i)));
+            }
+        } catch (RedisPipelineException e) {
+            completeFailedPipeline(batch, e);
+        } catch (Exception e) {
+            // Nothing says which calls reached Redis, and scripts take tokens, so none is run again
+            log.warn("Pipelined flush of {} script calls failed: {}", batch.size(), e.getMessage());
+            batch.forEach(call -> call.result.completeExceptionally(e));
+        } finally {
+            flushTime.record(System.nanoTime() - flushStart, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Settle each call of a pipeline that had errors by its own result. Only NOSCRIPT calls,
+     * which never ran, are run again, so RedisTemplate can fall back to EVAL and reload the
+     * script after a Redis restart or failover. Other calls keep their result or error.
+     */
+    private void completeFailedPipeline(List<PendingCall> batch, RedisPipelineException e) {
+        List<Object> results = e.getPipelineResult();
+        if (results == null || results.size() != batch.size()) {
+            log.warn("Pipelined flush of {} script calls failed: {}", batch.size(), e.getMessage());
+            batch.forEach(call -> call.result.completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingCall call = batch.get(i);
+            Object result = results.get(i);
+            if (!(result instanceof Exception callError)) {
+                call.result.complete(toLongs(result));
+            } else if (isNoScript(callError)) {
+                loadedScripts.remove(call.script.getSha1());
+                try {
+                    call.result.complete(redisTemplate.execute(call.script, call.keys, call.args.toArray()));
+                } catch (Exception retryError) {
+                    call.result.completeExceptionally(retryError);
+                }
+            } else {
+                call.result.completeExceptionally(callError);
+            }
+        }
+    }
+
+    private static boolean isNoScript(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Object> executePipelined(List<PendingCall> batch) {
+        for (PendingCall call : batch) {
+            if (loadedScripts.add(call.script.getSha1())) {
+                redisTemplate.execute((RedisCallback<String>) connection ->
+                        connection.scriptingCommands().scriptLoad(bytes(call.script.getScriptAsString())));
+            }
+        }
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (PendingCall call : batch) {
+                byte[][] keysAndArgs = new byte[call.keys.size() + call.args.size()][];
+                int i = 0;
+                for (String key : call.keys) {
+                    keysAndArgs[i++] = bytes(key);
+                }
+                for (String arg : call.args) {
+                    keysAndArgs[i++] = bytes(arg);
+                }
+                connection.scriptingCommands().evalSha(call.script.getSha1(), ReturnType.MULTI,
+                        call.keys.size(), keysAndArgs);
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> toLongs(Object result) {
+        return (List<Long>) result;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static final class PendingCall {
+        private final RedisScript<List> script;
+        private final List<String> keys;
+        private final List<String> args;
+        private final long enqueuedAtNanos = System.nanoTime();
+        private final CompletableFuture<List<Long>> result = new CompletableFuture<>();
+
+        private PendingCall(RedisScript<List> script, List<String> keys, List<String> args) {
+            this.script = script;
+            this.keys = keys;
+            this.args = args;
+        }
+    }
+}
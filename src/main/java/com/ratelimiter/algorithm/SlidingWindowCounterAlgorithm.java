@@ -0,0 +1,114 @@
+package com.ratelimiter.algorithm;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sliding window counter: keeps the current and previous window counts per key
+ * and weights the previous one by how much of it still overlaps the sliding window.
+ * Close to the log's accuracy at the cost of a fixed window.
+ */
+@Component
+public class SlidingWindowCounterAlgorithm extends RedisScriptAlgorithm {
+
+    /**
+     * ARGV[1] is the current time in ms, then (limit, window_ms) for each key.
+     * State is a hash of w (current window index), c (current count) and p (previous count).
+     */
+    private static final String LUA_SCRIPT =
+            "local now = tonumber(ARGV[1]) " +
+                    "local windows = {} " +
+                    "local currents = {} " +
+                    "local previous = {} " +
+                    "local estimates = {} " +
+                    "local allowed = 1 " +
+
+                    "for i = 1, #KEYS do " +
+                    "  local limit = tonumber(ARGV[i * 2]) " +
+                    "  local window = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local current_window = math.floor(now / window) " +
+                    "  local state = redis.call('HMGET', KEYS[i], 'w', 'c', 'p') " +
+                    "  local w = tonumber(state[1]) " +
+                    "  local c = tonumber(state[2]) or 0 " +
+                    "  local p = tonumber(state[3]) or 0 " +
+                    // Roll the counters forward if the window moved on
+                    "  if w == nil then " +
+                    "    c = 0 " +
+                    "    p = 0 " +
+                    "  elseif w == current_window - 1 then " +
+                    "    p = c " +
+                    "    c = 0 " +
+                    "  elseif w ~= current_window then " +
+                    "    c = 0 " +
+                    "    p = 0 " +
+                    "  end " +
+                    "  local elapsed = (now - current_window * window) / window " +
+                    "  windows[i] = current_window " +
+                    "  currents[i] = c " +
+                    "  previous[i] = p " +
+                    "  estimates[i] = p * (1 - elapsed) + c " +
+                    "  if estimates[i] + 1 > limit then " +
+                    "    allowed = 0 " +
+                    "  end " +
+                    "end " +
+
+                    "local result = {allowed} " +
+                    "for i = 1, #KEYS do " +
+                    "  local limit = tonumber(ARGV[i * 2]) " +
+                    "  local window = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local c = currents[i] " +
+                    "  local p = previous[i] " +
+                    "  local estimate = estimates[i] " +
+                    "  if allowed == 1 then " +
+                    "    c = c + 1 " +
+                    "    estimate = estimate + 1 " +
+                    "  end " +
+                    "  redis.call('HSET', KEYS[i], 'w', windows[i], 'c', c, 'p', p) " +
+                    "  redis.call('PEXPIRE', KEYS[i], window * 2) " +
+                    "  local key_allowed = 0 " +
+                    "  local window_end = (windows[i] + 1) * window " +
+                    "  local reset_at = window_end " +
+                    "  if estimates[i] + 1 <= limit then " +
+                    "    key_allowed = 1 " +
+                    "  elseif p > 0 and c + 1 <= limit then " +
+                    // Wait until enough of the previous window slid out
+                    "    reset_at = windows[i] * window + window * (1 - (limit - 1 - c) / p) " +
+                    "  end " +
+                    "  table.insert(result, key_allowed) " +
+                    "  table.insert(result, math.max(0, math.floor(limit - estimate))) " +
+                    "  table.insert(result, math.ceil(reset_at)) " +
+                    "end " +
+                    "return result";
+
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(LUA_SCRIPT, List.class);
+
+    @Override
+    public AlgorithmType getType() {
+        return AlgorithmType.SLIDING_WINDOW_COUNTER;
+    }
+
+    @Override
+    public RedisScript<List> getScript() {
+        return SCRIPT;
+    }
+
+    @Override
+    protected String getKeySuffix() {
+        return ":swc";
+    }
+
+    @Override
+    public List<String> buildArgs(List<BucketSpec> buckets, long nowMillis) {
+        List<String> args = new ArrayList<>(1 + buckets.size() * 2);
+        args.add(String.valueOf(nowMillis));
+        for (BucketSpec bucket : buckets) {
+            args.add(String.valueOf(bucket.getLimit()));
+            args.add(String.valueOf(bucket.getWindowSeconds() * 1000L));
+        }
+        return args;
+    }
+}
@@ -0,0 +1,96 @@
+package com.ratelimiter.algorithm;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sliding window log: a sorted set with one entry per admitted request.
+ * Exact, but memory and time grow with the limit, so keep it for small limits.
+ */
+@Component
+public class SlidingWindowLogAlgorithm extends RedisScriptAlgorithm {
+
+    /**
+     * ARGV[1] is the current time in ms, ARGV[2] a unique member for this request,
+     * then (limit, window_ms) for each key.
+     */
+    private static final String LUA_SCRIPT =
+            "local now = tonumber(ARGV[1]) " +
+                    "local member = ARGV[2] " +
+                    "local counts = {} " +
+                    "local allowed = 1 " +
+
+                    // Drop entries that slid out of the window and count the rest
+                    "for i = 1, #KEYS do " +
+                    "  local limit = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local window = tonumber(ARGV[i * 2 + 2]) " +
+                    "  redis.call('ZREMRANGEBYSCORE', KEYS[i], '-inf', now - window) " +
+                    "  counts[i] = redis.call('ZCARD', KEYS[i]) " +
+                    "  if counts[i] >= limit then " +
+                    "    allowed = 0 " +
+                    "  end " +
+                    "end " +
+
+                    "local result = {allowed} " +
+                    "for i = 1, #KEYS do " +
+                    "  local limit = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local window = tonumber(ARGV[i * 2 + 2]) " +
+                    "  local count = counts[i] " +
+                    "  if allowed == 1 then " +
+                    "    redis.call('ZADD', KEYS[i], now, member) " +
+                    "    redis.call('PEXPIRE', KEYS[i], window) " +
+                    "    count = count + 1 " +
+                    "  end " +
+                    "  local key_allowed = 0 " +
+                    "  if counts[i] < limit then " +
+                    "    key_allowed = 1 " +
+                    "  end " +
+                    // The window frees a slot when its oldest entry slides out
+                    "  local reset_at = now + window " +
+                    "  local oldest = redis.call('ZRANGE', KEYS[i], 0, 0, 'WITHSCORES') " +
+                    "  if oldest[2] ~= nil then " +
+                    "    reset_at = tonumber(oldest[2]) + window " +
+                    "  end " +
+                    "  table.insert(result, key_allowed) " +
+                    "  table.insert(result, math.max(0, limit - count)) " +
+                    "  table.insert(result, reset_at) " +
+                    "end " +
+                    "return result";
+
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(LUA_SCRIPT, List.class);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    public AlgorithmType getType() {
+        return AlgorithmType.SLIDING_WINDOW_LOG;
+    }
+
+    @Override
+    public RedisScript<List> getScript() {
+        return SCRIPT;
+    }
+
+    @Override
+    protected String getKeySuffix() {
+        return ":swl";
+    }
+
+    @Override
+    public List<String> buildArgs(List<BucketSpec> buckets, long nowMillis) {
+        List<String> args = new ArrayList<>(2 + buckets.size() * 2);
+        args.add(String.valueOf(nowMillis));
+        // Requests in the same millisecond need distinct members, also across nodes
+        args.add(nowMillis + "-" + ProcessHandle.current().pid() + "-" + sequence.incrementAndGet());
+        for (BucketSpec bucket : buckets) {
+            args.add(String.valueOf(bucket.getLimit()));
+            args.add(String.valueOf(bucket.getWindowSeconds() * 1000L));
+        }
+        return args;
+    }
+}
@@ -1,117 +1,311 @@
 package com.ratelimiter.algorithm;
 
 
+import com.ratelimiter.exception.RedisUnavailableException;
 import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
-public class TokenBucketAlgorithm {
-
-    @Autowired
-    private RedisTemplate<String, String> redisTemplate;
-
+public class TokenBucketAlgorithm extends RedisScriptAlgorithm {
 
+    /**
+     * Evaluates every bucket in KEYS atomically.
+     * ARGV[1] is the current time in milliseconds, then (capacity, refill_rate) for each key.
+     * Bucket state is kept in seconds, with the same fractional clock in every script on a key.
+     * A token is taken from every bucket only when all of them have one,
+     * so a request rejected by one bucket never drains the others.
+     * Returns {allowed, then (key_allowed, remaining, reset_at) per key}, reset_at in ms.
+     */
     private static final String LUA_SCRIPT =
             // Get parameters
+            "local current_time = tonumber(ARGV[1]) / 1000 " +
+                    "local tokens = {} " +
+                    "local allowed = 1 " +
+
+                    // Refill every bucket and check if each one has a token
+                    "for i = 1, #KEYS do " +
+                    "  local capacity = tonumber(ARGV[i * 2]) " +
+                    "  local refill_rate = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local state = redis.call('HMGET', KEYS[i], 'tokens', 'last_refill') " +
+                    "  local current = tonumber(state[1]) " +
+                    "  local last_refill = tonumber(state[2]) " +
+                    // Initialize on first request
+                    "  if current == nil then " +
+                    "    current = capacity " +
+                    "    last_refill = current_time " +
+                    "  end " +
+                    // Calculate tokens to add based on time passed
+                    "  local time_passed = math.max(0, current_time - last_refill) " +
+                    "  tokens[i] = math.min(capacity, current + time_passed * refill_rate) " +
+                    "  if tokens[i] < 1 then " +
+                    "    allowed = 0 " +
+                    "  end " +
+                    "end " +
+
+                    // Consume 1 token from every bucket only if all of them allow it
+                    "local result = {allowed} " +
+                    "for i = 1, #KEYS do " +
+                    "  local capacity = tonumber(ARGV[i * 2]) " +
+                    "  local refill_rate = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local key_allowed = 0 " +
+                    "  local reset_at " +
+                    "  if tokens[i] >= 1 then " +
+                    "    key_allowed = 1 " +
+                    "    if allowed == 1 then " +
+                    "      tokens[i] = tokens[i] - 1 " +
+                    "    end " +
+                    "    reset_at = current_time + (capacity - tokens[i]) / refill_rate " +
+                    "  else " +
+                    "    reset_at = current_time + (1 - tokens[i]) / refill_rate " +
+                    "  end " +
+                    "  redis.call('HSET', KEYS[i], 'tokens', tokens[i], 'last_refill', current_time) " +
+                    "  redis.call('EXPIRE', KEYS[i], 3600) " +  // Auto-delete after 1 hour of inactivity
+                    "  table.insert(result, key_allowed) " +
+                    "  table.insert(result, math.floor(tokens[i])) " +
+                    "  table.insert(result, math.ceil(reset_at * 1000)) " +
+                    "end " +
+                    "return result";
+
+    /**
+     * Takes up to ARGV[4] tokens from the bucket in one call, after adding
+     * back ARGV[5] unused tokens from a previous lease. ARGV[3] is the current time in milliseconds.
+     * Returns {granted, remaining, reset_at}, reset_at in ms like the check script.
+     */
+    private static final String LEASE_LUA_SCRIPT =
             "local key = KEYS[1] " +
                     "local capacity = tonumber(ARGV[1]) " +
                     "local refill_rate = tonumber(ARGV[2]) " +
-                    "local current_time = tonumber(ARGV[3]) " +
-
-                    // Get current state from Redis
-                    "local tokens = tonumber(redis.call('HGET', key, 'tokens')) " +
-                    "local last_refill = tonumber(redis.call('HGET', key, 'last_refill')) " +
+                    "local current_time = tonumber(ARGV[3]) / 1000 " +
+                    "local requested = tonumber(ARGV[4]) " +
+                    "local returned = tonumber(ARGV[5]) " +
 
-                    // Initialize on first request
+                    "local state = redis.call('HMGET', key, 'tokens', 'last_refill') " +
+                    "local tokens = tonumber(state[1]) " +
+                    "local last_refill = tonumber(state[2]) " +
                     "if tokens == nil then " +
                     "  tokens = capacity " +
                     "  last_refill = current_time " +
-                    "  redis.call('HSET', key, 'tokens', tokens) " +
-                    "  redis.call('HSET', key, 'last_refill', last_refill) " +
-                    "  redis.call('EXPIRE', key, 3600) " +  // Auto-delete after 1 hour of inactivity
                     "end " +
-
-                    // Calculate tokens to add based on time passed
                     "local time_passed = math.max(0, current_time - last_refill) " +
-                    "local tokens_to_add = time_passed * refill_rate " +
-                    "tokens = math.min(capacity, tokens + tokens_to_add) " +
-                    "last_refill = current_time " +
-
-                    // Try to consume 1 token
-                    "if tokens >= 1 then " +
-                    "  tokens = tokens - 1 " +
-                    "  redis.call('HSET', key, 'tokens', tokens) " +
-                    "  redis.call('HSET', key, 'last_refill', last_refill) " +
-                    "  local tokens_needed = capacity - tokens " +
-                    "  local seconds_until_full = tokens_needed / refill_rate " +
-                    "  local reset_at = current_time + seconds_until_full " +
-                    "  return {1, math.floor(tokens), math.floor(reset_at)} " +
+                    "tokens = math.min(capacity, tokens + time_passed * refill_rate + returned) " +
+
+                    "local granted = math.max(0, math.min(requested, math.floor(tokens))) " +
+                    "tokens = tokens - granted " +
+                    "redis.call('HSET', key, 'tokens', tokens, 'last_refill', current_time) " +
+                    "redis.call('EXPIRE', key, 3600) " +
+
+                    "local reset_at " +
+                    "if granted > 0 then " +
+                    "  reset_at = current_time + (capacity - tokens) / refill_rate " +
                     "else " +
-                    "  redis.call('HSET', key, 'last_refill', last_refill) " +
-                    "  local tokens_needed = 1 - tokens " +
-                    "  local seconds_until_available = tokens_needed / refill_rate " +
-                    "  local reset_at = current_time + seconds_until_available " +
-                    "  return {0, 0, math.floor(reset_at)} " +
-                    "end";
+                    "  reset_at = current_time + (1 - tokens) / refill_rate " +
+                    "end " +
+                    "return {granted, math.floor(tokens), math.ceil(reset_at * 1000)}";
 
+    /**
+     * Like the check script, but a bucket may also be taken below zero, reserving a token
+     * that refills within ARGV[2] milliseconds. ARGV[1] is the current time in milliseconds,
+     * then (capacity, refill_rate) for each key. Tokens are taken from every bucket only
+     * when all of them can reserve one in time, the wait is that of the slowest bucket.
+     * Returns {delay_millis or -1 if rejected, then (key_allowed, remaining, reset_at) per key}.
+     */
+    private static final String RESERVE_LUA_SCRIPT =
+            "local current_time = tonumber(ARGV[1]) / 1000 " +
+                    "local max_delay = tonumber(ARGV[2]) / 1000 " +
+                    "local tokens = {} " +
+                    "local wait = 0 " +
 
-    public RateLimiterResponse isAllowed(String key, int limit, int windowSeconds) {
-        try {
+                    // Refill every bucket and find how long the slowest one needs for a token
+                    "for i = 1, #KEYS do " +
+                    "  local capacity = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local refill_rate = tonumber(ARGV[i * 2 + 2]) " +
+                    "  local state = redis.call('HMGET', KEYS[i], 'tokens', 'last_refill') " +
+                    "  local current = tonumber(state[1]) " +
+                    "  local last_refill = tonumber(state[2]) " +
+                    "  if current == nil then " +
+                    "    current = capacity " +
+                    "    last_refill = current_time " +
+                    "  end " +
+                    "  local time_passed = math.max(0, current_time - last_refill) " +
+                    "  tokens[i] = math.min(capacity, current + time_passed * refill_rate) " +
+                    "  wait = math.max(wait, (1 - tokens[i]) / refill_rate) " +
+                    "end " +
+                    "local allowed = wait <= max_delay " +
+
+                    "local result = {-1} " +
+                    "if allowed then " +
+                    "  result[1] = math.ceil(wait * 1000) " +
+                    "end " +
+                    "for i = 1, #KEYS do " +
+                    "  local capacity = tonumber(ARGV[i * 2 + 1]) " +
+                    "  local refill_rate = tonumber(ARGV[i * 2 + 2]) " +
+                    "  local key_wait = (1 - tokens[i]) / refill_rate " +
+                    "  local key_allowed = 0 " +
+                    "  local reset_at " +
+                    "  if key_wait <= max_delay then " +
+                    "    key_allowed = 1 " +
+                    "    if allowed then " +
+                    "      tokens[i] = tokens[i] - 1 " +
+                    "    end " +
+                    "    reset_at = current_time + (capacity - tokens[i]) / refill_rate " +
+                    "  else " +
+                    // When a request would fit in the wait budget again
+                    "    reset_at = current_time + key_wait - max_delay " +
+                    "  end " +
+                    "  redis.call('HSET', KEYS[i], 'tokens', tokens[i], 'last_refill', current_time) " +
+                    "  redis.call('EXPIRE', KEYS[i], 3600) " +
+                    "  table.insert(result, key_allowed) " +
+                    "  table.insert(result, math.floor(math.max(0, tokens[i]))) " +
+                    "  table.insert(result, math.ceil(reset_at * 1000)) " +
+                    "end " +
+                    "return result";
+
+    private static final DefaultRedisScript<List> SCRIPT = new DefaultRedisScript<>(LUA_SCRIPT, List.class);
+    private static final DefaultRedisScript<List> LEASE_SCRIPT = new DefaultRedisScript<>(LEASE_LUA_SCRIPT, List.class);
+    private static final DefaultRedisScript<List> RESERVE_SCRIPT = new DefaultRedisScript<>(RESERVE_LUA_SCRIPT, List.class);
+
+
+    private Timer leaseTimer;
+    private Timer reserveTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        leaseTimer = rateLimiterMetrics.redisScriptTimer(getType(), "lease");
+        reserveTimer = rateLimiterMetrics.redisScriptTimer(getType(), "reserve");
+    }
+
+    public Timer getReserveTimer() {
+        return reserveTimer;
+    }
+
+    @Override
+    public AlgorithmType getType() {
+        return AlgorithmType.TOKEN_BUCKET;
+    }
+
+    @Override
+    public RedisScript<List> getScript() {
+        return SCRIPT;
+    }
+
+    @Override
+    public List<String> buildArgs(List<BucketSpec> buckets, long nowMillis) {
+        List<String> args = new ArrayList<>(1 + buckets.size() * 2);
+        // Current time in milliseconds, the script works in fractional seconds
+        args.add(String.valueOf(nowMillis));
+        for (BucketSpec bucket : buckets) {
             // Calculate refill rate: capacity / window
             // Example: 10 requests / 60 seconds = 0.1667 tokens per second
-            double refillRate = (double) limit / windowSeconds;
-            // Current time in seconds
-            long currentTime = System.currentTimeMillis() / 1000;
-            // Execute Lua script atomically in Redis
-            DefaultRedisScript<List> script = new DefaultRedisScript<>(LUA_SCRIPT, List.class);
-
-            List<Long> result = redisTemplate.execute(
-                    script,
-                    Collections.singletonList(key),
-                    String.valueOf(limit),
-                    String.valueOf(refillRate),
-                    String.valueOf(currentTime)
-            );
-            // Parse result from Lua script
-            if (result.size() != 3) {
-                log.error("Unexpected Redis response for key: {}", key);
-                // Fail open - allow request if Redis has issues
-                return RateLimiterResponse.allowed(limit, limit, currentTime + windowSeconds);
-            }
-            long allowed = result.get(0);
-            long remaining = result.get(1);
-            long resetAt = result.get(2);
-
-            if (allowed == 1) {
-                log.debug("✓ Request allowed - Key: {}, Remaining: {}", key, remaining);
-                return RateLimiterResponse.allowed(limit, remaining, resetAt);
-            } else {
-                log.info("✗ Request blocked - Key: {}, Reset at: {}", key, resetAt);
-                return RateLimiterResponse.blocked(limit, resetAt, "Rate limit exceeded");
-            }
+            double refillRate = (double) bucket.getLimit() / bucket.getWindowSeconds();
+            args.add(String.valueOf(bucket.getLimit()));
+            args.add(String.valueOf(refillRate));
+        }
+        return args;
+    }
+
+    public RedisScript<List> getReserveScript() {
+        return RESERVE_SCRIPT;
+    }
+
+    /**
+     * Reserve script arguments for the buckets, with the current time in milliseconds like the check script
+     */
+    public List<String> buildReserveArgs(List<BucketSpec> buckets, long nowMillis, long maxDelayMillis) {
+        List<String> args = new ArrayList<>(2 + buckets.size() * 2);
+        args.add(String.valueOf(nowMillis));
+        args.add(String.valueOf(maxDelayMillis));
+        for (BucketSpec bucket : buckets) {
+            double refillRate = (double) bucket.getLimit() / bucket.getWindowSeconds();
+            args.add(String.valueOf(bucket.getLimit()));
+            args.add(String.valueOf(refillRate));
+        }
+        return args;
+    }
 
+    /**
+     * Take a token from every bucket, or reserve one that is due within maxDelayMillis.
+     * Allowed responses carry the delay to hold the request for.
+     * Throws RedisUnavailableException if Redis could not decide.
+     */
+    public List<RateLimiterResponse> reserve(List<BucketSpec> buckets, long maxDelayMillis) {
+        List<Long> result;
+        try {
+            long start = System.nanoTime();
+            result = scriptExecutor.execute(RESERVE_SCRIPT, buildKeys(buckets),
+                    buildReserveArgs(buckets, System.currentTimeMillis(), maxDelayMillis));
+            reserveTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         } catch (Exception e) {
-            log.error("Error checking rate limit for key: {}", key, e);
-            // Fail open - allow request on error
-            long currentTime = System.currentTimeMillis() / 1000;
-            return RateLimiterResponse.allowed(limit, limit, currentTime + windowSeconds);
+            log.error("Error reserving tokens for buckets: {}", buckets, e);
+            throw new RedisUnavailableException("Reserve script failed", e);
         }
+        return parseReservation(result, buckets);
     }
 
-    public void reset(String key) {
+    /**
+     * Turn the reserve script result into one response per bucket
+     */
+    public List<RateLimiterResponse> parseReservation(List<Long> result, List<BucketSpec> buckets) {
+        // Same layout as the check script, with the delay where the check puts allowed
+        List<RateLimiterResponse> responses = parseResult(result, buckets);
+        long delayMillis = result.get(0);
+        if (delayMillis > 0) {
+            for (RateLimiterResponse response : responses) {
+                if (response.isAllowed()) {
+                    response.setDelayMillis(delayMillis);
+                }
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Lease script arguments, with the current time in milliseconds like the check script
+     */
+    public List<String> buildLeaseArgs(BucketSpec bucket, long requested, long returned, long nowMillis) {
+        double refillRate = (double) bucket.getLimit() / bucket.getWindowSeconds();
+        return List.of(String.valueOf(bucket.getLimit()),
+                String.valueOf(refillRate),
+                String.valueOf(nowMillis),
+                String.valueOf(requested),
+                String.valueOf(returned));
+    }
+
+    /**
+     * Lease a block of tokens from a bucket, giving back unused tokens from the previous lease first.
+     * Use requested = 0 to only return tokens.
+     * Throws RedisUnavailableException if Redis could not be reached.
+     */
+    public LeaseGrant acquireLease(BucketSpec bucket, long requested, long returned, long nowMillis) {
         try {
-            redisTemplate.delete(key);
-            log.info("Reset rate limit for key: {}", key);
+            long start = System.nanoTime();
+            List<Long> result = scriptExecutor.execute(
+                    LEASE_SCRIPT,
+                    Collections.singletonList(bucket.getKey()),
+                    buildLeaseArgs(bucket, requested, returned, nowMillis)
+            );
+            leaseTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (result == null || result.size() != 3) {
+                throw new RedisUnavailableException("Unexpected Redis lease response: " + result);
+            }
+            log.debug("Leased {} of {} tokens - Key: {}, Returned: {}",
+                    result.get(0), requested, bucket.getKey(), returned);
+            return new LeaseGrant(result.get(0), result.get(1), result.get(2));
+        } catch (RedisUnavailableException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error resetting rate limit for key: {}", key, e);
+            log.error("Error leasing tokens for key: {}", bucket.getKey(), e);
+            throw new RedisUnavailableException("Lease script failed", e);
         }
     }
-}
\ No newline at end of file
+}
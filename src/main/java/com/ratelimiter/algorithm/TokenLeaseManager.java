@@ -0,0 +1,299 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serves token bucket requests from blocks of tokens leased from Redis.
+ *
+ * A node takes a block of tokens for a key in one Redis call and hands them out
+ * from a local counter until the lease runs out or expires. Unused tokens are
+ * given back to Redis when the lease ends. Lease size follows the observed
+ * request rate of the key, capped by the service's leaseMaxTokens, which is
+ * the most a single node can over-admit for a key.
+ */
+@Slf4j
+@Component
+public class TokenLeaseManager {
+
+    private static final long IDLE_EVICTION_MILLIS = 60_000;
+    private static final double RATE_SMOOTHING = 0.5;
+
+    @Autowired
+    private TokenBucketAlgorithm tokenBucketAlgorithm;
+
+    private final Map<String, LeaseHolder> holders = new ConcurrentHashMap<>();
+
+    /**
+     * Take one token for the bucket, renewing the local lease from Redis when needed
+     */
+    public LeasedToken tryAcquire(BucketSpec bucket, int maxLeaseTokens, long leaseDurationMillis) {
+        return tryAcquire(bucket, maxLeaseTokens, leaseDurationMillis, System.currentTimeMillis());
+    }
+
+    LeasedToken tryAcquire(BucketSpec bucket, int maxLeaseTokens, long leaseDurationMillis, long now) {
+        while (true) {
+            LeaseHolder holder = holders.computeIfAbsent(bucket.getKey(), k -> new LeaseHolder());
+            holder.lastUsedMillis = now;
+
+            // Fast path: lock-free take from the current lease
+            Lease lease = holder.current;
+            if (lease != null && lease.tryTake(now)) {
+                return new LeasedToken(lease.toAllowedResponse(), lease);
+            }
+            // Redis had no tokens on the last renewal, no point asking again before reset
+            if (lease != null && lease.granted == 0 && now < lease.resetAtMillis) {
+                return LeasedToken.rejected(RateLimiterResponse.blockedUntil(bucket.getLimit(), lease.resetAtMillis,
+                        "Rate limit exceeded"));
+            }
+
+            holder.lock.lock();
+            try {
+                if (holder.retired) {
+                    continue;
+                }
+                lease = holder.current;
+                if (lease != null && lease.tryTake(now)) {
+                    return new LeasedToken(lease.toAllowedResponse(), lease);
+                }
+                if (lease != null && lease.granted == 0 && now < lease.resetAtMillis) {
+                    return LeasedToken.rejected(RateLimiterResponse.blockedUntil(bucket.getLimit(),
+                            lease.resetAtMillis, "Rate limit exceeded"));
+                }
+                return renew(holder, bucket, maxLeaseTokens, leaseDurationMillis, now);
+            } finally {
+                holder.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Put back a token taken by tryAcquire, used when another bucket rejected the request.
+     * The token goes back to the lease that granted it. Once that lease has ended its
+     * leftover is already settled with Redis, so the token is dropped instead of being
+     * added to a newer lease that never had it.
+     */
+    public void release(LeasedToken token) {
+        release(token, System.currentTimeMillis());
+    }
+
+    void release(LeasedToken token, long now) {
+        if (token.lease != null) {
+            token.lease.giveBack(now);
+        }
+    }
+
+    /**
+     * Drop the local lease for a key without returning its tokens, used on admin reset
+     */
+    public void invalidate(String key) {
+        LeaseHolder holder = holders.remove(key);
+        if (holder != null) {
+            holder.lock.lock();
+            try {
+                holder.retired = true;
+                if (holder.current != null) {
+                    holder.current.drain();
+                }
+            } finally {
+                holder.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Give unused tokens of expired leases back to Redis and forget idle keys
+     */
+    @Scheduled(fixedDelayString = "${rate-limiter.leasing.sweep-interval-ms:1000}")
+    public void returnExpiredLeases() {
+        returnExpiredLeases(System.currentTimeMillis());
+    }
+
+    void returnExpiredLeases(long now) {
+        holders.forEach((key, holder) -> {
+            Lease lease = holder.current;
+            boolean expired = lease == null || now >= lease.expiresAtMillis;
+            if (!expired || !holder.lock.tryLock()) {
+                return;
+            }
+            try {
+                if (holder.current == lease && lease != null) {
+                    long leftover = endLease(holder, now);
+                    if (leftover > 0) {
+                        returnTokens(lease.bucket, leftover, now);
+                    }
+                }
+                if (now - holder.lastUsedMillis > IDLE_EVICTION_MILLIS) {
+                    holder.retired = true;
+                    holders.remove(key, holder);
+                }
+            } finally {
+                holder.lock.unlock();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void returnAllLeases() {
+        holders.forEach((key, holder) -> {
+            Lease lease = holder.current;
+            if (lease != null) {
+                long leftover = lease.drain();
+                if (leftover > 0) {
+                    returnTokens(lease.bucket, leftover, System.currentTimeMillis());
+                }
+            }
+        });
+        holders.clear();
+        log.info("Returned all leased tokens to Redis");
+    }
+
+    public int getActiveLeaseCount() {
+        return holders.size();
+    }
+
+    private void returnTokens(BucketSpec bucket, long tokens, long now) {
+        try {
+            tokenBucketAlgorithm.acquireLease(bucket, 0, tokens, now);
+        } catch (Exception e) {
+            log.warn("Could not return {} leased tokens for key {}: {}", tokens, bucket.getKey(), e.getMessage());
+        }
+    }
+
+    /**
+     * Called with the holder lock held
+     */
+    private LeasedToken renew(LeaseHolder holder, BucketSpec bucket,
+                              int maxLeaseTokens, long leaseDurationMillis, long now) {
+        long leftover = holder.current == null ? 0 : endLease(holder, now);
+        long requested = (long) Math.ceil(holder.observedRate * leaseDurationMillis / 1000.0);
+        requested = Math.max(1, Math.min(requested, Math.min(maxLeaseTokens, bucket.getLimit())));
+
+        // Throws RedisUnavailableException, the caller falls back to local limiting
+        LeaseGrant grant = tokenBucketAlgorithm.acquireLease(bucket, requested, leftover, now);
+        Lease lease = new Lease(bucket, grant, now, now + leaseDurationMillis);
+        holder.current = lease;
+        if (lease.tryTake(now)) {
+            return new LeasedToken(lease.toAllowedResponse(), lease);
+        }
+        log.debug("✗ Request blocked - Key: {}, Reset at: {}", bucket.getKey(), grant.getResetAtMillis());
+        return LeasedToken.rejected(RateLimiterResponse.blockedUntil(bucket.getLimit(), grant.getResetAtMillis(),
+                "Rate limit exceeded"));
+    }
+
+    /**
+     * Drain the current lease, fold its usage into the rate estimate and clear it.
+     * Called with the holder lock held, returns the unused tokens.
+     */
+    private long endLease(LeaseHolder holder, long now) {
+        Lease lease = holder.current;
+        long leftover = lease.drain();
+        long taken = lease.granted - leftover;
+        long elapsed = Math.max(1, Math.min(now, lease.expiresAtMillis) - lease.acquiredAtMillis);
+        double observedRate = taken * 1000.0 / elapsed;
+        holder.observedRate = holder.observedRate * (1 - RATE_SMOOTHING) + observedRate * RATE_SMOOTHING;
+        holder.current = null;
+        return leftover;
+    }
+
+    /**
+     * Outcome of tryAcquire, an allowed one remembers the lease its token came from
+     */
+    public static final class LeasedToken {
+        private final RateLimiterResponse response;
+        private final Lease lease;
+
+        private LeasedToken(RateLimiterResponse response, Lease lease) {
+            this.response = response;
+            this.lease = lease;
+        }
+
+        private static LeasedToken rejected(RateLimiterResponse response) {
+            return new LeasedToken(response, null);
+        }
+
+        public RateLimiterResponse getResponse() {
+            return response;
+        }
+
+        public boolean isAllowed() {
+            return response.isAllowed();
+        }
+    }
+
+    private static final class LeaseHolder {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Lease current;
+        private volatile long lastUsedMillis;
+        private volatile boolean retired;
+        // Tokens per second, smoothed across renewals. Only written under lock
+        private volatile double observedRate;
+    }
+
+    private static final class Lease {
+        private final BucketSpec bucket;
+        private final AtomicLong remaining;
+        // Set before the lease is drained, tokens given back after that are dropped
+        private volatile boolean ended;
+        private final long granted;
+        private final long redisRemaining;
+        private final long resetAtMillis;
+        private final long acquiredAtMillis;
+        private final long expiresAtMillis;
+
+        private Lease(BucketSpec bucket, LeaseGrant grant, long acquiredAtMillis, long expiresAtMillis) {
+            this.bucket = bucket;
+            this.remaining = new AtomicLong(grant.getGranted());
+            this.granted = grant.getGranted();
+            this.redisRemaining = grant.getRemaining();
+            this.resetAtMillis = grant.getResetAtMillis();
+            this.acquiredAtMillis = acquiredAtMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean tryTake(long now) {
+            if (now >= expiresAtMillis) {
+                return false;
+            }
+            long current;
+            do {
+                current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+            } while (!remaining.compareAndSet(current, current - 1));
+            return true;
+        }
+
+        /**
+         * Take all remaining tokens so nobody else can use them, returns how many there were
+         */
+        private long drain() {
+            ended = true;
+            return Math.max(0, remaining.getAndSet(0));
+        }
+
+        /**
+         * Put a token taken from this lease back, unless the lease is over. A token given
+         * back while the lease is being drained may be dropped, never counted twice
+         */
+        private void giveBack(long now) {
+            if (!ended && now < expiresAtMillis) {
+                remaining.incrementAndGet();
+            }
+        }
+
+        private RateLimiterResponse toAllowedResponse() {
+            return RateLimiterResponse.allowedUntil(bucket.getLimit(), redisRemaining + remaining.get(), resetAtMillis);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.ratelimiter.audit;
+
+import com.ratelimiter.responseDto.RateLimiterResponse;
+
+import static com.ratelimiter.constants.CommonConstants.GLOBAL_LIMIT_EXCEEDED;
+
+public enum Decision {
+    ALLOWED,
+    USER_LIMITED,
+    GLOBAL_LIMITED;
+
+    private static final Decision[] VALUES = values();
+
+    public static Decision of(RateLimiterResponse response) {
+        if (response.isAllowed()) {
+            return ALLOWED;
+        }
+        return GLOBAL_LIMIT_EXCEEDED.equals(response.getReason()) ? GLOBAL_LIMITED : USER_LIMITED;
+    }
+
+    public static Decision fromCode(int code) {
+        return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+    }
+}
@@ -0,0 +1,247 @@
+package com.ratelimiter.audit;
+
+import com.ratelimiter.requestDto.RateLimiterRequest;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Binary log of every rate limit decision.
+ *
+ * Request threads claim a slot in a preallocated ring with a CAS, fill it in and
+ * publish it, so recording never blocks or allocates. When the ring is full the
+ * record is dropped and counted instead. A single writer thread copies published
+ * slots into a memory-mapped file and starts a new file when it is full, keeping
+ * the newest max-files. Read the files with DecisionLogReader.
+ */
+@Slf4j
+@Component
+public class DecisionAuditLog {
+
+    private static final int DRAIN_BATCH = 1024;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rate-limiter.audit.enabled:false}")
+    private boolean enabled;
+
+    @Value("${rate-limiter.audit.directory:audit}")
+    private String directory;
+
+    @Value("${rate-limiter.audit.file-size-mb:64}")
+    private int fileSizeMb;
+
+    @Value("${rate-limiter.audit.max-files:20}")
+    private int maxFiles;
+
+    @Value("${rate-limiter.audit.ring-capacity:65536}")
+    private int ringCapacity;
+
+    private Slot[] ring;
+    private int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+    private Counter dropped;
+
+    // Writer thread state
+    private Path directoryPath;
+    private MappedByteBuffer file;
+    private long fileSequence;
+    private final Map<String, byte[]> routeBytes = new HashMap<>();
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        int capacity = Integer.highestOneBit(Math.max(2, ringCapacity - 1)) << 1;
+        ring = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Slot();
+        }
+        mask = capacity - 1;
+        directoryPath = Paths.get(directory);
+        Files.createDirectories(directoryPath);
+
+        dropped = Counter.builder("ratelimiter.audit.dropped")
+                .description("Decisions not audited because the ring buffer was full")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.audit.backlog", () -> claimed.get() - consumed.get())
+                .description("Decisions waiting for the audit writer")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "decision-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Decision audit log enabled - Directory: {}, Ring: {}", directoryPath.toAbsolutePath(), capacity);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path getDirectory() {
+        return Paths.get(directory);
+    }
+
+    /**
+     * Queue the outcome of a rate limit check, never blocks
+     */
+    public void record(RateLimiterRequest request, RateLimiterResponse response, long latencyNanos) {
+        if (!enabled) {
+            return;
+        }
+        String route = request.getService() == null ? null : request.getService().getName();
+        record(route, request.getIdentifier(), Decision.of(response), response.getRemaining(), latencyNanos);
+    }
+
+    /**
+     * Queue a decision for the audit log, never blocks
+     */
+    public void record(String route, String identifier, Decision decision, long remaining, long latencyNanos) {
+        if (!enabled) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= ring.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = ring[(int) (sequence & mask)];
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.route = route;
+        slot.identifierHash = DecisionRecord.hashIdentifier(identifier);
+        slot.decision = decision;
+        slot.remaining = remaining;
+        slot.latencyMicros = (int) Math.min(Integer.MAX_VALUE, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        // Volatile write, makes the fields above visible to the writer
+        slot.published = sequence;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            int written = drain();
+            if (written == 0) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        if (file != null) {
+            file.force();
+        }
+    }
+
+    private int drain() {
+        int written = 0;
+        long sequence = consumed.get();
+        while (written < DRAIN_BATCH) {
+            Slot slot = ring[(int) (sequence & mask)];
+            if (slot.published != sequence) {
+                break;
+            }
+            try {
+                write(slot);
+            } catch (IOException e) {
+                log.error("Could not write decision audit log, dropping record", e);
+                dropped.increment();
+            }
+            slot.route = null;
+            sequence++;
+            consumed.set(sequence);
+            written++;
+        }
+        return written;
+    }
+
+    private void write(Slot slot) throws IOException {
+        if (file == null || file.remaining() < DecisionRecord.SIZE) {
+            rotate();
+        }
+        int offset = file.position();
+        byte[] route = routeBytes.computeIfAbsent(slot.route == null ? "-" : slot.route, DecisionRecord::routeBytes);
+        file.putLong(offset + 8, slot.identifierHash);
+        file.putLong(offset + 16, slot.remaining);
+        file.putInt(offset + 24, slot.latencyMicros);
+        file.put(offset + 28, (byte) slot.decision.ordinal());
+        file.put(offset + 29, (byte) route.length);
+        file.put(offset + DecisionRecord.ROUTE_OFFSET, route);
+        // Timestamp last, a reader treats a record with timestamp 0 as not written yet
+        file.putLong(offset, slot.timestampMillis);
+        file.position(offset + DecisionRecord.SIZE);
+    }
+
+    private void rotate() throws IOException {
+        if (file != null) {
+            file.force();
+        }
+        long fileSize = (long) fileSizeMb * 1024 * 1024;
+        Path path = directoryPath.resolve(String.format("decisions-%013d-%04d.bin",
+                System.currentTimeMillis(), fileSequence++ % 10_000));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            file = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+        file.putInt(DecisionRecord.MAGIC);
+        file.putShort(DecisionRecord.VERSION);
+        file.putShort((short) DecisionRecord.SIZE);
+        file.putLong(System.currentTimeMillis());
+        log.debug("Started decision audit file {}", path);
+
+        List<Path> files = DecisionLogReader.listFiles(directoryPath);
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            Files.deleteIfExists(files.get(i));
+        }
+    }
+
+    private static final class Slot {
+        private volatile long published = -1;
+        private long timestampMillis;
+        private String route;
+        private long identifierHash;
+        private Decision decision;
+        private long remaining;
+        private int latencyMicros;
+    }
+}
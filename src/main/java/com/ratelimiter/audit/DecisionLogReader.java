@@ -0,0 +1,188 @@
+package com.ratelimiter.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Streams records out of the decision audit files, oldest first, or reads the
+ * latest ones newest first, stopping as soon as enough have matched.
+ *
+ * Also a command line tool, printing matching records as CSV:
+ *
+ *   java -cp app.jar -Dloader.main=com.ratelimiter.audit.DecisionLogReader
+ *     org.springframework.boot.loader.launch.PropertiesLauncher audit
+ *     --route=product-service --identifier=user:42 --decision=USER_LIMITED --since=1700000000000
+ */
+public class DecisionLogReader {
+
+    private static final String FILE_PREFIX = "decisions-";
+    private static final String FILE_SUFFIX = ".bin";
+
+    /**
+     * Audit files in the directory, oldest first
+     */
+    public static List<Path> listFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Records matching every given criterion, null criteria match everything
+     */
+    public static Predicate<DecisionRecord> filter(String route, String identifier, Decision decision,
+                                                   Long sinceMillis, Long untilMillis) {
+        String identifierHash = identifier == null ? null : Long.toHexString(DecisionRecord.hashIdentifier(identifier));
+        // Long route names are stored truncated
+        String storedRoute = route == null ? null : DecisionRecord.storedRoute(route);
+        return record -> (storedRoute == null || storedRoute.equals(record.getRoute()))
+                && (identifierHash == null || identifierHash.equals(record.getIdentifierHash()))
+                && (decision == null || decision == record.getDecision())
+                && (sinceMillis == null || record.getTimestampMillis() >= sinceMillis)
+                && (untilMillis == null || record.getTimestampMillis() < untilMillis);
+    }
+
+    public static void read(Path directory, Predicate<DecisionRecord> filter, Consumer<DecisionRecord> sink)
+            throws IOException {
+        for (Path path : listFiles(directory)) {
+            ByteBuffer buffer = map(path);
+            if (buffer == null) {
+                continue;
+            }
+            for (int offset = DecisionRecord.HEADER_SIZE;
+                 offset + DecisionRecord.SIZE <= buffer.limit();
+                 offset += DecisionRecord.SIZE) {
+                DecisionRecord record = DecisionRecord.read(buffer, offset);
+                if (record == null) {
+                    break;
+                }
+                if (filter.test(record)) {
+                    sink.accept(record);
+                }
+            }
+        }
+    }
+
+    /**
+     * The newest matching records, oldest of them first. Files and records are read
+     * newest first, so older files are never touched once limit records matched
+     */
+    public static List<DecisionRecord> readLatest(Path directory, Predicate<DecisionRecord> filter, int limit)
+            throws IOException {
+        List<Path> files = listFiles(directory);
+        List<DecisionRecord> latest = new ArrayList<>(Math.min(limit, 1024));
+        for (int f = files.size() - 1; f >= 0 && latest.size() < limit; f--) {
+            ByteBuffer buffer = map(files.get(f));
+            if (buffer == null) {
+                continue;
+            }
+            for (int slot = writtenRecords(buffer) - 1; slot >= 0 && latest.size() < limit; slot--) {
+                DecisionRecord record = DecisionRecord.read(buffer, DecisionRecord.HEADER_SIZE + slot * DecisionRecord.SIZE);
+                if (record != null && filter.test(record)) {
+                    latest.add(record);
+                }
+            }
+        }
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    /**
+     * The file mapped read-only, or null if it was rotated away or is not an audit file
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (NoSuchFileException e) {
+            // Rotated away while we were reading
+            return null;
+        }
+        return hasValidHeader(buffer) ? buffer : null;
+    }
+
+    /**
+     * Records written to a file so far. The single writer fills files front to back,
+     * so this is a binary search for the first empty slot rather than a scan
+     */
+    private static int writtenRecords(ByteBuffer buffer) {
+        int low = 0;
+        int high = (buffer.limit() - DecisionRecord.HEADER_SIZE) / DecisionRecord.SIZE;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (buffer.getLong(DecisionRecord.HEADER_SIZE + middle * DecisionRecord.SIZE) != 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean hasValidHeader(ByteBuffer buffer) {
+        return buffer.limit() >= DecisionRecord.HEADER_SIZE
+                && buffer.getInt(0) == DecisionRecord.MAGIC
+                && buffer.getShort(4) == DecisionRecord.VERSION
+                && buffer.getShort(6) == DecisionRecord.SIZE;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: DecisionLogReader <directory> [--route=name] [--identifier=user:42]"
+                    + " [--decision=ALLOWED|USER_LIMITED|GLOBAL_LIMITED] [--since=epochMillis] [--until=epochMillis]");
+            System.exit(1);
+        }
+        String route = null;
+        String identifier = null;
+        Decision decision = null;
+        Long since = null;
+        Long until = null;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--route=")) {
+                route = value;
+            } else if (arg.startsWith("--identifier=")) {
+                identifier = value;
+            } else if (arg.startsWith("--decision=")) {
+                decision = Decision.valueOf(value);
+            } else if (arg.startsWith("--since=")) {
+                since = Long.parseLong(value);
+            } else if (arg.startsWith("--until=")) {
+                until = Long.parseLong(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        System.out.println("timestamp,route,identifierHash,decision,remaining,latencyMicros");
+        read(Paths.get(args[0]), filter(route, identifier, decision, since, until), record ->
+                System.out.println(Instant.ofEpochMilli(record.getTimestampMillis()) + ","
+                        + record.getRoute() + ","
+                        + record.getIdentifierHash() + ","
+                        + record.getDecision() + ","
+                        + record.getRemaining() + ","
+                        + record.getLatencyMicros()));
+    }
+}
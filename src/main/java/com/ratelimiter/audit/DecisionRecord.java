@@ -0,0 +1,94 @@
+package com.ratelimiter.audit;
+
+import lombok.Value;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One rate limit decision as stored in the audit log.
+ *
+ * Files start with a 16 byte header (magic, version, record size, creation time)
+ * followed by fixed 64 byte records:
+ *
+ *   0  long  timestamp (epoch millis, 0 marks the unwritten end of a file)
+ *   8  long  identifier hash (FNV-1a 64 of the identifier, identifiers are not stored)
+ *  16  long  remaining
+ *  24  int   latency of the decision in microseconds
+ *  28  byte  decision
+ *  29  byte  route name length
+ *  30  2 bytes reserved
+ *  32  32 bytes route name, ASCII, truncated
+ */
+@Value
+public class DecisionRecord {
+
+    public static final int MAGIC = 0x524C4441; // "RLDA"
+    public static final short VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int SIZE = 64;
+    public static final int ROUTE_OFFSET = 32;
+    public static final int MAX_ROUTE_BYTES = 32;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    long timestampMillis;
+    String route;
+    String identifierHash;
+    Decision decision;
+    long remaining;
+    int latencyMicros;
+
+    /**
+     * Hash stored in place of the identifier, use it to look up a known identifier
+     */
+    public static long hashIdentifier(String identifier) {
+        long hash = FNV_OFFSET_BASIS;
+        if (identifier == null) {
+            return hash;
+        }
+        for (int i = 0; i < identifier.length(); i++) {
+            hash ^= identifier.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * The route name as it reads back from a record, to compare against stored routes
+     */
+    public static String storedRoute(String route) {
+        return new String(routeBytes(route), StandardCharsets.US_ASCII);
+    }
+
+    static byte[] routeBytes(String route) {
+        byte[] bytes = (route == null ? "-" : route).getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length <= MAX_ROUTE_BYTES) {
+            return bytes;
+        }
+        byte[] truncated = new byte[MAX_ROUTE_BYTES];
+        System.arraycopy(bytes, 0, truncated, 0, MAX_ROUTE_BYTES);
+        return truncated;
+    }
+
+    /**
+     * Record at the absolute offset, or null if nothing has been written there yet
+     */
+    static DecisionRecord read(ByteBuffer buffer, int offset) {
+        long timestampMillis = buffer.getLong(offset);
+        if (timestampMillis == 0) {
+            return null;
+        }
+        int routeLength = Math.min(buffer.get(offset + 29), MAX_ROUTE_BYTES);
+        byte[] route = new byte[routeLength];
+        buffer.get(offset + ROUTE_OFFSET, route);
+        return new DecisionRecord(
+                timestampMillis,
+                new String(route, StandardCharsets.US_ASCII),
+                Long.toHexString(buffer.getLong(offset + 8)),
+                Decision.fromCode(buffer.get(offset + 28)),
+                buffer.getLong(offset + 16),
+                buffer.getInt(offset + 24));
+    }
+}
@@ -0,0 +1,11 @@
+package com.ratelimiter.balancer;
+
+/**
+ * How the gateway picks one of a service's instances for a request
+ */
+public enum LoadBalancingStrategy {
+    // Sample two instances at random and take the one with the lower latency times load
+    POWER_OF_TWO_CHOICES,
+    // Take the instance with the fewest requests in flight
+    LEAST_OUTSTANDING
+}
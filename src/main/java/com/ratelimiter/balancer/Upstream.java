@@ -0,0 +1,119 @@
+package com.ratelimiter.balancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One instance of a backend service and what the gateway has seen of it: requests in
+ * flight, a moving average of its latency and its recent failures.
+ *
+ * Updates race between requests on purpose, an average that misses a sample under
+ * contention still steers traffic the same way.
+ */
+public class Upstream {
+
+    // Weight of the newest sample in the latency average
+    private static final double LATENCY_DECAY = 0.2;
+    // Added to the average so instances without samples still compare by load
+    private static final double BASE_LATENCY_NANOS = 1_000_000;
+    // Share of its traffic an instance gets at the start of slow start
+    private static final double MIN_WEIGHT = 0.1;
+
+    private final String url;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile double latencyNanos;
+    private volatile boolean ejected;
+    private volatile long ejectedUntilNanos;
+    // Set while the instance ramps up after an ejection, 0 otherwise
+    private volatile long warmingSinceNanos;
+
+    Upstream(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    void acquire() {
+        outstanding.incrementAndGet();
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * False while ejected. Once the ejection has run out the instance is taken back, slow starting
+     */
+    boolean isAvailable(long now) {
+        if (!ejected) {
+            return true;
+        }
+        if (now - ejectedUntilNanos < 0) {
+            return false;
+        }
+        warmingSinceNanos = now;
+        consecutiveFailures.set(0);
+        ejected = false;
+        return true;
+    }
+
+    /**
+     * Share of a healthy instance's traffic this one should get, growing linearly from
+     * MIN_WEIGHT to 1 over the slow start after it returns
+     */
+    double weight(long now, long slowStartNanos) {
+        long warmingSince = warmingSinceNanos;
+        if (warmingSince == 0) {
+            return 1;
+        }
+        double elapsed = (double) (now - warmingSince) / Math.max(1, slowStartNanos);
+        if (elapsed >= 1) {
+            warmingSinceNanos = 0;
+            return 1;
+        }
+        return Math.max(MIN_WEIGHT, elapsed);
+    }
+
+    /**
+     * Expected cost of sending one more request here, lower is better
+     */
+    double cost(long now, long slowStartNanos) {
+        return (latencyNanos + BASE_LATENCY_NANOS) * (outstanding.get() + 1) / weight(now, slowStartNanos);
+    }
+
+    /**
+     * Load of this instance relative to its weight, for least outstanding
+     */
+    double load(long now, long slowStartNanos) {
+        return (outstanding.get() + 1) / weight(now, slowStartNanos);
+    }
+
+    void recordSuccess(long latency) {
+        double average = latencyNanos;
+        latencyNanos = average == 0 ? latency : average + LATENCY_DECAY * (latency - average);
+        consecutiveFailures.set(0);
+    }
+
+    /**
+     * Counts a failure and ejects the instance once it has failed failuresToEject times in a row.
+     * Returns true if this failure ejected it
+     */
+    boolean recordFailure(int failuresToEject, long ejectionNanos, long now) {
+        if (consecutiveFailures.incrementAndGet() < failuresToEject || ejected) {
+            return false;
+        }
+        ejectedUntilNanos = now + ejectionNanos;
+        ejected = true;
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+package com.ratelimiter.balancer;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the instance of a service each request goes to, by the service's strategy.
+ *
+ * Health is passive: an instance that fails ejectAfterFailures requests in a row (5xx
+ * or no response) gets no traffic for ejectionMillis, then is taken back with a weight
+ * growing over slowStartMillis so it isn't flooded while it warms up. If every instance
+ * is ejected requests are spread over all of them rather than failed.
+ *
+ * Callers acquire the instance they send to and must call release exactly once.
+ */
+@Slf4j
+@Component
+public class UpstreamBalancer {
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * The instance to send the next request for a service to, counted as in flight
+     */
+    public Upstream acquire(ServiceConfig service) {
+        Upstream upstream = choose(service, group(service).upstreams);
+        upstream.acquire();
+        return upstream;
+    }
+
+    /**
+     * Ends a request to an instance with the status it answered, 0 if it didn't answer and
+     * -1 if the request was cancelled before it could, which counts as neither success nor failure
+     */
+    public void release(ServiceConfig service, Upstream upstream, int status, long elapsedNanos) {
+        upstream.release();
+        if (status < 0) {
+            return;
+        }
+        if (status != 0 && status < 500) {
+            upstream.recordSuccess(elapsedNanos);
+            return;
+        }
+        long ejectionNanos = TimeUnit.MILLISECONDS.toNanos(service.getEjectionMillis());
+        if (upstream.recordFailure(service.getEjectAfterFailures(), ejectionNanos, System.nanoTime())) {
+            log.warn("Ejected {} instance {} for {} ms after {} consecutive failures",
+                    service.getName(), upstream.getUrl(), service.getEjectionMillis(), service.getEjectAfterFailures());
+        }
+    }
+
+    /**
+     * Instances of a service as last seen, for monitoring
+     */
+    public List<Upstream> upstreams(ServiceConfig service) {
+        return List.of(group(service).upstreams);
+    }
+
+    private Upstream choose(ServiceConfig service, Upstream[] upstreams) {
+        if (upstreams.length == 1) {
+            return upstreams[0];
+        }
+        long now = System.nanoTime();
+        long slowStartNanos = TimeUnit.MILLISECONDS.toNanos(service.getSlowStartMillis());
+        Upstream chosen = service.getLoadBalancing() == LoadBalancingStrategy.LEAST_OUTSTANDING
+                ? leastOutstanding(upstreams, now, slowStartNanos)
+                : powerOfTwoChoices(upstreams, now, slowStartNanos);
+        if (chosen == null) {
+            log.debug("All instances of {} are ejected, ignoring ejections", service.getName());
+            chosen = upstreams[ThreadLocalRandom.current().nextInt(upstreams.length)];
+        }
+        return chosen;
+    }
+
+    private Upstream powerOfTwoChoices(Upstream[] upstreams, long now, long slowStartNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(upstreams.length);
+        int second = random.nextInt(upstreams.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        Upstream a = upstreams[first];
+        Upstream b = upstreams[second];
+        boolean aAvailable = a.isAvailable(now);
+        boolean bAvailable = b.isAvailable(now);
+        if (aAvailable && bAvailable) {
+            return a.cost(now, slowStartNanos) <= b.cost(now, slowStartNanos) ? a : b;
+        }
+        if (aAvailable || bAvailable) {
+            return aAvailable ? a : b;
+        }
+        // Both samples ejected, look at the rest
+        return leastOutstanding(upstreams, now, slowStartNanos);
+    }
+
+    private Upstream leastOutstanding(Upstream[] upstreams, long now, long slowStartNanos) {
+        // Start at a random instance so ties don't all go to the first one
+        int start = ThreadLocalRandom.current().nextInt(upstreams.length);
+        Upstream best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < upstreams.length; i++) {
+            Upstream upstream = upstreams[(start + i) % upstreams.length];
+            if (!upstream.isAvailable(now)) {
+                continue;
+            }
+            double load = upstream.load(now, slowStartNanos);
+            if (load < bestLoad) {
+                best = upstream;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private Group group(ServiceConfig service) {
+        Group group = groups.get(service.getName());
+        // Same config object means same instances, skip the comparison
+        if (group != null && group.service == service) {
+            return group;
+        }
+        return groups.compute(service.getName(), (name, existing) -> {
+            List<String> urls = service.instanceUrls();
+            if (urls.isEmpty()) {
+                throw new IllegalStateException("No targetUrl configured for service " + name);
+            }
+            // Keep the state of instances that are still listed
+            Map<String, Upstream> previous = new HashMap<>();
+            if (existing != null) {
+                for (Upstream upstream : existing.upstreams) {
+                    previous.put(upstream.getUrl(), upstream);
+                }
+            }
+            Upstream[] upstreams = new Upstream[urls.size()];
+            for (int i = 0; i < upstreams.length; i++) {
+                upstreams[i] = previous.getOrDefault(urls.get(i), new Upstream(urls.get(i)));
+            }
+            if (!previous.keySet().equals(Set.copyOf(urls))) {
+                log.info("Balancing {} across {} using {}", name, urls, service.getLoadBalancing());
+            }
+            return new Group(service, upstreams);
+        });
+    }
+
+    private static final class Group {
+        private final ServiceConfig service;
+        private final Upstream[] upstreams;
+
+        private Group(ServiceConfig service, Upstream[] upstreams) {
+            this.service = service;
+            this.upstreams = upstreams;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ratelimiter.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-node cache of buckets known to be empty, keyed by bucket key with the
+ * reset time in milliseconds Redis reported when it rejected them.
+ *
+ * Each entry expires exactly at its reset time, so until then retries from a
+ * blocked client are rejected without a Redis call. Only rejections are cached,
+ * a bucket is never allowed from here.
+ */
+@Component
+public class BlockedKeyCache {
+
+    private final Cache<String, Long> blockedUntil;
+    private final boolean enabled;
+
+    public BlockedKeyCache(@Value("${rate-limiter.blocked-cache.enabled:true}") boolean enabled,
+                           @Value("${rate-limiter.blocked-cache.max-keys:100000}") long maxKeys,
+                           MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.blockedUntil = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfter(new ResetTimeExpiry())
+                .recordStats()
+                .build();
+        // cache.gets (hit/miss), cache.size and cache.evictions tagged cache=blocked-keys
+        CaffeineCacheMetrics.monitor(meterRegistry, blockedUntil, "blocked-keys");
+    }
+
+    /**
+     * The cached rejection for a bucket, or null if it is not known to be blocked
+     */
+    public RateLimiterResponse getBlocked(BucketSpec bucket) {
+        if (!enabled) {
+            return null;
+        }
+        Long resetAtMillis = blockedUntil.getIfPresent(bucket.getKey());
+        if (resetAtMillis == null) {
+            return null;
+        }
+        return RateLimiterResponse.blockedUntil(bucket.getLimit(), resetAtMillis, "Rate limit exceeded");
+    }
+
+    /**
+     * Remember a rejection until its reset time, in Unix milliseconds
+     */
+    public void markBlocked(BucketSpec bucket, long resetAtMillis) {
+        if (enabled && resetAtMillis > System.currentTimeMillis()) {
+            blockedUntil.put(bucket.getKey(), resetAtMillis);
+        }
+    }
+
+    public void invalidate(String key) {
+        blockedUntil.invalidate(key);
+    }
+
+    private static final class ResetTimeExpiry implements Expiry<String, Long> {
+
+        @Override
+        public long expireAfterCreate(String key, Long resetAt, long currentTime) {
+            return untilReset(resetAt);
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Long resetAt, long currentTime, long currentDuration) {
+            return untilReset(resetAt);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Long resetAt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private static long untilReset(long resetAtMillis) {
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(resetAtMillis - System.currentTimeMillis()));
+        }
+    }
+}
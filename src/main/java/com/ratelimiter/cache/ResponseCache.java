@@ -0,0 +1,342 @@
+package com.ratelimiter.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ratelimiter.requestDto.ServiceConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Shared cache of backend GET responses for services that enable it, following the
+ * HTTP caching rules a shared cache must (RFC 9111), bounded by total body bytes.
+ *
+ * A response is stored only if it is a 200 with a known length, an explicit
+ * s-maxage or max-age, and no no-store, private, Vary or Set-Cookie. Responses to
+ * requests with Authorization need public or s-maxage. Stale entries with an ETag or
+ * Last-Modified are revalidated with a conditional request, and a 304 makes them
+ * fresh again. The upstream Age counts against the freshness lifetime.
+ *
+ * Concurrent misses for the same URL wait for one backend fetch. If that fetch fails
+ * they fail with its error. If its response can't be stored each of them fetches its
+ * own, and if its caller goes away one of them fetches for the rest.
+ *
+ * The cache sits behind the proxy, so cached hits are rate limited like any request.
+ */
+@Slf4j
+@Component
+public class ResponseCache {
+
+    // Completes the in-flight future of a fetch whose response could not be stored
+    private static final CachedResponse NOT_STORED = new CachedResponse(null, new HttpHeaders(), new byte[0], 0, 0);
+    // Completes the in-flight future of a fetch cancelled before it got a response
+    private static final CachedResponse ABANDONED = new CachedResponse(null, new HttpHeaders(), new byte[0], 0, 0);
+    private static final String CACHE_STATUS_HEADER = "X-Cache";
+
+    private final Cache<String, CachedResponse> entries;
+    private final Map<String, CompletableFuture<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> lookups = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final long maxEntryBytes;
+    private final long revalidateWindowNanos;
+
+    public ResponseCache(@Value("${rate-limiter.response-cache.enabled:true}") boolean enabled,
+                         @Value("${rate-limiter.response-cache.max-bytes:67108864}") long maxBytes,
+                         @Value("${rate-limiter.response-cache.max-entry-bytes:1048576}") long maxEntryBytes,
+                         @Value("${rate-limiter.response-cache.revalidate-window-seconds:600}") long revalidateWindowSeconds,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxEntryBytes = maxEntryBytes;
+        this.revalidateWindowNanos = TimeUnit.SECONDS.toNanos(revalidateWindowSeconds);
+        this.meterRegistry = meterRegistry;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse response) -> response.weight())
+                .expireAfter(new RetentionExpiry())
+                .recordStats()
+                .build();
+        // cache.gets, cache.size, cache.evictions and cache.eviction.weight tagged cache=responses
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "responses");
+    }
+
+    /**
+     * The response to a GET, from the cache when it holds a fresh one. Otherwise from
+     * backend, which is called with any conditional headers to add to the request.
+     * Entries are keyed by the backend path and query, the same on every instance
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> get(ServiceConfig service, String pathAndQuery, HttpHeaders requestHeaders,
+                                                      Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend) {
+        if (!enabled || !service.isResponseCacheEnabled() || !isCacheableRequest(requestHeaders)) {
+            return backend.apply(HttpHeaders.EMPTY);
+        }
+        String key = service.getName() + " " + pathAndQuery;
+        CachedResponse cached = entries.getIfPresent(key);
+        if (cached != null && cached.isFresh(System.nanoTime())) {
+            count(service, "hit");
+            return Mono.just(cached.toResponse("HIT"));
+        }
+        CompletableFuture<CachedResponse> pending = new CompletableFuture<>();
+        CompletableFuture<CachedResponse> leader = inFlight.putIfAbsent(key, pending);
+        if (leader != null) {
+            // Someone is already fetching this URL, use their response if it could be stored.
+            // One follower going away must not cancel the fetch for the others
+            count(service, "coalesced");
+            return Mono.fromFuture(leader, true).flatMap(response -> {
+                if (response == ABANDONED) {
+                    return get(service, pathAndQuery, requestHeaders, backend);
+                }
+                if (response == NOT_STORED) {
+                    return backend.apply(HttpHeaders.EMPTY).map(own -> withCacheStatus(own, "MISS"));
+                }
+                return Mono.just(response.toResponse("HIT"));
+            });
+        }
+        count(service, cached == null ? "miss" : "revalidate");
+        // Deferred so a backend that throws still ends the fetch for its followers
+        return Mono.defer(() -> fetch(key, cached, requestHeaders, backend, pending))
+                .doOnError(pending::completeExceptionally)
+                .doFinally(signal -> {
+                    inFlight.remove(key, pending);
+                    pending.complete(signal == SignalType.CANCEL ? ABANDONED : NOT_STORED);
+                });
+    }
+
+    private Mono<ResponseEntity<Flux<DataBuffer>>> fetch(String key, CachedResponse stale, HttpHeaders requestHeaders,
+                                                         Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend,
+                                                         CompletableFuture<CachedResponse> pending) {
+        HttpHeaders conditional = new HttpHeaders();
+        if (stale != null) {
+            if (stale.headers.getETag() != null) {
+                conditional.setIfNoneMatch(stale.headers.getETag());
+            }
+            if (stale.headers.getLastModified() >= 0) {
+                conditional.setIfModifiedSince(stale.headers.getLastModified());
+            }
+        }
+        return backend.apply(conditional).flatMap(response -> {
+            long now = System.nanoTime();
+            if (stale != null && response.getStatusCode().value() == HttpStatus.NOT_MODIFIED.value()) {
+                long freshNanos = freshnessNanos(response.getHeaders(), requestHeaders);
+                CachedResponse refreshed = stale.revalidated(response.getHeaders(),
+                        now, freshNanos >= 0 ? freshNanos : 0, revalidateWindowNanos);
+                entries.put(key, refreshed);
+                pending.complete(refreshed);
+                return discard(response.getBody()).thenReturn(refreshed.toResponse("REVALIDATED"));
+            }
+            long freshNanos = response.getStatusCode().value() == HttpStatus.OK.value()
+                    ? freshnessNanos(response.getHeaders(), requestHeaders) : -1;
+            long length = response.getHeaders().getContentLength();
+            if (freshNanos < 0 || length < 0 || length > maxEntryBytes) {
+                entries.invalidate(key);
+                pending.complete(NOT_STORED);
+                return Mono.just(withCacheStatus(response, "MISS"));
+            }
+            return DataBufferUtils.join(response.getBody())
+                    .map(buffer -> {
+                        byte[] body = new byte[buffer.readableByteCount()];
+                        buffer.read(body);
+                        DataBufferUtils.release(buffer);
+                        return body;
+                    })
+                    .defaultIfEmpty(new byte[0])
+                    .map(body -> {
+                        boolean revalidatable = response.getHeaders().getETag() != null
+                                || response.getHeaders().getLastModified() >= 0;
+                        CachedResponse stored = new CachedResponse(response.getStatusCode().value(),
+                                response.getHeaders(), body, now + freshNanos,
+                                now + freshNanos + (revalidatable ? revalidateWindowNanos : 0));
+                        entries.put(key, stored);
+                        pending.complete(stored);
+                        return stored.toResponse("MISS");
+                    });
+        });
+    }
+
+    /**
+     * Requests a shared cache may answer. Conditional and range requests are left to the backend
+     */
+    private static boolean isCacheableRequest(HttpHeaders requestHeaders) {
+        String cacheControl = requestHeaders.getCacheControl();
+        if (cacheControl != null) {
+            String directives = cacheControl.toLowerCase(Locale.ROOT);
+            if (directives.contains("no-store") || directives.contains("no-cache")) {
+                return false;
+            }
+        }
+        return !requestHeaders.containsKey(HttpHeaders.IF_NONE_MATCH)
+                && !requestHeaders.containsKey(HttpHeaders.IF_MODIFIED_SINCE)
+                && !requestHeaders.containsKey(HttpHeaders.RANGE);
+    }
+
+    /**
+     * How long the response stays fresh in a shared cache, in nanos, or -1 if it must not be stored.
+     * The time it already spent in caches upstream, its Age, is taken off the lifetime
+     */
+    private static long freshnessNanos(HttpHeaders responseHeaders, HttpHeaders requestHeaders) {
+        if (responseHeaders.containsKey(HttpHeaders.VARY) || responseHeaders.containsKey(HttpHeaders.SET_COOKIE)) {
+            return -1;
+        }
+        long maxAge = -1;
+        long sharedMaxAge = -1;
+        boolean isPublic = false;
+        boolean noCache = false;
+        for (String value : responseHeaders.getOrEmpty(HttpHeaders.CACHE_CONTROL)) {
+            for (String directive : value.split(",")) {
+                String name = directive.trim().toLowerCase(Locale.ROOT);
+                if (name.equals("no-store") || name.equals("private")) {
+                    return -1;
+                } else if (name.equals("no-cache")) {
+                    noCache = true;
+                } else if (name.equals("public")) {
+                    isPublic = true;
+                } else if (name.startsWith("s-maxage=")) {
+                    sharedMaxAge = seconds(name.substring("s-maxage=".length()));
+                } else if (name.startsWith("max-age=")) {
+                    maxAge = seconds(name.substring("max-age=".length()));
+                }
+            }
+        }
+        if (requestHeaders.containsKey(HttpHeaders.AUTHORIZATION) && !isPublic && sharedMaxAge < 0) {
+            return -1;
+        }
+        long lifetime = sharedMaxAge >= 0 ? sharedMaxAge : maxAge;
+        if (lifetime < 0) {
+            // No explicit lifetime, this cache doesn't guess one
+            return -1;
+        }
+        return noCache ? 0 : TimeUnit.SECONDS.toNanos(Math.max(0, lifetime - ageSeconds(responseHeaders)));
+    }
+
+    /**
+     * The Age of a response in seconds, 0 when it has none
+     */
+    private static long ageSeconds(HttpHeaders responseHeaders) {
+        String age = responseHeaders.getFirst(HttpHeaders.AGE);
+        return age == null ? 0 : Math.max(0, seconds(age.trim()));
+    }
+
+    private static long seconds(String value) {
+        try {
+            return Long.parseLong(value.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Mono<Void> discard(Flux<DataBuffer> body) {
+        return body.doOnNext(DataBufferUtils::release).then();
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> withCacheStatus(ResponseEntity<Flux<DataBuffer>> response,
+                                                                     String status) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(CACHE_STATUS_HEADER, status);
+        return ResponseEntity.status(response.getStatusCode()).headers(headers).body(response.getBody());
+    }
+
+    private void count(ServiceConfig service, String result) {
+        lookups.computeIfAbsent(service.getName() + ":" + result, k -> Counter.builder("ratelimiter.response.cache")
+                .description("Gateway response cache lookups")
+                .tag("service", service.getName())
+                .tag("result", result)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    private static final class CachedResponse {
+        private final Integer status;
+        private final HttpHeaders headers;
+        private final byte[] body;
+        private final long freshUntilNanos;
+        private final long retainUntilNanos;
+        private final long storedAtNanos = System.nanoTime();
+        // Age when stored, from caches upstream
+        private final long initialAgeSeconds;
+
+        private CachedResponse(Integer status, HttpHeaders headers, byte[] body,
+                               long freshUntilNanos, long retainUntilNanos) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.freshUntilNanos = freshUntilNanos;
+            this.retainUntilNanos = retainUntilNanos;
+            this.initialAgeSeconds = ageSeconds(headers);
+        }
+
+        boolean isFresh(long now) {
+            return now < freshUntilNanos;
+        }
+
+        /**
+         * The entry after a 304, with the headers it carried merged in
+         */
+        CachedResponse revalidated(HttpHeaders notModifiedHeaders, long now, long freshNanos, long revalidateWindowNanos) {
+            HttpHeaders merged = new HttpHeaders();
+            merged.putAll(headers);
+            // The stored Age was for the old response, the 304 brings its own if any
+            merged.remove(HttpHeaders.AGE);
+            notModifiedHeaders.forEach((name, values) -> {
+                if (!name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+                    merged.put(name, values);
+                }
+            });
+            return new CachedResponse(status, merged, body, now + freshNanos, now + freshNanos + revalidateWindowNanos);
+        }
+
+        ResponseEntity<Flux<DataBuffer>> toResponse(String cacheStatus) {
+            HttpHeaders responseHeaders = new HttpHeaders();
+            responseHeaders.putAll(headers);
+            responseHeaders.set(HttpHeaders.AGE, String.valueOf(
+                    initialAgeSeconds + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - storedAtNanos)));
+            responseHeaders.set(CACHE_STATUS_HEADER, cacheStatus);
+            // Wrapping shares the array, each hit costs no copy of the body
+            return ResponseEntity.status(status)
+                    .headers(responseHeaders)
+                    .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body)));
+        }
+
+        int weight() {
+            return body.length + 64 * headers.size();
+        }
+    }
+
+    private static final class RetentionExpiry implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+            return Math.max(0, response.retainUntilNanos - System.nanoTime());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return Math.max(0, response.retainUntilNanos - System.nanoTime());
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ratelimiter.concurrency;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adaptive in-flight limits of the services with adaptiveConcurrencyEnabled, one
+ * GradientLimit each. A request that finds its service at the limit should be turned
+ * away at once instead of queueing for a backend that is already slowing down.
+ *
+ * Publishes ratelimiter.concurrency.limit and .in_flight gauges and a
+ * ratelimiter.concurrency.rejected counter, tagged with the service name.
+ */
+@Slf4j
+@Component
+public class ConcurrencyLimiter {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ServiceLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * A slot for one request to the service, null if the service is at its limit.
+     * Services without adaptive concurrency always get NO_LIMIT
+     */
+    public Permit tryAcquire(ServiceConfig service) {
+        if (!service.isAdaptiveConcurrencyEnabled()) {
+            return Permit.NO_LIMIT;
+        }
+        ServiceLimit serviceLimit = forService(service);
+        if (serviceLimit.limit.tryAcquire()) {
+            return new Permit(serviceLimit.limit);
+        }
+        serviceLimit.rejected.increment();
+        log.debug("Concurrency limit {} of {} reached", serviceLimit.limit.getLimit(), service.getName());
+        return null;
+    }
+
+    private ServiceLimit forService(ServiceConfig service) {
+        ServiceLimit serviceLimit = limits.get(service.getName());
+        // Same config object means same bounds, skip the comparison
+        if (serviceLimit != null && serviceLimit.service == service) {
+            return serviceLimit;
+        }
+        return limits.compute(service.getName(), (name, existing) -> {
+            if (existing != null && existing.hasBoundsOf(service)) {
+                return new ServiceLimit(service, existing.limit, existing.rejected);
+            }
+            if (existing != null) {
+                // Requests still holding the old limit release into it, the new one starts empty
+                meterRegistry.remove(existing.limitGauge);
+                meterRegistry.remove(existing.inFlightGauge);
+            }
+            GradientLimit limit = new GradientLimit(name, service.getInitialConcurrencyLimit(),
+                    service.getMinConcurrencyLimit(), service.getMaxConcurrencyLimit());
+            log.info("Adaptive concurrency for {} - initial: {}, min: {}, max: {}", name,
+                    service.getInitialConcurrencyLimit(), service.getMinConcurrencyLimit(), service.getMaxConcurrencyLimit());
+            Counter rejected = existing != null ? existing.rejected : Counter.builder("ratelimiter.concurrency.rejected")
+                    .description("Requests turned away because their backend was at its concurrency limit")
+                    .tag("service", name)
+                    .register(meterRegistry);
+            return new ServiceLimit(service, limit, rejected);
+        });
+    }
+
+    /**
+     * A request's slot, to be released exactly once
+     */
+    public static class Permit {
+
+        static final Permit NO_LIMIT = new Permit(null);
+
+        private final GradientLimit limit;
+
+        Permit(GradientLimit limit) {
+            this.limit = limit;
+        }
+
+        /**
+         * The backend answered after rttNanos. dropped if it didn't answer or said it was overloaded
+         */
+        public void release(long rttNanos, boolean dropped) {
+            if (limit != null) {
+                limit.release(rttNanos, dropped);
+            }
+        }
+
+        /**
+         * The request ended before the backend answered, e.g. the client went away
+         */
+        public void cancel() {
+            if (limit != null) {
+                limit.release();
+            }
+        }
+    }
+
+    private final class ServiceLimit {
+        private final ServiceConfig service;
+        private final GradientLimit limit;
+        private final Counter rejected;
+        private final Gauge limitGauge;
+        private final Gauge inFlightGauge;
+
+        private ServiceLimit(ServiceConfig service, GradientLimit limit, Counter rejected) {
+            this.service = service;
+            this.limit = limit;
+            this.rejected = rejected;
+            // Registering again returns the gauge already bound to this limit
+            this.limitGauge = Gauge.builder("ratelimiter.concurrency.limit", limit, GradientLimit::getLimit)
+                    .description("Current adaptive in-flight limit of the backend")
+                    .tag("service", service.getName())
+                    .register(meterRegistry);
+            this.inFlightGauge = Gauge.builder("ratelimiter.concurrency.in_flight", limit, GradientLimit::getInFlight)
+                    .description("Requests in flight to the backend under its concurrency limit")
+                    .tag("service", service.getName())
+                    .register(meterRegistry);
+        }
+
+        private boolean hasBoundsOf(ServiceConfig other) {
+            return service.getInitialConcurrencyLimit() == other.getInitialConcurrencyLimit()
+                    && service.getMinConcurrencyLimit() == other.getMinConcurrencyLimit()
+                    && service.getMaxConcurrencyLimit() == other.getMaxConcurrencyLimit();
+        }
+    }
+}
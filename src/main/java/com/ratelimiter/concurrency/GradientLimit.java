@@ -0,0 +1,140 @@
+package com.ratelimiter.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-flight limit of one backend that follows its latency, after the gradient algorithm
+ * of Netflix concurrency-limits.
+ *
+ * A long average of the round trip stands for the latency without queueing, a short one
+ * for the latency now. Their ratio, the gradient, is 1 while the backend keeps up and
+ * falls as requests start queueing in it, and the limit is scaled by it each sample,
+ * plus sqrt(limit) of headroom so it keeps probing upwards. Requests that get no answer
+ * cut the limit by a tenth like AIMD. The limit doesn't grow while under half of it is used.
+ */
+public class GradientLimit {
+
+    private static final double LONG_DECAY = 1.0 / 600;
+    private static final double SHORT_DECAY = 1.0 / 10;
+    // Share of the new estimate taken per sample, damps swings
+    private static final double SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final String service;
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    // Bits of the double estimate, drops back it off without taking the lock
+    private final AtomicLong estimatedLimit = new AtomicLong();
+    private double longRttNanos;
+    private double shortRttNanos;
+
+    GradientLimit(String service, int initialLimit, int minLimit, int maxLimit) {
+        this.service = service;
+        this.minLimit = minLimit;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.estimatedLimit.set(Double.doubleToLongBits(Math.min(this.maxLimit, Math.max(minLimit, initialLimit))));
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public int getLimit() {
+        return (int) estimate();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Takes a slot if fewer requests than the limit are in flight
+     */
+    boolean tryAcquire() {
+        int limit = getLimit();
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Gives the slot back without a sample, for requests cancelled before an answer
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Gives the slot back and adjusts the limit to how the request went
+     */
+    void release(long rttNanos, boolean dropped) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        // Every drop backs off, even while a latency sample is being applied
+        if (dropped) {
+            backOff();
+            return;
+        }
+        // Latency samples that arrive while another is being applied are skipped, the averages barely miss them
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            update(rttNanos, inFlightBefore);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void backOff() {
+        long current;
+        double next;
+        do {
+            current = estimatedLimit.get();
+            next = Math.max(minLimit, Double.longBitsToDouble(current) * DROP_BACKOFF);
+        } while (!estimatedLimit.compareAndSet(current, Double.doubleToLongBits(next)));
+    }
+
+    private void update(long rttNanos, int inFlightBefore) {
+        if (longRttNanos == 0) {
+            longRttNanos = rttNanos;
+            shortRttNanos = rttNanos;
+            return;
+        }
+        shortRttNanos += SHORT_DECAY * (rttNanos - shortRttNanos);
+        longRttNanos += LONG_DECAY * (rttNanos - longRttNanos);
+        // After a slow spell the long average is left too high, pull it down so the
+        // limit can't grow on a latency that is no longer the baseline
+        if (longRttNanos / shortRttNanos > 2) {
+            longRttNanos *= 0.95;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, longRttNanos / shortRttNanos));
+        // Retried against the latest estimate if a drop backed it off meanwhile
+        long current;
+        double next;
+        do {
+            current = estimatedLimit.get();
+            double estimate = Double.longBitsToDouble(current);
+            // Backend is not the bottleneck, nothing to learn about a higher limit
+            if (inFlightBefore * 2 < estimate) {
+                return;
+            }
+            double newLimit = estimate * gradient + Math.sqrt(estimate);
+            newLimit = estimate * (1 - SMOOTHING) + newLimit * SMOOTHING;
+            next = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        } while (!estimatedLimit.compareAndSet(current, Double.doubleToLongBits(next)));
+    }
+
+    private double estimate() {
+        return Double.longBitsToDouble(estimatedLimit.get());
+    }
+}
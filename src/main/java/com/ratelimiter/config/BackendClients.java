@@ -0,0 +1,139 @@
+package com.ratelimiter.config;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One WebClient per backend service, each with its own connection pool sized by the
+ * service's settings, so a slow backend can only exhaust its own connections.
+ *
+ * Pools publish reactor.netty.connection.provider.* meters (active, idle, pending and
+ * max connections, tagged with the service name) to show saturation. A client is
+ * rebuilt when its service's connection settings change.
+ */
+@Slf4j
+@Component
+public class BackendClients {
+
+    private static final String WRITE_TIMEOUT_HANDLER = "rateLimiterWriteTimeout";
+
+    private final Map<String, Backend> backends = new ConcurrentHashMap<>();
+
+    /**
+     * The client for a service, created on first use
+     */
+    public WebClient forService(ServiceConfig service) {
+        Backend backend = backends.get(service.getName());
+        // Same config object means same settings, skip the comparison
+        if (backend != null && backend.service == service) {
+            return backend.webClient;
+        }
+        return backends.compute(service.getName(), (name, existing) -> {
+            if (existing != null && PoolSettings.of(existing.service).equals(PoolSettings.of(service))) {
+                return new Backend(service, existing.webClient, existing.connectionProvider);
+            }
+            if (existing != null) {
+                log.info("Connection settings of {} changed, replacing its pool", name);
+                existing.connectionProvider.disposeLater().subscribe();
+            }
+            return create(service);
+        }).webClient;
+    }
+
+    @PreDestroy
+    public void close() {
+        backends.values().forEach(backend -> backend.connectionProvider.dispose());
+        backends.clear();
+    }
+
+    private Backend create(ServiceConfig service) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(service.getName())
+                .maxConnections(service.getMaxConnections())
+                .pendingAcquireMaxCount(service.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(service.getPendingAcquireTimeoutMillis()))
+                .maxIdleTime(Duration.ofMillis(service.getMaxIdleTimeMillis()))
+                .maxLifeTime(Duration.ofMinutes(30))
+                .metrics(true)
+                .build();
+
+        long timeoutMillis = service.getResponseTimeoutMillis();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(service.isHttp2() ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) service.getConnectTimeoutMillis())
+                .responseTimeout(Duration.ofMillis(timeoutMillis))
+                // responseTimeout bounds the wait for each response. The write timeout is only
+                // there while a request is sent, so idle pooled connections are never closed by it
+                .doOnRequest((request, conn) -> conn.addHandlerLast(WRITE_TIMEOUT_HANDLER,
+                        new WriteTimeoutHandler(timeoutMillis, TimeUnit.MILLISECONDS)))
+                .doAfterRequest((request, conn) -> conn.removeHandler(WRITE_TIMEOUT_HANDLER));
+
+        WebClient webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader(HttpHeaders.USER_AGENT, "RateLimiter-Gateway/1.0")
+                .filter(logRequest())
+                .filter(logResponse())
+                .build();
+        log.info("Created connection pool for {} - Max connections: {}, Pending: {}, HTTP/2: {}",
+                service.getName(), service.getMaxConnections(), service.getPendingAcquireMaxCount(), service.isHttp2());
+        return new Backend(service, webClient, connectionProvider);
+    }
+
+    private ExchangeFilterFunction logRequest() {
+        return ExchangeFilterFunction.ofRequestProcessor(request -> {
+            log.debug("Request: {} {}", request.method(), request.url());
+            return Mono.just(request);
+        });
+    }
+
+    private ExchangeFilterFunction logResponse() {
+        return ExchangeFilterFunction.ofResponseProcessor(response -> {
+            log.debug("Response Status: {}", response.statusCode());
+            return Mono.just(response);
+        });
+    }
+
+    private static final class Backend {
+        private final ServiceConfig service;
+        private final WebClient webClient;
+        private final ConnectionProvider connectionProvider;
+
+        private Backend(ServiceConfig service, WebClient webClient, ConnectionProvider connectionProvider) {
+            this.service = service;
+            this.webClient = webClient;
+            this.connectionProvider = connectionProvider;
+        }
+    }
+
+    /**
+     * The settings a pool is built from, to tell whether an updated service needs a new one
+     */
+    private record PoolSettings(int maxConnections, int pendingAcquireMaxCount, long pendingAcquireTimeoutMillis,
+                                long maxIdleTimeMillis, long connectTimeoutMillis, long responseTimeoutMillis,
+                                boolean http2) {
+
+        static PoolSettings of(ServiceConfig service) {
+            return new PoolSettings(service.getMaxConnections(), service.getPendingAcquireMaxCount(),
+                    service.getPendingAcquireTimeoutMillis(), service.getMaxIdleTimeMillis(),
+                    service.getConnectTimeoutMillis(), service.getResponseTimeoutMillis(), service.isHttp2());
+        }
+    }
+}
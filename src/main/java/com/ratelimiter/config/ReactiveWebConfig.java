@@ -0,0 +1,24 @@
+package com.ratelimiter.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Reactive runtime, enabled with spring.main.web-application-type=reactive (the 'reactive' profile).
+ * Tomcat is on the classpath for the servlet runtime, so Netty is picked explicitly here
+ * to keep the whole request path on the event loop.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveWebConfig {
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        log.info("Starting reactive gateway on Netty");
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -1,6 +1,10 @@
 package com.ratelimiter.config;
 
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.LettuceClientOptionsBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -26,4 +30,22 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * Leaves failed or unreachable nodes out of Lettuce's view of the cluster, so slots move to
+     * the new primary after a failover. Only applies when spring.data.redis.cluster.nodes is set.
+     * Amends the options Boot builds, topology refresh is set with the
+     * spring.data.redis.lettuce.cluster.refresh.* properties
+     */
+    @Bean
+    @ConditionalOnProperty("spring.data.redis.cluster.nodes")
+    public LettuceClientOptionsBuilderCustomizer clusterNodeFilter() {
+        return builder -> {
+            if (builder instanceof ClusterClientOptions.Builder clusterBuilder) {
+                clusterBuilder.nodeFilter(node -> !(node.is(RedisClusterNode.NodeFlag.FAIL)
+                        || node.is(RedisClusterNode.NodeFlag.EVENTUAL_FAIL)
+                        || node.is(RedisClusterNode.NodeFlag.NOADDR)));
+            }
+        };
+    }
 }
@@ -43,10 +43,11 @@ public class ServiceBootstrap implements ApplicationRunner {
 
     private void logRegisteredServices() {
         serviceRegistry.getAllServices().forEach(service ->
-                log.info("Service: {} | Path: {} | Target: {} | Per-User: {} req/min | Global: {} req/sec",
+                log.info("Service: {} | Path: {} | Target: {} | Algorithm: {} | Per-User: {} req/min | Global: {} req/sec",
                         service.getName(),
                         service.getPathPrefix(),
-                        service.getTargetUrl(),
+                        service.instanceUrls(),
+                        service.getAlgorithm(),
                         service.getPerUserLimit(),
                         service.getGlobalLimit())
         );
@@ -1,64 +0,0 @@
-package com.ratelimiter.config;
-
-import io.netty.channel.ChannelOption;
-import io.netty.handler.timeout.ReadTimeoutHandler;
-import io.netty.handler.timeout.WriteTimeoutHandler;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
-import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.resources.ConnectionProvider;
-
-import java.time.Duration;
-import java.util.concurrent.TimeUnit;
-
-@Slf4j
-@Configuration
-public class WebClientConfig {
-
-    @Bean
-    public WebClient webClient() {
-
-        ConnectionProvider connectionProvider = ConnectionProvider.builder("ratelimiter-pool")
-                .maxConnections(500)
-                .maxIdleTime(Duration.ofSeconds(60))
-                .maxLifeTime(Duration.ofMinutes(30))
-                .build();
-
-        HttpClient httpClient = HttpClient.create(connectionProvider)
-                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10_000)
-                .responseTimeout(Duration.ofSeconds(30))
-                .doOnConnected(conn -> {
-                    conn.addHandlerLast(new ReadTimeoutHandler(30, TimeUnit.SECONDS));
-                    conn.addHandlerLast(new WriteTimeoutHandler(30, TimeUnit.SECONDS));
-                });
-
-        return WebClient.builder()
-                .clientConnector(new ReactorClientHttpConnector(httpClient))
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.USER_AGENT, "RateLimiter-Gateway/1.0")
-                .filter(logRequest())
-                .filter(logResponse())
-                .build();
-    }
-
-    private ExchangeFilterFunction logRequest() {
-        return ExchangeFilterFunction.ofRequestProcessor(request -> {
-            log.debug("Request: {} {}", request.method(), request.url());
-            return Mono.just(request);
-        });
-    }
-
-    private ExchangeFilterFunction logResponse() {
-        return ExchangeFilterFunction.ofResponseProcessor(response -> {
-            log.debug("Response Status: {}", response.statusCode());
-            return Mono.just(response);
-        });
-    }
-}
@@ -2,10 +2,15 @@ package com.ratelimiter.constants;
 
 public class CommonConstants {
     public static final String DEFAULT_USER_KEY = "unknown";
-    public static final String SANITIZE_REGEX = "[^a-zA-Z0-9_:.-]";
-    public static final String REPLACEMENT = "_";
     public static final String USER_REDIS_BASE_KEY="rate_limit:user:";
     public static final String GLOBAL_REDIS_BASE_KEY="rate_limit:global:";
+    public static final String NODES_REDIS_KEY="rate_limit:nodes";
+    public static final String GLOBAL_LIMIT_EXCEEDED="Global rate limit exceeded";
+    public static final String USER_LIMIT_EXCEEDED="User rate limit exceeded";
+    public static final String RESOLVED_SERVICE_ATTRIBUTE="rateLimiter.resolvedService";
+    public static final String RATE_LIMIT_DELAY_ATTRIBUTE="rateLimiter.delayMillis";
+    public static final String GATEWAY_PREFIX="/gateway";
+    public static final int STREAM_BUFFER_SIZE=8192;
     public static final String BASE_URL="/api/v1";
     public static final String TEST_URL="/test";
     public static final String GET_USER_PRODUCTS="/products";
@@ -13,6 +18,7 @@ public class CommonConstants {
     public static final String ADMIN_BASE_URL="/admin/rate-limiter";
     public static final String RESET_USER_LIMIT="/reset/user";
     public static final String RESET_GLOBAL_LIMIT="/reset/global";
+    public static final String DECISIONS_URL="/decisions";
     public static final String HEALTH_CHECK_URL="/health";
     public static final String REDIS_HOST="master.rate-limiter-redis.qp3kc1.aps1.cache.amazonaws.com";
     public static final int REDIS_PORT=6379;
@@ -1,5 +1,9 @@
 package com.ratelimiter.controller;
 
+import com.ratelimiter.audit.Decision;
+import com.ratelimiter.audit.DecisionAuditLog;
+import com.ratelimiter.audit.DecisionLogReader;
+import com.ratelimiter.audit.DecisionRecord;
 import com.ratelimiter.requestDto.RateLimiterRequest;
 import com.ratelimiter.service.RateLimiterService;
 import lombok.extern.slf4j.Slf4j;
@@ -12,10 +16,13 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.ratelimiter.constants.CommonConstants.ADMIN_BASE_URL;
+import static com.ratelimiter.constants.CommonConstants.DECISIONS_URL;
 import static com.ratelimiter.constants.CommonConstants.HEALTH_CHECK_URL;
 import static com.ratelimiter.constants.CommonConstants.RESET_GLOBAL_LIMIT;
 import static com.ratelimiter.constants.CommonConstants.RESET_USER_LIMIT;
@@ -28,6 +35,9 @@ public class AdminController {
     @Autowired
     private RateLimiterService rateLimiterService;
 
+    @Autowired
+    private DecisionAuditLog decisionAuditLog;
+
     @PostMapping(RESET_USER_LIMIT)
     public Map<String, Object> resetUserRateLimit(@RequestBody RateLimiterRequest request) {
         log.info("Resetting user rate limit for: {}", request.getIdentifier());
@@ -52,6 +62,21 @@ public class AdminController {
         return response;
     }
 
+    /**
+     * Latest audited decisions matching the filters, oldest first
+     */
+    @GetMapping(DECISIONS_URL)
+    public List<DecisionRecord> decisions(@RequestParam(required = false) String route,
+                                          @RequestParam(required = false) String identifier,
+                                          @RequestParam(required = false) Decision decision,
+                                          @RequestParam(required = false) Long since,
+                                          @RequestParam(required = false) Long until,
+                                          @RequestParam(defaultValue = "100") int limit) throws IOException {
+        return DecisionLogReader.readLatest(decisionAuditLog.getDirectory(),
+                DecisionLogReader.filter(route, identifier, decision, since, until),
+                Math.max(1, Math.min(limit, 10_000)));
+    }
+
     @GetMapping(HEALTH_CHECK_URL)
     public Map<String, Object> health() {
         Map<String, Object> response = new HashMap<>();
@@ -1,48 +1,92 @@
 package com.ratelimiter.controller;
 
+import com.ratelimiter.requestDto.ServiceConfig;
 import com.ratelimiter.service.ProxyService;
+import com.ratelimiter.shaping.RequestShaper;
+import com.ratelimiter.utils.GatewayPaths;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.nio.charset.StandardCharsets;
+
+import static com.ratelimiter.constants.CommonConstants.RATE_LIMIT_DELAY_ATTRIBUTE;
+import static com.ratelimiter.constants.CommonConstants.RESOLVED_SERVICE_ATTRIBUTE;
+import static com.ratelimiter.constants.CommonConstants.STREAM_BUFFER_SIZE;
+
 @Slf4j
 @RestController
 @RequestMapping("/gateway")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class GatewayController {
 
     @Autowired
     private ProxyService proxyService;
 
-    @RequestMapping(value = "/**", method = {RequestMethod.GET, RequestMethod.POST,
+    @Autowired
+    private RequestShaper requestShaper;
+
+    @RequestMapping(value = "/**", method = {RequestMethod.GET, RequestMethod.HEAD, RequestMethod.POST,
             RequestMethod.PUT, RequestMethod.DELETE,
             RequestMethod.PATCH, RequestMethod.OPTIONS})
-    public Mono<ResponseEntity<Object>> handleRequest(@RequestBody(required = false) Object requestBody,
-                                                      HttpServletRequest httpRequest) {
+    public Mono<ResponseEntity<StreamingResponseBody>> handleRequest(@RequestAttribute(name = RESOLVED_SERVICE_ATTRIBUTE, required = false)
+                                                                     ServiceConfig targetService,
+                                                                     @RequestAttribute(name = RATE_LIMIT_DELAY_ATTRIBUTE, required = false)
+                                                                     Long delayMillis,
+                                                                     HttpServletRequest httpRequest) {
         try {
             // Extract the full request path (remove /gateway prefix)
-            String fullPath = httpRequest.getRequestURI();
-            String requestPath = fullPath.replace("/gateway", "");
-
-            if (requestPath.isEmpty()) {
-                requestPath = "/";
-            }
+            String requestPath = GatewayPaths.toServicePath(httpRequest.getRequestURI());
             String httpMethod = httpRequest.getMethod();
-            log.info("Gateway Request - Method: {}, Path: {}", httpMethod, requestPath);
+            log.debug("Gateway Request - Method: {}, Path: {}", httpMethod, requestPath);
+            // Read the body off the servlet thread, in chunks, as the backend call consumes it
+            Flux<DataBuffer> requestBody = DataBufferUtils.readInputStream(httpRequest::getInputStream,
+                            DefaultDataBufferFactory.sharedInstance, STREAM_BUFFER_SIZE)
+                    .subscribeOn(Schedulers.boundedElastic());
             // (Rate limit already checked by interceptor)
-            return proxyService.proxyRequest(requestPath, httpMethod, requestBody);
+            Mono<ResponseEntity<StreamingResponseBody>> proxied = proxyService.streamRequest(targetService, requestPath,
+                            httpRequest.getQueryString(), HttpMethod.valueOf(httpMethod),
+                            new ServletServerHttpRequest(httpRequest).getHeaders(), requestBody)
+                    .map(response -> ResponseEntity.status(response.getStatusCode())
+                            .headers(response.getHeaders())
+                            .body(writeTo(response.getBody())));
+            // Admitted on a reserved token, wait for it without holding the servlet thread
+            if (delayMillis != null && targetService != null) {
+                return requestShaper.delay(targetService, delayMillis).then(proxied);
+            }
+            return proxied;
 
         } catch (Exception e) {
             log.error("Error in gateway controller: {}", e.getMessage(), e);
             return Mono.just(ResponseEntity
                     .status(500)
-                    .body((Object) "Internal server error: " + e.getMessage()));
+                    .body((StreamingResponseBody) outputStream -> outputStream.write(
+                            ("Internal server error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8))));
         }
     }
 
+    /**
+     * Copies the backend body to the client as it arrives, releasing each buffer once written
+     */
+    private static StreamingResponseBody writeTo(Flux<DataBuffer> body) {
+        return outputStream -> DataBufferUtils.write(body, outputStream)
+                .doOnNext(DataBufferUtils::release)
+                .blockLast();
+    }
+
     /**
      * Health check endpoint
      */
@@ -0,0 +1,54 @@
+package com.ratelimiter.controller;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.service.ProxyService;
+import com.ratelimiter.utils.GatewayPaths;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+import static com.ratelimiter.constants.CommonConstants.RESOLVED_SERVICE_ATTRIBUTE;
+
+/**
+ * WebFlux counterpart of GatewayController, used when the app runs with the reactive profile
+ */
+@Slf4j
+@RestController
+@RequestMapping("/gateway")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveGatewayController {
+
+    @Autowired
+    private ProxyService proxyService;
+
+    @RequestMapping(value = "/**", method = {RequestMethod.GET, RequestMethod.HEAD, RequestMethod.POST,
+            RequestMethod.PUT, RequestMethod.DELETE,
+            RequestMethod.PATCH, RequestMethod.OPTIONS})
+    public Mono<Void> handleRequest(@RequestAttribute(name = RESOLVED_SERVICE_ATTRIBUTE, required = false)
+                                    ServiceConfig targetService,
+                                    ServerHttpRequest httpRequest,
+                                    ServerHttpResponse httpResponse) {
+        // Extract the full request path (remove /gateway prefix)
+        String requestPath = GatewayPaths.toServicePath(httpRequest.getPath().value());
+        log.debug("Gateway Request - Method: {}, Path: {}", httpRequest.getMethod(), requestPath);
+        // (Rate limit already checked by ReactiveRateLimitFilter)
+        return proxyService.streamRequest(targetService, requestPath, httpRequest.getURI().getRawQuery(),
+                        httpRequest.getMethod(), httpRequest.getHeaders(), httpRequest.getBody())
+                .flatMap(response -> {
+                    httpResponse.setStatusCode(response.getStatusCode());
+                    httpResponse.getHeaders().putAll(response.getHeaders());
+                    // Netty buffers go straight from the backend connection to the client's
+                    return httpResponse.writeWith(response.getBody());
+                });
+    }
+
+    @GetMapping("/health")
+    public ResponseEntity<String> health() {
+        return ResponseEntity.ok("Gateway is healthy");
+    }
+}
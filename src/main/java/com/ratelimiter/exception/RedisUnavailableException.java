@@ -0,0 +1,15 @@
+package com.ratelimiter.exception;
+
+/**
+ * Redis could not answer a rate limit call, or answered with something unexpected
+ */
+public class RedisUnavailableException extends RuntimeException {
+
+    public RedisUnavailableException(String message) {
+        super(message);
+    }
+
+    public RedisUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,75 @@
+package com.ratelimiter.fallback;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+
+import static com.ratelimiter.constants.CommonConstants.NODES_REDIS_KEY;
+
+/**
+ * Tracks how many gateway nodes are alive, so each node knows its share of a limit
+ * when it has to enforce limits locally.
+ * Every node heartbeats into a Redis sorted set scored by time. The last count seen
+ * is kept, so it is still known while Redis is down.
+ */
+@Slf4j
+@Component
+public class ClusterMembership {
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Value("${rate-limiter.fallback.node-ttl-ms:15000}")
+    private long nodeTtlMillis;
+
+    @Value("${rate-limiter.fallback.default-node-count:1}")
+    private int defaultNodeCount;
+
+    private final String nodeId = ManagementFactory.getRuntimeMXBean().getName() + ":" + UUID.randomUUID();
+
+    private volatile int liveNodeCount = -1;
+
+    @Scheduled(fixedDelayString = "${rate-limiter.fallback.heartbeat-interval-ms:5000}")
+    public void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().add(NODES_REDIS_KEY, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(NODES_REDIS_KEY, 0, now - nodeTtlMillis);
+            Long count = redisTemplate.opsForZSet().zCard(NODES_REDIS_KEY);
+            if (count != null && count > 0 && count != liveNodeCount) {
+                log.info("Live gateway nodes: {}", count);
+                liveNodeCount = count.intValue();
+            }
+        } catch (Exception e) {
+            log.debug("Node heartbeat failed, keeping last known node count {}: {}", getLiveNodeCount(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void leave() {
+        try {
+            redisTemplate.opsForZSet().remove(NODES_REDIS_KEY, nodeId);
+        } catch (Exception e) {
+            log.debug("Could not remove node {} from membership: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Last known number of live nodes, the configured default before the first heartbeat
+     */
+    public int getLiveNodeCount() {
+        int count = liveNodeCount;
+        return count > 0 ? count : Math.max(1, defaultNodeCount);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,13 @@
+package com.ratelimiter.fallback;
+
+/**
+ * What to do with a request when Redis cannot decide
+ */
+public enum FallbackPolicy {
+    // Let every request through
+    ALLOW,
+    // Reject every request
+    DENY,
+    // Enforce this node's share of each limit in memory
+    LOCAL
+}
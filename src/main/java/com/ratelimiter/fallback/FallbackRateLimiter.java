@@ -0,0 +1,92 @@
+package com.ratelimiter.fallback;
+
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides requests when Redis cannot: while the circuit breaker is open, or for
+ * a single call that failed or ran over its budget.
+ *
+ * The policy picks between letting everything through, rejecting everything, or
+ * enforcing this node's share of each limit (limit / live nodes) in memory.
+ */
+@Slf4j
+@Component
+public class FallbackRateLimiter {
+
+    // Retry hint for requests rejected by the DENY policy
+    private static final long DENY_RETRY_SECONDS = 1;
+
+    @Autowired
+    private LocalRateLimiter localRateLimiter;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rate-limiter.fallback.policy:LOCAL}")
+    private FallbackPolicy policy;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("ratelimiter.fallback.local.keys", localRateLimiter, LocalRateLimiter::size)
+                .description("Buckets held by the local fallback limiter")
+                .register(meterRegistry);
+        log.info("Redis fallback policy: {}", policy);
+    }
+
+    public FallbackPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * True while Redis should be skipped altogether
+     */
+    public boolean isDegraded() {
+        return circuitBreaker.isOpen();
+    }
+
+    /**
+     * One response per bucket, decided without Redis according to the policy
+     */
+    public List<RateLimiterResponse> isAllowed(List<BucketSpec> buckets) {
+        switch (policy) {
+            case ALLOW:
+                return respondToAll(buckets, true);
+            case DENY:
+                return respondToAll(buckets, false);
+            default:
+                return localRateLimiter.isAllowed(buckets, clusterMembership.getLiveNodeCount());
+        }
+    }
+
+    private List<RateLimiterResponse> respondToAll(List<BucketSpec> buckets, boolean allowed) {
+        long currentTime = System.currentTimeMillis() / 1000;
+        List<RateLimiterResponse> responses = new ArrayList<>(buckets.size());
+        for (BucketSpec bucket : buckets) {
+            if (allowed) {
+                responses.add(RateLimiterResponse.allowed(bucket.getLimit(), bucket.getLimit(),
+                        currentTime + bucket.getWindowSeconds()));
+            } else {
+                responses.add(RateLimiterResponse.blocked(bucket.getLimit(), currentTime + DENY_RETRY_SECONDS,
+                        "Rate limiter unavailable"));
+            }
+        }
+        return responses;
+    }
+}
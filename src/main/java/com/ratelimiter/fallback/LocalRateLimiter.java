@@ -0,0 +1,104 @@
+package com.ratelimiter.fallback;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process limiter used while Redis is unavailable.
+ *
+ * Each bucket is a GCRA cell: a single AtomicLong theoretical arrival time
+ * updated with CAS, so there is no locking. The store is a size-bounded cache
+ * that also drops idle buckets, which keeps memory flat even when an outage
+ * sees millions of identifiers.
+ */
+@Component
+public class LocalRateLimiter {
+
+    private final Cache<String, AtomicLong> buckets;
+
+    public LocalRateLimiter(@Value("${rate-limiter.fallback.max-keys:100000}") long maxKeys,
+                            @Value("${rate-limiter.fallback.idle-expiry-seconds:600}") long idleExpirySeconds) {
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofSeconds(idleExpirySeconds))
+                .build();
+    }
+
+    /**
+     * Check all buckets, with each limit divided by the node count.
+     * Like the Redis scripts, the request only counts if every bucket allows it.
+     */
+    public List<RateLimiterResponse> isAllowed(List<BucketSpec> specs, int nodeCount) {
+        return isAllowed(specs, nodeCount, System.nanoTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * now is the System.nanoTime() the cells run on, epochMillis the same instant as wall time
+     */
+    List<RateLimiterResponse> isAllowed(List<BucketSpec> specs, int nodeCount, long now, long epochMillis) {
+        List<RateLimiterResponse> responses = new ArrayList<>(specs.size());
+        List<AtomicLong> taken = new ArrayList<>(specs.size());
+        List<Long> intervals = new ArrayList<>(specs.size());
+        boolean allowed = true;
+
+        for (BucketSpec spec : specs) {
+            long limit = Math.max(1, spec.getLimit() / Math.max(1, nodeCount));
+            long interval = Math.max(1, spec.getWindowSeconds() * 1_000_000_000L / limit);
+            long tolerance = interval * limit;
+            AtomicLong tat = buckets.get(spec.getKey(), k -> new AtomicLong(now));
+
+            while (true) {
+                long current = tat.get();
+                long newTat = Math.max(current, now) + interval;
+                long allowAt = newTat - tolerance;
+                if (now < allowAt) {
+                    allowed = false;
+                    long resetAtMillis = epochMillis + ceilMillis(allowAt - now);
+                    responses.add(RateLimiterResponse.blockedUntil(limit, resetAtMillis, "Rate limit exceeded"));
+                    break;
+                }
+                long remaining = (now - allowAt) / interval;
+                long resetAtMillis = epochMillis + ceilMillis(newTat - now);
+                // An earlier bucket already rejected, report capacity without taking it
+                if (!allowed) {
+                    responses.add(RateLimiterResponse.allowedUntil(limit, remaining, resetAtMillis));
+                    break;
+                }
+                if (tat.compareAndSet(current, newTat)) {
+                    taken.add(tat);
+                    intervals.add(interval);
+                    responses.add(RateLimiterResponse.allowedUntil(limit, remaining, resetAtMillis));
+                    break;
+                }
+            }
+        }
+        if (!allowed) {
+            // Give back what earlier buckets took
+            for (int i = 0; i < taken.size(); i++) {
+                taken.get(i).addAndGet(-intervals.get(i));
+            }
+        }
+        return responses;
+    }
+
+    public long size() {
+        return buckets.estimatedSize();
+    }
+
+    public void reset(String key) {
+        buckets.invalidate(key);
+    }
+
+    private static long ceilMillis(long nanos) {
+        return (nanos + 999_999L) / 1_000_000L;
+    }
+}
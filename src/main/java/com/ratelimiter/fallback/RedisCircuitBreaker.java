@@ -0,0 +1,223 @@
+package com.ratelimiter.fallback;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker for rate limit calls to Redis.
+ *
+ * Outcomes of the last window-size calls are kept in a ring. The breaker opens when
+ * the failure rate (errors and calls over the budget) reaches failure-rate-threshold,
+ * or when the latency percentile goes above latency-threshold-ms, which is the same
+ * as more than (1 - percentile) of the calls being slow. At least minimum-slow-calls
+ * must be slow, so one GC pause or busy script can't open it on its own. While open,
+ * callers skip Redis entirely and a background probe pings it until it answers quickly
+ * again, then the breaker starts over with an empty window.
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int SLOW = 2;
+    private static final int FAILED = 3;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${rate-limiter.circuit-breaker.call-budget-ms:50}")
+    private long callBudgetMillis;
+
+    @Value("${rate-limiter.circuit-breaker.window-size:200}")
+    private int windowSize;
+
+    @Value("${rate-limiter.circuit-breaker.minimum-calls:100}")
+    private int minimumCalls;
+
+    @Value("${rate-limiter.circuit-breaker.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+
+    @Value("${rate-limiter.circuit-breaker.latency-percentile:0.99}")
+    private double latencyPercentile;
+
+    @Value("${rate-limiter.circuit-breaker.latency-threshold-ms:25}")
+    private long latencyThresholdMillis;
+
+    @Value("${rate-limiter.circuit-breaker.minimum-slow-calls:10}")
+    private int minimumSlowCalls;
+
+    @Value("${rate-limiter.circuit-breaker.probe-successes:3}")
+    private int probeSuccessesToClose;
+
+    // Replaced as a whole on close, so calls finishing meanwhile can't skew the new one
+    private volatile Window window;
+
+    private volatile boolean open;
+    private int probeSuccesses;
+
+    private Timer callTimer;
+    private Counter tripCounter;
+
+    @PostConstruct
+    public void init() {
+        window = new Window(windowSize);
+        callTimer = Timer.builder("ratelimiter.redis.call")
+                .description("Latency of rate limit calls to Redis, including calls cut off by the budget")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        tripCounter = Counter.builder("ratelimiter.redis.circuit.trips")
+                .description("Times the Redis circuit breaker opened")
+                .register(meterRegistry);
+        Gauge.builder("ratelimiter.redis.circuit.open", () -> open ? 1 : 0)
+                .description("1 while Redis is skipped because the circuit breaker is open")
+                .register(meterRegistry);
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Longest a request may wait on a single Redis call
+     */
+    public Duration getCallBudget() {
+        return Duration.ofMillis(callBudgetMillis);
+    }
+
+    public void recordSuccess(long elapsedNanos) {
+        callTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        boolean slow = elapsedNanos > TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        record(slow ? SLOW : SUCCESS);
+    }
+
+    public void recordFailure(long elapsedNanos) {
+        callTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        record(FAILED);
+    }
+
+    private void record(int outcome) {
+        Window current = window;
+        current.record(outcome);
+        if (!open) {
+            evaluate(current);
+        }
+    }
+
+    private void evaluate(Window current) {
+        int total = current.calls.get();
+        if (total < minimumCalls) {
+            return;
+        }
+        int slow = current.slowCalls.get();
+        double failureRate = (double) current.failedCalls.get() / total;
+        double slowRate = (double) slow / total;
+        if (failureRate >= failureRateThreshold) {
+            trip(String.format("failure rate %.0f%% over the last %d calls", failureRate * 100, total));
+        } else if (slow >= minimumSlowCalls && slowRate > 1 - latencyPercentile) {
+            trip(String.format("p%s latency above %dms over the last %d calls",
+                    percentileLabel(), latencyThresholdMillis, total));
+        }
+    }
+
+    private synchronized void trip(String reason) {
+        if (open) {
+            return;
+        }
+        open = true;
+        probeSuccesses = 0;
+        tripCounter.increment();
+        log.error("Redis circuit breaker opened: {}", reason);
+    }
+
+    /**
+     * While open, ping Redis and close once enough pings in a row come back within budget
+     */
+    @Scheduled(fixedDelayString = "${rate-limiter.circuit-breaker.probe-interval-ms:500}")
+    public void probe() {
+        if (!open) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            redisTemplate.execute((RedisCallback<String>) RedisConnection::ping);
+            long elapsed = System.nanoTime() - start;
+            if (elapsed <= TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis)) {
+                probeSuccesses++;
+            } else {
+                probeSuccesses = 0;
+                log.debug("Redis probe answered in {}ms, above the threshold", TimeUnit.NANOSECONDS.toMillis(elapsed));
+            }
+        } catch (Exception e) {
+            probeSuccesses = 0;
+            log.debug("Redis probe failed: {}", e.getMessage());
+        }
+        if (probeSuccesses >= probeSuccessesToClose) {
+            close();
+        }
+    }
+
+    private synchronized void close() {
+        window = new Window(windowSize);
+        open = false;
+        log.info("Redis circuit breaker closed, Redis is healthy again");
+    }
+
+    private String percentileLabel() {
+        String label = String.valueOf(latencyPercentile * 100);
+        return label.endsWith(".0") ? label.substring(0, label.length() - 2) : label;
+    }
+
+    /**
+     * Ring of the last outcomes, with counters that each record keeps in step with it
+     */
+    private static final class Window {
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+        private final AtomicInteger failedCalls = new AtomicInteger();
+
+        private Window(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        private void record(int outcome) {
+            int slot = (int) (cursor.getAndIncrement() % outcomes.length());
+            int previous = outcomes.getAndSet(slot, outcome);
+            adjust(previous, -1);
+            adjust(outcome, 1);
+            if (previous == EMPTY) {
+                calls.incrementAndGet();
+            }
+        }
+
+        private void adjust(int outcome, int delta) {
+            if (outcome == SLOW) {
+                slowCalls.addAndGet(delta);
+            } else if (outcome == FAILED) {
+                failedCalls.addAndGet(delta);
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.ratelimiter.filter;
+
+import com.ratelimiter.audit.DecisionAuditLog;
+import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.identity.IdentityResolverChain;
+import com.ratelimiter.identity.RequestIdentity;
+import com.ratelimiter.identity.ServerRequestView;
+import com.ratelimiter.metrics.RateLimiterMetrics;
+import com.ratelimiter.requestDto.RateLimiterRequest;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import com.ratelimiter.service.ReactiveRateLimiterService;
+import com.ratelimiter.shaping.RequestShaper;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+import static com.ratelimiter.constants.CommonConstants.RESOLVED_SERVICE_ATTRIBUTE;
+
+/**
+ * WebFlux counterpart of RateLimitInterceptor, applies rate limiting before
+ * the gateway handler without blocking the event loop
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRateLimitFilter implements WebFilter {
+
+    @Autowired
+    private ReactiveRateLimiterService reactiveRateLimiterService;
+
+    @Autowired
+    private IdentityResolverChain identityResolverChain;
+
+    @Autowired
+    private DecisionAuditLog decisionAuditLog;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Autowired
+    private RequestShaper requestShaper;
+
+    @Override
+    public @NonNull Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!shouldRateLimit(request.getPath().value())) {
+            return chain.filter(exchange);
+        }
+        long start = System.nanoTime();
+        RateLimiterRequest rateLimiterRequest = buildRateLimiterRequest(request);
+        return reactiveRateLimiterService.checkRateLimit(rateLimiterRequest)
+                .flatMap(result -> {
+                    long elapsed = System.nanoTime() - start;
+                    rateLimiterMetrics.recordCheck(rateLimiterRequest.getService(), elapsed);
+                    decisionAuditLog.record(rateLimiterRequest, result, elapsed);
+                    addRateLimitHeaders(exchange.getResponse(), result);
+                    // Let the gateway controller proxy without resolving the route again
+                    if (rateLimiterRequest.getService() != null) {
+                        exchange.getAttributes().put(RESOLVED_SERVICE_ATTRIBUTE, rateLimiterRequest.getService());
+                    }
+                    // Admitted on a reserved token, hold the request until it is due
+                    if (result.getDelayMillis() > 0) {
+                        return requestShaper.delay(rateLimiterRequest.getService(), result.getDelayMillis())
+                                .then(Mono.defer(() -> chain.filter(exchange)));
+                    }
+                    return chain.filter(exchange);
+                })
+                .onErrorResume(RateLimitExceededException.class, ex -> {
+                    long elapsed = System.nanoTime() - start;
+                    rateLimiterMetrics.recordCheck(rateLimiterRequest.getService(), elapsed);
+                    decisionAuditLog.record(rateLimiterRequest, ex.getResponse(), elapsed);
+                    return handleRateLimitExceeded(exchange.getResponse(), ex.getResponse());
+                });
+    }
+
+    /**
+     * Same paths as the interceptor registration in WebConfig
+     */
+    private boolean shouldRateLimit(String path) {
+        return path.startsWith("/api/") || path.startsWith("/gateway/");
+    }
+
+    private RateLimiterRequest buildRateLimiterRequest(ServerHttpRequest request) {
+        RequestIdentity identity = identityResolverChain.resolve(new ServerRequestView(request));
+        return RateLimiterRequest.builder()
+                .userId(identity.getUserId())
+                .ipAddress(identity.getIpAddress())
+                .apiKey(identity.getApiKey())
+                .identifier(identity.getIdentifier())
+                .endpoint(request.getPath().value())
+                .timestamp(Instant.now())
+                // Any handler can be held here, the chain just continues later
+                .delayable(true)
+                .build();
+    }
+
+    private void addRateLimitHeaders(ServerHttpResponse response, RateLimiterResponse result) {
+        HttpHeaders headers = response.getHeaders();
+        headers.add("X-RateLimit-Limit", String.valueOf(result.getLimit()));
+        headers.add("X-RateLimit-Remaining", String.valueOf(result.getRemaining()));
+        headers.add("X-RateLimit-Reset", String.valueOf(result.getResetAt()));
+        if (!result.isAllowed()) {
+            headers.add("Retry-After", String.valueOf(result.getRetryAfterSeconds()));
+        }
+    }
+
+    private Mono<Void> handleRateLimitExceeded(ServerHttpResponse response, RateLimiterResponse result) {
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        String errorJson = String.format("""
+        {
+            "allowed": %b,
+            "message": "%s",
+            "retryAfterSeconds": %d
+        }
+        """,
+                result.isAllowed(),
+                result.getReason(),
+                result.getRetryAfterSeconds()
+        );
+        DataBuffer buffer = response.bufferFactory().wrap(errorJson.getBytes(StandardCharsets.UTF_8));
+        return response.writeWith(Mono.just(buffer));
+    }
+}
@@ -0,0 +1,27 @@
+package com.ratelimiter.identity;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * API key from the X-API-Key header, or the api_key query parameter
+ */
+@Component
+@Order(300)
+public class ApiKeyIdentityResolver implements IdentityResolver {
+
+    @Override
+    public String getKind() {
+        return RequestIdentity.API_KEY;
+    }
+
+    @Override
+    public String resolve(RequestView request) {
+        String apiKey = request.getHeader("X-API-Key");
+        if (apiKey != null && !apiKey.isEmpty()) {
+            return apiKey;
+        }
+        apiKey = request.getQueryParam("api_key");
+        return apiKey == null || apiKey.isEmpty() ? null : apiKey;
+    }
+}
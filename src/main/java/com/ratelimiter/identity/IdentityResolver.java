@@ -0,0 +1,18 @@
+package com.ratelimiter.identity;
+
+/**
+ * One way of identifying a caller. Resolvers are tried in @Order and the first
+ * one that finds something wins, the client IP is used when none does.
+ */
+public interface IdentityResolver {
+
+    /**
+     * Kind of identity this resolver produces, see the constants in RequestIdentity
+     */
+    String getKind();
+
+    /**
+     * The identity value found in the request, or null to let the next resolver try
+     */
+    String resolve(RequestView request);
+}
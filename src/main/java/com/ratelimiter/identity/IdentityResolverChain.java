@@ -0,0 +1,53 @@
+package com.ratelimiter.identity;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Resolves the identity of a request in one pass over the registered resolvers.
+ * Add an IdentityResolver bean to support a new way of identifying callers.
+ */
+@Slf4j
+@Component
+public class IdentityResolverChain {
+
+    private static final String[] IP_HEADER_CANDIDATES = {
+            "X-Forwarded-For",
+            "X-Real-IP",
+            "Proxy-Client-IP",
+            "WL-Proxy-Client-IP",
+            "HTTP_X_FORWARDED_FOR",
+            "HTTP_CLIENT_IP"
+    };
+
+    // Injected in @Order
+    @Autowired
+    private List<IdentityResolver> resolvers;
+
+    public RequestIdentity resolve(RequestView request) {
+        String ipAddress = resolveIpAddress(request);
+        for (IdentityResolver resolver : resolvers) {
+            String value = resolver.resolve(request);
+            if (value != null) {
+                log.debug("Identified request as {} by {}", resolver.getKind(), resolver.getClass().getSimpleName());
+                return RequestIdentity.of(resolver.getKind(), value, ipAddress);
+            }
+        }
+        return RequestIdentity.of(RequestIdentity.IP, ipAddress, ipAddress);
+    }
+
+    private String resolveIpAddress(RequestView request) {
+        // Check proxy headers first
+        for (String header : IP_HEADER_CANDIDATES) {
+            String ip = request.getHeader(header);
+            if (ip != null && !ip.isEmpty() && !"unknown".equalsIgnoreCase(ip)) {
+                int comma = ip.indexOf(',');
+                return comma < 0 ? ip : ip.substring(0, comma).trim();
+            }
+        }
+        return request.getRemoteAddress();
+    }
+}
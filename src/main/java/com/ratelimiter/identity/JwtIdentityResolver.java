@@ -0,0 +1,153 @@
+package com.ratelimiter.identity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * User id from a bearer JWT signed with HS256.
+ *
+ * Verifying a token means decoding it, parsing two JSON documents and computing an
+ * HMAC, so the outcome is cached per token, keyed by the token's SHA-256 digest so
+ * raw tokens are never held in memory. Invalid tokens are cached too, which keeps a
+ * flood of forged tokens from costing a verification each. Expiry is still checked
+ * on every hit, since a cached token can expire. Disabled while no secret is configured.
+ */
+@Slf4j
+@Component
+@Order(100)
+public class JwtIdentityResolver implements IdentityResolver {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    // Cached for tokens that failed verification
+    private static final VerifiedToken INVALID = new VerifiedToken(null, 0, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SecretKeySpec signingKey;
+    private final String userClaim;
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    public JwtIdentityResolver(@Value("${rate-limiter.identity.jwt.secret:}") String secret,
+                               @Value("${rate-limiter.identity.jwt.user-claim:sub}") String userClaim,
+                               @Value("${rate-limiter.identity.jwt.cache-size:100000}") long cacheSize,
+                               @Value("${rate-limiter.identity.jwt.cache-ttl-seconds:300}") long cacheTtlSeconds,
+                               MeterRegistry meterRegistry) {
+        this.signingKey = secret.isEmpty() ? null
+                : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        this.userClaim = userClaim;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verifiedTokens, "jwt-claims");
+        if (signingKey == null) {
+            log.info("No JWT secret configured, bearer tokens are not used to identify callers");
+        }
+    }
+
+    @Override
+    public String getKind() {
+        return RequestIdentity.USER;
+    }
+
+    @Override
+    public String resolve(RequestView request) {
+        if (signingKey == null) {
+            return null;
+        }
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader == null || !authHeader.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return null;
+        }
+        String token = authHeader.substring(BEARER_PREFIX.length()).trim();
+        ByteBuffer digest = ByteBuffer.wrap(sha256(token));
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified == null) {
+            verified = verify(token);
+            verifiedTokens.put(digest, verified);
+        }
+        if (verified == INVALID || !verified.isValidAt(System.currentTimeMillis())) {
+            return null;
+        }
+        return verified.subject;
+    }
+
+    private VerifiedToken verify(String token) {
+        int firstDot = token.indexOf('.');
+        int secondDot = token.indexOf('.', firstDot + 1);
+        if (firstDot < 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            return INVALID;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            JsonNode header = objectMapper.readTree(decoder.decode(token.substring(0, firstDot)));
+            if (!"HS256".equals(header.path("alg").asText())) {
+                log.debug("Rejected JWT with unsupported alg {}", header.path("alg").asText());
+                return INVALID;
+            }
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            byte[] expected = mac.doFinal(token.substring(0, secondDot).getBytes(StandardCharsets.US_ASCII));
+            byte[] signature = decoder.decode(token.substring(secondDot + 1));
+            if (!MessageDigest.isEqual(expected, signature)) {
+                log.debug("Rejected JWT with invalid signature");
+                return INVALID;
+            }
+
+            JsonNode claims = objectMapper.readTree(decoder.decode(token.substring(firstDot + 1, secondDot)));
+            String subject = claims.path(userClaim).asText(null);
+            if (subject == null || subject.isEmpty()) {
+                return INVALID;
+            }
+            long expiresAtMillis = claims.has("exp") ? claims.get("exp").asLong() * 1000 : Long.MAX_VALUE;
+            long notBeforeMillis = claims.has("nbf") ? claims.get("nbf").asLong() * 1000 : 0;
+            return new VerifiedToken(subject, notBeforeMillis, expiresAtMillis);
+        } catch (IllegalArgumentException | IOException | GeneralSecurityException e) {
+            log.debug("Rejected malformed JWT: {}", e.getMessage());
+            return INVALID;
+        }
+    }
+
+    private static byte[] sha256(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class VerifiedToken {
+        private final String subject;
+        private final long notBeforeMillis;
+        private final long expiresAtMillis;
+
+        private VerifiedToken(String subject, long notBeforeMillis, long expiresAtMillis) {
+            this.subject = subject;
+            this.notBeforeMillis = notBeforeMillis;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isValidAt(long now) {
+            return now >= notBeforeMillis && now < expiresAtMillis;
+        }
+    }
+}
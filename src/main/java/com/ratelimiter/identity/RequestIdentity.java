@@ -0,0 +1,33 @@
+package com.ratelimiter.identity;
+
+import lombok.Value;
+
+/**
+ * Who made a request, resolved once per request.
+ * The identifier is kind and value joined, e.g. user:42 or ip:10.0.0.1.
+ */
+@Value
+public class RequestIdentity {
+
+    public static final String USER = "user";
+    public static final String API_KEY = "apikey";
+    public static final String SESSION = "session";
+    public static final String IP = "ip";
+
+    String kind;
+    String value;
+    String identifier;
+    String ipAddress;
+
+    public static RequestIdentity of(String kind, String value, String ipAddress) {
+        return new RequestIdentity(kind, value, kind + ":" + value, ipAddress);
+    }
+
+    public String getUserId() {
+        return USER.equals(kind) ? value : null;
+    }
+
+    public String getApiKey() {
+        return API_KEY.equals(kind) ? value : null;
+    }
+}
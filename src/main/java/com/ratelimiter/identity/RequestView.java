@@ -0,0 +1,23 @@
+package com.ratelimiter.identity;
+
+/**
+ * The parts of an incoming request identity resolvers look at,
+ * so the same resolvers serve the servlet and the reactive stack
+ */
+public interface RequestView {
+
+    String getHeader(String name);
+
+    String getQueryParam(String name);
+
+    String getRemoteAddress();
+
+    /**
+     * Null when there is no session, reactive requests never have one
+     */
+    Object getSessionAttribute(String name);
+
+    String getSessionId();
+
+    String getPath();
+}
@@ -0,0 +1,51 @@
+package com.ratelimiter.identity;
+
+import org.springframework.http.server.reactive.ServerHttpRequest;
+
+import java.net.InetSocketAddress;
+
+/**
+ * RequestView over a WebFlux request, which has no servlet session
+ */
+public class ServerRequestView implements RequestView {
+
+    private final ServerHttpRequest request;
+
+    public ServerRequestView(ServerHttpRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return request.getHeaders().getFirst(name);
+    }
+
+    @Override
+    public String getQueryParam(String name) {
+        return request.getQueryParams().getFirst(name);
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        if (remoteAddress == null || remoteAddress.getAddress() == null) {
+            return null;
+        }
+        return remoteAddress.getAddress().getHostAddress();
+    }
+
+    @Override
+    public Object getSessionAttribute(String name) {
+        return null;
+    }
+
+    @Override
+    public String getSessionId() {
+        return null;
+    }
+
+    @Override
+    public String getPath() {
+        return request.getPath().value();
+    }
+}
@@ -0,0 +1,91 @@
+package com.ratelimiter.identity;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * RequestView over a servlet request. The session is looked up once and never created.
+ */
+public class ServletRequestView implements RequestView {
+
+    private final HttpServletRequest request;
+    private HttpSession session;
+    private boolean sessionLoaded;
+
+    public ServletRequestView(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return request.getHeader(name);
+    }
+
+    /**
+     * First value of the parameter in the query string. getParameter would also read
+     * and consume a form encoded body before it is proxied.
+     */
+    @Override
+    public String getQueryParam(String name) {
+        String query = request.getQueryString();
+        if (query == null || query.isEmpty()) {
+            return null;
+        }
+        int start = 0;
+        while (start <= query.length()) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = query.length();
+            }
+            int equals = query.indexOf('=', start);
+            int nameEnd = equals >= 0 && equals < end ? equals : end;
+            if (decode(query.substring(start, nameEnd)).equals(name)) {
+                return nameEnd == end ? "" : decode(query.substring(nameEnd + 1, end));
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return request.getRemoteAddr();
+    }
+
+    @Override
+    public Object getSessionAttribute(String name) {
+        HttpSession current = session();
+        return current == null ? null : current.getAttribute(name);
+    }
+
+    @Override
+    public String getSessionId() {
+        HttpSession current = session();
+        return current == null ? null : current.getId();
+    }
+
+    @Override
+    public String getPath() {
+        return request.getRequestURI();
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // Malformed escapes, match on the raw text
+            return value;
+        }
+    }
+
+    private HttpSession session() {
+        if (!sessionLoaded) {
+            session = request.getSession(false);
+            sessionLoaded = true;
+        }
+        return session;
+    }
+}
@@ -0,0 +1,22 @@
+package com.ratelimiter.identity;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Id of an existing servlet session, a session is never created for this
+ */
+@Component
+@Order(400)
+public class SessionIdentityResolver implements IdentityResolver {
+
+    @Override
+    public String getKind() {
+        return RequestIdentity.SESSION;
+    }
+
+    @Override
+    public String resolve(RequestView request) {
+        return request.getSessionId();
+    }
+}
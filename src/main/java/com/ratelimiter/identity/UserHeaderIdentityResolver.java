@@ -0,0 +1,27 @@
+package com.ratelimiter.identity;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * User id from the X-User-Id header, or the userId session attribute
+ */
+@Component
+@Order(200)
+public class UserHeaderIdentityResolver implements IdentityResolver {
+
+    @Override
+    public String getKind() {
+        return RequestIdentity.USER;
+    }
+
+    @Override
+    public String resolve(RequestView request) {
+        String userId = request.getHeader("X-User-Id");
+        if (userId != null && !userId.isEmpty()) {
+            return userId;
+        }
+        Object userIdFromSession = request.getSessionAttribute("userId");
+        return userIdFromSession == null ? null : userIdFromSession.toString();
+    }
+}
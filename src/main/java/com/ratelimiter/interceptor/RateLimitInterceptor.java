@@ -1,44 +1,79 @@
 package com.ratelimiter.interceptor;
 
+import com.ratelimiter.audit.DecisionAuditLog;
+import com.ratelimiter.controller.GatewayController;
 import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.identity.IdentityResolverChain;
+import com.ratelimiter.identity.RequestIdentity;
+import com.ratelimiter.identity.ServletRequestView;
+import com.ratelimiter.metrics.RateLimiterMetrics;
 import com.ratelimiter.requestDto.RateLimiterRequest;
 import com.ratelimiter.responseDto.RateLimiterResponse;
 import com.ratelimiter.service.RateLimiterService;
-import com.ratelimiter.utils.IdentifierExtractor;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import java.time.Instant;
 
+import static com.ratelimiter.constants.CommonConstants.RATE_LIMIT_DELAY_ATTRIBUTE;
+import static com.ratelimiter.constants.CommonConstants.RESOLVED_SERVICE_ATTRIBUTE;
+
 /**
  * Interceptor that applies rate limiting to all incoming requests
  * This runs BEFORE controllers - it can block requests before they reach your API
  */
 @Slf4j
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RateLimitInterceptor implements HandlerInterceptor {
 
     @Autowired
     private RateLimiterService rateLimiterService;
 
     @Autowired
-    private IdentifierExtractor identifierExtractor;
+    private IdentityResolverChain identityResolverChain;
+
+    @Autowired
+    private DecisionAuditLog decisionAuditLog;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
 
     @Override
     public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,@NonNull Object handler) throws Exception {
 
+        // Async handlers (the streaming gateway) dispatch again to finish, the request was already checked
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        long start = System.nanoTime();
+        RateLimiterRequest rateLimiterRequest = buildRateLimiterRequest(request, handler);
         try {
-            RateLimiterRequest rateLimiterRequest = buildRateLimiterRequest(request);
             RateLimiterResponse result = rateLimiterService.checkRateLimit(rateLimiterRequest);
+            long elapsed = System.nanoTime() - start;
+            rateLimiterMetrics.recordCheck(rateLimiterRequest.getService(), elapsed);
+            decisionAuditLog.record(rateLimiterRequest, result, elapsed);
             addRateLimitHeaders(response, result);
+            // Let the gateway controller proxy without resolving the route again
+            request.setAttribute(RESOLVED_SERVICE_ATTRIBUTE, rateLimiterRequest.getService());
+            // Admitted on a reserved token, the gateway controller holds the request until it is due
+            if (result.getDelayMillis() > 0) {
+                request.setAttribute(RATE_LIMIT_DELAY_ATTRIBUTE, result.getDelayMillis());
+            }
             return true;
         } catch (RateLimitExceededException ex) {
             RateLimiterResponse result = ex.getResponse();
+            long elapsed = System.nanoTime() - start;
+            rateLimiterMetrics.recordCheck(rateLimiterRequest.getService(), elapsed);
+            decisionAuditLog.record(rateLimiterRequest, result, elapsed);
            // addRateLimitHeaders(response, result);
             handleRateLimitExceeded(response, result);
             return false;
@@ -46,16 +81,20 @@ public class RateLimitInterceptor implements HandlerInterceptor {
     }
 
     /**
-     * Build RateLimiterRequest from HTTP request
+     * Build RateLimiterRequest from HTTP request, identifying the caller in one pass.
+     * Only the gateway controller can hold a request without a thread, so only its requests may be delayed
      */
-    private RateLimiterRequest buildRateLimiterRequest(HttpServletRequest request) {
+    private RateLimiterRequest buildRateLimiterRequest(HttpServletRequest request, Object handler) {
+        RequestIdentity identity = identityResolverChain.resolve(new ServletRequestView(request));
         return RateLimiterRequest.builder()
-                .userId(identifierExtractor.extractUserId(request))
-                .ipAddress(identifierExtractor.extractIpAddress(request))
-                .apiKey(identifierExtractor.extractApiKey(request))
-                .identifier(identifierExtractor.extractPrimaryIdentifier(request))
-                .endpoint(identifierExtractor.extractEndpoint(request))
+                .userId(identity.getUserId())
+                .ipAddress(identity.getIpAddress())
+                .apiKey(identity.getApiKey())
+                .identifier(identity.getIdentifier())
+                .endpoint(request.getRequestURI())
                 .timestamp(Instant.now())
+                .delayable(handler instanceof HandlerMethod handlerMethod
+                        && handlerMethod.getBeanType() == GatewayController.class)
                 .build();
     }
 
@@ -0,0 +1,15 @@
+package com.ratelimiter.metrics;
+
+/**
+ * What made a rate limit decision
+ */
+public enum DecisionSource {
+    // Lua script in Redis
+    REDIS,
+    // Tokens leased from Redis earlier
+    LEASE,
+    // Blocked-key cache, without a Redis call
+    CACHE,
+    // Fallback policy, while Redis could not decide
+    FALLBACK
+}
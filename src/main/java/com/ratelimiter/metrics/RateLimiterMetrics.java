@@ -0,0 +1,145 @@
+package com.ratelimiter.metrics;
+
+import com.ratelimiter.algorithm.AlgorithmType;
+import com.ratelimiter.audit.Decision;
+import com.ratelimiter.fallback.FallbackPolicy;
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for rate limit decisions, Redis scripts and proxying.
+ *
+ * Tags are limited to bounded sets (service, algorithm, outcome, source, status
+ * class), never identifiers or paths. Meters are looked up once per service and
+ * kept, so recording on the request path does not allocate.
+ */
+@Component
+public class RateLimiterMetrics {
+
+    private static final String UNKNOWN_SERVICE = "unknown";
+    private static final Decision[] DECISIONS = Decision.values();
+    private static final DecisionSource[] SOURCES = DecisionSource.values();
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx", "error"};
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, ServiceMeters> serviceMeters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> scriptTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fallbackCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Count a decision, tagged with its outcome and what made it
+     */
+    public void recordDecision(ServiceConfig service, RateLimiterResponse response, DecisionSource source) {
+        Decision decision = Decision.of(response);
+        forService(service).decisions[decision.ordinal() * SOURCES.length + source.ordinal()].increment();
+    }
+
+    /**
+     * Count a decision made by the fallback policy, policy=allow is a fail-open decision
+     */
+    public void recordFallback(ServiceConfig service, FallbackPolicy policy) {
+        String serviceName = serviceName(service);
+        fallbackCounters.computeIfAbsent(serviceName + ":" + policy, k -> Counter.builder("ratelimiter.fallback.decisions")
+                .description("Requests decided by the fallback policy because Redis could not")
+                .tag("service", serviceName)
+                .tag("policy", policy.name().toLowerCase(Locale.ROOT))
+                .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * Time spent in the interceptor or filter deciding a request
+     */
+    public void recordCheck(ServiceConfig service, long elapsedNanos) {
+        forService(service).check.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Backend round trip of a proxied request, status 0 if it failed without a response
+     */
+    public void recordBackend(ServiceConfig service, int status, long elapsedNanos) {
+        int statusClass = status >= 100 && status < 600 ? status / 100 - 1 : STATUS_CLASSES.length - 1;
+        forService(service).backend[statusClass].record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Timer for one kind of Redis script of an algorithm, callers should keep it
+     */
+    public Timer redisScriptTimer(AlgorithmType algorithm, String script) {
+        return scriptTimers.computeIfAbsent(algorithm + ":" + script, k -> Timer.builder("ratelimiter.redis.script")
+                .description("Time to run a rate limit script in Redis")
+                .tag("algorithm", algorithm.name().toLowerCase(Locale.ROOT))
+                .tag("script", script)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private ServiceMeters forService(ServiceConfig service) {
+        String serviceName = serviceName(service);
+        ServiceMeters meters = serviceMeters.get(serviceName);
+        if (meters == null) {
+            meters = serviceMeters.computeIfAbsent(serviceName, this::createServiceMeters);
+        }
+        return meters;
+    }
+
+    private static String serviceName(ServiceConfig service) {
+        return service == null || service.getName() == null ? UNKNOWN_SERVICE : service.getName();
+    }
+
+    private ServiceMeters createServiceMeters(String serviceName) {
+        Counter[] decisions = new Counter[DECISIONS.length * SOURCES.length];
+        for (Decision decision : DECISIONS) {
+            for (DecisionSource source : SOURCES) {
+                decisions[decision.ordinal() * SOURCES.length + source.ordinal()] = Counter.builder("ratelimiter.decisions")
+                        .description("Rate limit decisions")
+                        .tag("service", serviceName)
+                        .tag("outcome", decision.name().toLowerCase(Locale.ROOT))
+                        .tag("source", source.name().toLowerCase(Locale.ROOT))
+                        .register(meterRegistry);
+            }
+        }
+        Timer check = Timer.builder("ratelimiter.check")
+                .description("Time to decide whether a request is allowed")
+                .tag("service", serviceName)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Timer[] backend = new Timer[STATUS_CLASSES.length];
+        for (int i = 0; i < STATUS_CLASSES.length; i++) {
+            backend[i] = Timer.builder("ratelimiter.proxy.backend")
+                    .description("Round trip to the backend service of a proxied request")
+                    .tag("service", serviceName)
+                    .tag("status", STATUS_CLASSES[i])
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        return new ServiceMeters(decisions, check, backend);
+    }
+
+    private static final class ServiceMeters {
+        private final Counter[] decisions;
+        private final Timer check;
+        private final Timer[] backend;
+
+        private ServiceMeters(Counter[] decisions, Timer check, Timer[] backend) {
+            this.decisions = decisions;
+            this.check = check;
+            this.backend = backend;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.ratelimiter.requestDto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,4 +19,16 @@ public class RateLimiterRequest {
     private String userId;
     private String apiKey;
     private Instant timestamp;
+
+    /**
+     * Target service, resolved once by the rate limiter and reused by the proxy
+     */
+    @JsonIgnore
+    private ServiceConfig service;
+
+    /**
+     * The caller can hold this request without a thread, so it may be admitted with a delay
+     */
+    @JsonIgnore
+    private boolean delayable;
 }
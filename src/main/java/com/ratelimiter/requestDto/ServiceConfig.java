@@ -1,10 +1,14 @@
 package com.ratelimiter.requestDto;
 
+import com.ratelimiter.algorithm.AlgorithmType;
+import com.ratelimiter.balancer.LoadBalancingStrategy;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -14,15 +18,157 @@ public class ServiceConfig {
     private String name;
     private String pathPrefix;
     private String targetUrl;
+
+    /**
+     * Instances of this service to balance across. When empty the service is only at targetUrl
+     */
+    private List<String> targetUrls;
+
+    @Builder.Default
+    private LoadBalancingStrategy loadBalancing = LoadBalancingStrategy.POWER_OF_TWO_CHOICES;
+
+    /**
+     * Consecutive failed requests (5xx or no response) after which an instance is ejected
+     */
+    @Builder.Default
+    private int ejectAfterFailures = 5;
+
+    @Builder.Default
+    private long ejectionMillis = 30_000;
+
+    /**
+     * Time over which a returning instance ramps up to its full share of traffic
+     */
+    @Builder.Default
+    private long slowStartMillis = 30_000;
     private boolean stripPrefix;
     private int perUserLimit;
     private int globalLimit;
 
+    @Builder.Default
+    private AlgorithmType algorithm = AlgorithmType.TOKEN_BUCKET;
+
+    /**
+     * Split the global limit into this many sub-buckets on different cluster slots, each
+     * with an even share, so no single Redis key takes every request of the service.
+     * Off by default. Each sub-bucket is enforced on its own and a request only tries
+     * globalShardProbes others, so it can be rejected while further sub-buckets still
+     * have tokens. Worth it only for a global limit hot enough to saturate one shard
+     */
+    @Builder.Default
+    private int globalShards = 1;
+
+    /**
+     * Other sub-buckets a request may try when its own is empty
+     */
+    @Builder.Default
+    private int globalShardProbes = 2;
+
+    /**
+     * Serve this service's limits from blocks of tokens leased from Redis.
+     * Only supported with the token bucket algorithm
+     */
+    private boolean leasingEnabled;
+
+    /**
+     * Most tokens a node may lease per key, i.e. the max a node can over-admit for a key
+     */
+    @Builder.Default
+    private int leaseMaxTokens = 50;
+
+    @Builder.Default
+    private long leaseDurationMillis = 1000;
+
+    /**
+     * Most connections to this backend. Every backend has its own pool, so one slow
+     * service can't take the connections of the others
+     */
+    @Builder.Default
+    private int maxConnections = 100;
+
+    /**
+     * Requests that may wait for a connection once all are busy, beyond that they fail fast
+     */
+    @Builder.Default
+    private int pendingAcquireMaxCount = 500;
+
+    @Builder.Default
+    private long pendingAcquireTimeoutMillis = 5000;
+
+    @Builder.Default
+    private long maxIdleTimeMillis = 60_000;
+
+    @Builder.Default
+    private long connectTimeoutMillis = 10_000;
+
+    @Builder.Default
+    private long responseTimeoutMillis = 30_000;
+
+    /**
+     * Talk HTTP/2 over cleartext (h2c, prior knowledge) so one connection carries many
+     * concurrent requests. The backend must accept h2c
+     */
+    private boolean http2;
+
+    /**
+     * Shape instead of reject: a request that would be allowed within this wait is held
+     * until its token is due, like nginx burst with delay. 0 rejects at once. Token bucket only
+     */
+    private long maxDelayMillis;
+
+    /**
+     * Most requests of this service held at a time, beyond that they are rejected at once
+     */
+    @Builder.Default
+    private int maxDelayedRequests = 100;
+
+    /**
+     * Cap requests in flight to this service with a limit that follows its latency,
+     * rejecting the excess with 503 rather than queueing it
+     */
+    private boolean adaptiveConcurrencyEnabled;
+
+    @Builder.Default
+    private int initialConcurrencyLimit = 20;
+
+    @Builder.Default
+    private int minConcurrencyLimit = 5;
+
+    @Builder.Default
+    private int maxConcurrencyLimit = 200;
+
+    /**
+     * Let the gateway cache this service's GET responses, as far as their Cache-Control allows
+     */
+    private boolean responseCacheEnabled;
+
+    /**
+     * Sub-buckets the global limit is split into, never more than the limit so each holds a token
+     */
+    public int globalShardCount() {
+        return Math.max(1, Math.min(globalShards, globalLimit));
+    }
+
+    /**
+     * The URLs of every instance of this service
+     */
+    public List<String> instanceUrls() {
+        if (targetUrls != null && !targetUrls.isEmpty()) {
+            return targetUrls;
+        }
+        return targetUrl == null ? List.of() : List.of(targetUrl);
+    }
+
+    /**
+     * True if the path is the prefix itself or below it, matching whole segments like RouteIndex
+     */
     public boolean matches(String requestPath) {
         if (requestPath == null || pathPrefix == null) {
             return false;
         }
-        return requestPath.startsWith(pathPrefix);
+        String prefix = pathPrefix.endsWith("/") ? pathPrefix.substring(0, pathPrefix.length() - 1) : pathPrefix;
+        return requestPath.startsWith(prefix)
+                && (requestPath.length() == prefix.length() || requestPath.charAt(prefix.length()) == '/');
     }
 
     public String transformPath(String requestPath) {
@@ -1,5 +1,6 @@
 package com.ratelimiter.responseDto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,24 +18,59 @@ public class RateLimiterResponse {
     private long limit;
     private long remaining;
     private long resetAt;
+
+    /**
+     * Reset time in Unix milliseconds, as exact as the algorithm knows it.
+     * resetAt is this rounded up to whole seconds for the headers
+     */
+    @JsonIgnore
+    private long resetAtMillis;
     private String identifier;
     private String reason;
 
+    /**
+     * How long to hold an allowed request before passing it on, 0 to pass it on now.
+     * Only set for services that shape instead of reject
+     */
+    private long delayMillis;
+
+    /**
+     * An allowed response with its reset time in Unix seconds
+     */
     public static RateLimiterResponse allowed(long limit, long remaining, long resetAt) {
+        return allowedUntil(limit, remaining, resetAt * 1000);
+    }
+
+    /**
+     * A rejection with its reset time in Unix seconds
+     */
+    public static RateLimiterResponse blocked(long limit, long resetAt, String reason) {
+        return blockedUntil(limit, resetAt * 1000, reason);
+    }
+
+    /**
+     * An allowed response with its reset time in Unix milliseconds
+     */
+    public static RateLimiterResponse allowedUntil(long limit, long remaining, long resetAtMillis) {
         return RateLimiterResponse.builder()
                 .allowed(true)
                 .limit(limit)
                 .remaining(remaining)
-                .resetAt(resetAt)
+                .resetAt(ceilSeconds(resetAtMillis))
+                .resetAtMillis(resetAtMillis)
                 .build();
     }
 
-    public static RateLimiterResponse blocked(long limit, long resetAt, String reason) {
+    /**
+     * A rejection with its reset time in Unix milliseconds
+     */
+    public static RateLimiterResponse blockedUntil(long limit, long resetAtMillis, String reason) {
         return RateLimiterResponse.builder()
                 .allowed(false)
                 .limit(limit)
                 .remaining(0)
-                .resetAt(resetAt)
+                .resetAt(ceilSeconds(resetAtMillis))
+                .resetAtMillis(resetAtMillis)
                 .reason(reason)
                 .build();
     }
@@ -44,4 +80,9 @@ public class RateLimiterResponse {
         return Math.max(0, resetAt - now);
     }
 
+    // Clients told to come back at the second should not come back early
+    private static long ceilSeconds(long millis) {
+        return Math.floorDiv(millis + 999, 1000);
+    }
+
 }
@@ -1,18 +1,30 @@
 package com.ratelimiter.service;
 
+import com.ratelimiter.balancer.Upstream;
+import com.ratelimiter.balancer.UpstreamBalancer;
+import com.ratelimiter.cache.ResponseCache;
+import com.ratelimiter.concurrency.ConcurrencyLimiter;
+import com.ratelimiter.config.BackendClients;
+import com.ratelimiter.metrics.RateLimiterMetrics;
 import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.utils.ProxyHeaders;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import static org.apache.tomcat.util.http.Method.DELETE;
-import static org.apache.tomcat.util.http.Method.GET;
-import static org.apache.tomcat.util.http.Method.POST;
-import static org.apache.tomcat.util.http.Method.PUT;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 
 @Slf4j
 @Service
@@ -22,70 +34,139 @@ public class ProxyService {
     private ServiceRegistry serviceRegistry;
 
     @Autowired
-    private WebClient webClient;
+    private BackendClients backendClients;
 
-    /**
-     * Proxy request to backend service
-     * Rate limiting already checked by RateLimitInterceptor
-     */
-    public Mono<ResponseEntity<Object>> proxyRequest(String requestPath,
-                                                     String httpMethod,
-                                                     Object requestBody) {
-        try {
-            // Step 1: Find the target service based on path
-            ServiceConfig targetService = serviceRegistry.findServiceByPath(requestPath);
-            log.info("Found target service: {} for path: {}", targetService.getName(), requestPath);
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
 
-            // Step 2: Transform the request path (strip prefix)
-            String transformedPath = targetService.transformPath(requestPath);
+    @Autowired
+    private ResponseCache responseCache;
 
-            // Step 3: Build full target URL
-            String fullTargetUrl = targetService.getTargetUrl() + transformedPath;
-            log.info("Forwarding request to: {}", fullTargetUrl);
+    @Autowired
+    private UpstreamBalancer upstreamBalancer;
 
-            // Step 4: Forward request to backend service
-            return forwardRequest(fullTargetUrl, httpMethod, requestBody);
+    @Autowired
+    private ConcurrencyLimiter concurrencyLimiter;
 
+    /**
+     * Relay a request to the backend and its response back, bodies as DataBuffers that are
+     * never parsed or collected. Query string and end-to-end headers are kept, any method
+     * is supported. Backend error statuses are relayed like any other response.
+     * GETs to services with responseCacheEnabled may be answered from ResponseCache.
+     * Each request that reaches the backend goes to the instance UpstreamBalancer picks.
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> streamRequest(ServiceConfig targetService,
+                                                                String requestPath,
+                                                                String rawQuery,
+                                                                HttpMethod method,
+                                                                HttpHeaders headers,
+                                                                Flux<DataBuffer> body) {
+        ServiceConfig service;
+        String pathAndQuery;
+        try {
+            service = targetService != null ? targetService : serviceRegistry.findServiceByPath(requestPath);
+            String path = service.transformPath(requestPath);
+            pathAndQuery = rawQuery == null ? path : path + "?" + rawQuery;
         } catch (RuntimeException e) {
             log.error("Error processing request for path: {}, Error: {}", requestPath, e.getMessage());
-            return Mono.just(ResponseEntity
-                    .status(HttpStatus.SERVICE_UNAVAILABLE)
-                    .body((Object) "Service not found: " + e.getMessage()));
+            return Mono.just(errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service not found: " + e.getMessage()));
+        }
+        log.debug("Streaming {} request to {}: {}", method, service.getName(), pathAndQuery);
+        if (method == HttpMethod.GET) {
+            return Mono.defer(() -> responseCache.get(service, pathAndQuery, headers,
+                    conditional -> send(service, pathAndQuery, method, headers, conditional, body)));
         }
+        return send(service, pathAndQuery, method, headers, HttpHeaders.EMPTY, body);
     }
 
-    private Mono<ResponseEntity<Object>> forwardRequest(String targetUrl,
-                                                        String httpMethod,
-                                                        Object requestBody) {
-        try {
-            return switch (httpMethod.toUpperCase()) {
-                case GET -> webClient.get()
-                        .uri(targetUrl)
-                        .retrieve()
-                        .toEntity(Object.class);
-                case POST -> webClient.post()
-                        .uri(targetUrl)
-                        .bodyValue(requestBody)
-                        .retrieve()
-                        .toEntity(Object.class);
-                case PUT -> webClient.put()
-                        .uri(targetUrl)
-                        .bodyValue(requestBody)
-                        .retrieve()
-                        .toEntity(Object.class);
-                case DELETE -> webClient.delete()
-                        .uri(targetUrl)
-                        .retrieve()
-                        .toEntity(Object.class);
-                default -> Mono.just(ResponseEntity
-                        .status(HttpStatus.METHOD_NOT_ALLOWED)
-                        .body((Object) "HTTP method not supported: " + httpMethod));
-            };
-        } catch (Exception e) {
-            log.error("Failed to forward request to {}: {}", targetUrl, e.getMessage());
-            return Mono.just(ResponseEntity
-                    .status(HttpStatus.SERVICE_UNAVAILABLE)
-                    .body((Object) "Service unavailable"));
+    /**
+     * Sends the request to one instance of the service, or answers 503 at once if the service
+     * is at its concurrency limit. The request counts as in flight, for the limit and the
+     * instance, until the response headers arrive, not while the body streams
+     */
+    private Mono<ResponseEntity<Flux<DataBuffer>>> send(ServiceConfig service,
+                                                        String pathAndQuery,
+                                                        HttpMethod method,
+                                                        HttpHeaders headers,
+                                                        HttpHeaders extraHeaders,
+                                                        Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            ConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(service);
+            if (permit == null) {
+                return Mono.just(overloadedResponse());
+            }
+            Upstream upstream = upstreamBalancer.acquire(service);
+            long start = System.nanoTime();
+            // Status the instance answered with, 0 if it didn't, -1 if the client went away first
+            int[] status = {-1};
+            return Mono.fromCallable(() -> URI.create(upstream.getUrl() + pathAndQuery))
+                    .flatMap(targetUri -> exchange(service, targetUri, method, headers, extraHeaders, body))
+                    .doOnSuccess(response -> {
+                        status[0] = response.getStatusCode().value();
+                        rateLimiterMetrics.recordBackend(service, status[0], System.nanoTime() - start);
+                    })
+                    .doOnError(e -> status[0] = 0)
+                    .doFinally(signal -> release(service, upstream, permit, status[0], System.nanoTime() - start))
+                    .onErrorResume(e -> {
+                        rateLimiterMetrics.recordBackend(service, 0, System.nanoTime() - start);
+                        log.error("Failed to stream request to {}{}: {}", upstream.getUrl(), pathAndQuery, e.getMessage());
+                        return Mono.just(errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Service unavailable"));
+                    });
+        });
+    }
+
+    private Mono<ResponseEntity<Flux<DataBuffer>>> exchange(ServiceConfig service,
+                                                            URI targetUri,
+                                                            HttpMethod method,
+                                                            HttpHeaders headers,
+                                                            HttpHeaders extraHeaders,
+                                                            Flux<DataBuffer> body) {
+        WebClient.RequestBodySpec request = backendClients.forService(service).method(method)
+                .uri(targetUri)
+                .headers(outgoing -> {
+                    ProxyHeaders.copyRequestHeaders(headers, outgoing);
+                    outgoing.putAll(extraHeaders);
+                });
+        WebClient.RequestHeadersSpec<?> withBody = ProxyHeaders.hasBody(headers)
+                ? request.body(BodyInserters.fromDataBuffers(body))
+                : request;
+        return withBody.retrieve()
+                // Relay 4xx and 5xx instead of turning them into errors
+                .onStatus(status -> true, response -> Mono.empty())
+                .toEntityFlux(DataBuffer.class)
+                .map(response -> ResponseEntity.status(response.getStatusCode())
+                        .headers(ProxyHeaders.responseHeaders(response.getHeaders()))
+                        .body(response.getBody()));
+    }
+
+    /**
+     * Ends a request to an instance. status is what it answered, 0 for no answer, -1 if cancelled first
+     */
+    private void release(ServiceConfig service, Upstream upstream, ConcurrencyLimiter.Permit permit,
+                         int status, long elapsedNanos) {
+        upstreamBalancer.release(service, upstream, status, elapsedNanos);
+        if (status < 0) {
+            permit.cancel();
+        } else {
+            // No answer, 503 and 504 mean the backend is past its capacity
+            permit.release(elapsedNanos, status == 0
+                    || status == HttpStatus.SERVICE_UNAVAILABLE.value()
+                    || status == HttpStatus.GATEWAY_TIMEOUT.value());
         }
     }
+
+    private static ResponseEntity<Flux<DataBuffer>> overloadedResponse() {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap("Service overloaded".getBytes(StandardCharsets.UTF_8));
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.TEXT_PLAIN)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Flux.just(buffer));
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> errorResponse(HttpStatus status, String message) {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(message.getBytes(StandardCharsets.UTF_8));
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(Flux.just(buffer));
+    }
 }
\ No newline at end of file
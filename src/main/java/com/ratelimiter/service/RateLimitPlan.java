@@ -0,0 +1,40 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.algorithm.RateLimitAlgorithm;
+import com.ratelimiter.requestDto.ServiceConfig;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * What to evaluate for one request: the target service, its algorithm and buckets.
+ * The global bucket, when enabled, comes first in buckets and the user bucket last.
+ * Shaped plans reserve tokens up to maxDelayMillis ahead instead of only taking free ones.
+ * With a sharded global limit, globalBucket is the caller's own sub-bucket and
+ * neighbourGlobalBuckets the others to try, in order, when it is empty.
+ */
+@Value
+public class RateLimitPlan {
+    ServiceConfig service;
+    RateLimitAlgorithm algorithm;
+    BucketSpec userBucket;
+    BucketSpec globalBucket;
+    List<BucketSpec> buckets;
+    boolean shaped;
+    long maxDelayMillis;
+    List<BucketSpec> neighbourGlobalBuckets;
+
+    public static RateLimitPlan of(ServiceConfig service, RateLimitAlgorithm algorithm,
+                                   BucketSpec userBucket, BucketSpec globalBucket) {
+        return of(service, algorithm, userBucket, globalBucket, false, 0, List.of());
+    }
+
+    public static RateLimitPlan of(ServiceConfig service, RateLimitAlgorithm algorithm,
+                                   BucketSpec userBucket, BucketSpec globalBucket,
+                                   boolean shaped, long maxDelayMillis, List<BucketSpec> neighbourGlobalBuckets) {
+        List<BucketSpec> buckets = globalBucket == null ? List.of(userBucket) : List.of(globalBucket, userBucket);
+        return new RateLimitPlan(service, algorithm, userBucket, globalBucket, buckets, shaped, maxDelayMillis,
+                neighbourGlobalBuckets);
+    }
+}
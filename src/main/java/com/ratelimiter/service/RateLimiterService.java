@@ -1,20 +1,35 @@
 package com.ratelimiter.service;
 
+import com.ratelimiter.algorithm.AlgorithmRegistry;
+import com.ratelimiter.algorithm.AlgorithmType;
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.algorithm.RateLimitAlgorithm;
 import com.ratelimiter.algorithm.TokenBucketAlgorithm;
+import com.ratelimiter.algorithm.TokenLeaseManager;
+import com.ratelimiter.algorithm.TokenLeaseManager.LeasedToken;
+import com.ratelimiter.cache.BlockedKeyCache;
 import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.exception.RedisUnavailableException;
+import com.ratelimiter.fallback.FallbackRateLimiter;
+import com.ratelimiter.fallback.LocalRateLimiter;
+import com.ratelimiter.metrics.DecisionSource;
+import com.ratelimiter.metrics.RateLimiterMetrics;
 import com.ratelimiter.requestDto.RateLimiterRequest;
 import com.ratelimiter.requestDto.ServiceConfig;
 import com.ratelimiter.responseDto.RateLimiterResponse;
+import com.ratelimiter.shaping.RequestShaper;
+import com.ratelimiter.utils.GatewayPaths;
+import com.ratelimiter.utils.RateLimitKeyBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import static com.ratelimiter.constants.CommonConstants.DEFAULT_USER_KEY;
-import static com.ratelimiter.constants.CommonConstants.GLOBAL_REDIS_BASE_KEY;
-import static com.ratelimiter.constants.CommonConstants.REPLACEMENT;
-import static com.ratelimiter.constants.CommonConstants.SANITIZE_REGEX;
-import static com.ratelimiter.constants.CommonConstants.USER_REDIS_BASE_KEY;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.ratelimiter.constants.CommonConstants.GLOBAL_LIMIT_EXCEEDED;
+import static com.ratelimiter.constants.CommonConstants.USER_LIMIT_EXCEEDED;
 
 
 @Slf4j
@@ -22,11 +37,32 @@ import static com.ratelimiter.constants.CommonConstants.USER_REDIS_BASE_KEY;
 public class RateLimiterService {
 
     @Autowired
-    private TokenBucketAlgorithm tokenBucketAlgorithm;
+    private AlgorithmRegistry algorithmRegistry;
+
+    @Autowired
+    private TokenLeaseManager tokenLeaseManager;
 
     @Autowired
     private ServiceRegistry serviceRegistry;
 
+    @Autowired
+    private FallbackRateLimiter fallbackRateLimiter;
+
+    @Autowired
+    private LocalRateLimiter localRateLimiter;
+
+    @Autowired
+    private BlockedKeyCache blockedKeyCache;
+
+    @Autowired
+    private RateLimitKeyBuilder keyBuilder;
+
+    @Autowired
+    private RateLimiterMetrics rateLimiterMetrics;
+
+    @Autowired
+    private RequestShaper requestShaper;
+
     // Configuration from application.yml
     @Value("${rate-limiter.enabled:true}")
     private boolean rateLimiterEnabled;
@@ -50,81 +86,265 @@ public class RateLimiterService {
      *
      * Flow:
      * 1. Check if rate limiter is enabled
-     * 2. Check global rate limit (if enabled)
-     * 3. Check per-user rate limit
+     * 2. Reject right away if a bucket is already known to be empty until its reset time
+     * 3. Check global (if enabled) and per-user rate limit in one Redis round trip,
+     *    or from locally leased tokens when the service has leasing enabled
+     * 4. Tokens are only consumed when both buckets allow the request. Shaped services
+     *    may reserve a token due soon instead, the response then carries the delay
+     * 5. While the Redis circuit breaker is open, or a Redis call fails or runs over
+     *    its budget, the fallback policy decides instead
      */
     public RateLimiterResponse checkRateLimit(RateLimiterRequest rateLimiterRequest) {
 
         if (!rateLimiterEnabled) {
-            log.info("Rate limiter is disabled");
+            log.debug("Rate limiter is disabled");
             return createAllowedResponse();
         }
+        RateLimitPlan plan = plan(rateLimiterRequest);
+        rejectIfBlocked(plan);
+        if (fallbackRateLimiter.isDegraded()) {
+            return decide(plan, fallback(plan), rateLimiterRequest, DecisionSource.FALLBACK);
+        }
+        List<RateLimiterResponse> results;
+        DecisionSource source = DecisionSource.REDIS;
+        try {
+            if (plan.getService().isLeasingEnabled() && plan.getAlgorithm().getType() == AlgorithmType.TOKEN_BUCKET) {
+                RateLimiterResponse userResult = checkLeasedRateLimit(plan);
+                userResult.setIdentifier(rateLimiterRequest.getIdentifier());
+                return userResult;
+            }
+            results = plan.isShaped()
+                    ? ((TokenBucketAlgorithm) plan.getAlgorithm()).reserve(plan.getBuckets(), plan.getMaxDelayMillis())
+                    : plan.getAlgorithm().isAllowed(plan.getBuckets());
+            if (canBorrowGlobal(plan, results)) {
+                results = borrowGlobal(plan, results);
+            }
+        } catch (RedisUnavailableException e) {
+            log.debug("Redis could not decide, using fallback: {}", e.getMessage());
+            results = fallback(plan);
+            source = DecisionSource.FALLBACK;
+        }
+        return decide(plan, results, rateLimiterRequest, source);
+    }
+
+    /**
+     * Per-bucket results from the fallback policy, for when Redis can't be used
+     */
+    public List<RateLimiterResponse> fallback(RateLimitPlan plan) {
+        rateLimiterMetrics.recordFallback(plan.getService(), fallbackRateLimiter.getPolicy());
+        return fallbackRateLimiter.isAllowed(plan.getBuckets());
+    }
+
+    public boolean isEnabled() {
+        return rateLimiterEnabled;
+    }
+
+    /**
+     * Resolve the target service and build the buckets to evaluate for a request.
+     * A shaped service's requests always go through the reserve script, with no wait
+     * budget when the caller can't hold the request or the service holds all it may
+     */
+    public RateLimitPlan plan(RateLimiterRequest rateLimiterRequest) {
+        ServiceConfig targetService = rateLimiterRequest.getService();
+        if (targetService == null) {
+            String requestPath = GatewayPaths.toServicePath(rateLimiterRequest.getEndpoint());
+            log.debug("Request path: {}", requestPath);
+            targetService = serviceRegistry.findServiceByPath(requestPath);
+            rateLimiterRequest.setService(targetService);
+        }
+
+        String identifier = userIdentifier(rateLimiterRequest);
+        BucketSpec userBucket = new BucketSpec(keyBuilder.userKey(targetService, identifier),
+                targetService.getPerUserLimit(), defaultWindowSeconds);
+        BucketSpec globalBucket = null;
+        List<BucketSpec> neighbourGlobalBuckets = List.of();
         if (globalRateLimitEnabled) {
+            int shards = targetService.globalShardCount();
+            int shard = keyBuilder.globalShard(targetService, identifier);
+            globalBucket = globalShardBucket(targetService, shard, shards);
+            if (shards > 1) {
+                int probes = Math.min(targetService.getGlobalShardProbes(), shards - 1);
+                List<BucketSpec> neighbours = new ArrayList<>(probes);
+                for (int step = 1; step <= probes; step++) {
+                    neighbours.add(globalShardBucket(targetService, (shard + step) % shards, shards));
+                }
+                neighbourGlobalBuckets = neighbours;
+            }
+        }
+        log.debug("Checking rate limit - User: {}, Global: {}", userBucket, globalBucket);
+
+        RateLimitAlgorithm algorithm = algorithmRegistry.get(targetService.getAlgorithm());
+        boolean shaped = targetService.getMaxDelayMillis() > 0
+                && algorithm instanceof TokenBucketAlgorithm
+                && !targetService.isLeasingEnabled();
+        long maxDelayMillis = shaped && rateLimiterRequest.isDelayable() && requestShaper.hasCapacity(targetService)
+                ? targetService.getMaxDelayMillis() : 0;
+        return RateLimitPlan.of(targetService, algorithm, userBucket, globalBucket, shaped, maxDelayMillis,
+                neighbourGlobalBuckets);
+    }
+
+    /**
+     * One sub-bucket of a global limit split in shards, the remainder going to the first ones
+     */
+    private BucketSpec globalShardBucket(ServiceConfig service, int shard, int shards) {
+        int limit = service.getGlobalLimit() / shards + (shard < service.getGlobalLimit() % shards ? 1 : 0);
+        return new BucketSpec(keyBuilder.globalKey(service, shard), limit, globalWindowSeconds);
+    }
 
-            RateLimiterResponse globalResult = checkGlobalRateLimit(rateLimiterRequest.getEndpoint());
+    /**
+     * True if only the caller's global sub-bucket stopped the request and there are others to try
+     */
+    public boolean canBorrowGlobal(RateLimitPlan plan, List<RateLimiterResponse> results) {
+        return !plan.getNeighbourGlobalBuckets().isEmpty()
+                && !results.get(0).isAllowed()
+                && results.get(results.size() - 1).isAllowed();
+    }
+
+    /**
+     * Takes the global token from a neighbouring sub-bucket when the caller's own is empty,
+     * then the user token. They are in different slots so this is two scripts, not one:
+     * should the user bucket empty in between, the borrowed global token is spent anyway.
+     * Returns the results unchanged if no neighbour has a token or Redis fails.
+     */
+    public List<RateLimiterResponse> borrowGlobal(RateLimitPlan plan, List<RateLimiterResponse> results) {
+        blockedKeyCache.markBlocked(plan.getGlobalBucket(), results.get(0).getResetAtMillis());
+        try {
+            for (BucketSpec neighbour : plan.getNeighbourGlobalBuckets()) {
+                if (blockedKeyCache.getBlocked(neighbour) != null) {
+                    continue;
+                }
+                RateLimiterResponse globalResult = plan.getAlgorithm().isAllowed(List.of(neighbour)).get(0);
+                if (!globalResult.isAllowed()) {
+                    blockedKeyCache.markBlocked(neighbour, globalResult.getResetAtMillis());
+                    continue;
+                }
+                log.debug("Borrowed a global token from {}", neighbour.getKey());
+                RateLimiterResponse userResult = plan.getAlgorithm().isAllowed(List.of(plan.getUserBucket())).get(0);
+                return List.of(globalResult, userResult);
+            }
+        } catch (RedisUnavailableException e) {
+            log.debug("Could not borrow a global token: {}", e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * Throws RateLimitExceededException without calling Redis if a bucket of the plan
+     * was rejected recently and has not reset yet
+     */
+    public void rejectIfBlocked(RateLimitPlan plan) {
+        if (plan.getGlobalBucket() != null) {
+            RateLimiterResponse globalResult = blockedKeyCache.getBlocked(plan.getGlobalBucket());
+            if (globalResult != null && neighboursBlocked(plan)) {
+                throw globalLimitExceeded(plan, globalResult, DecisionSource.CACHE);
+            }
+        }
+        RateLimiterResponse userResult = blockedKeyCache.getBlocked(plan.getUserBucket());
+        if (userResult != null) {
+            throw userLimitExceeded(plan, userResult, DecisionSource.CACHE);
+        }
+    }
+
+    private boolean neighboursBlocked(RateLimitPlan plan) {
+        for (BucketSpec neighbour : plan.getNeighbourGlobalBuckets()) {
+            if (blockedKeyCache.getBlocked(neighbour) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turn the per-bucket results of a plan into the final decision.
+     * Throws RateLimitExceededException if any bucket rejected the request.
+     * Fallback rejections are not cached: DENY's reset time is made up and LOCAL's is
+     * this node's share, neither says when the bucket in Redis resets.
+     */
+    public RateLimiterResponse decide(RateLimitPlan plan, List<RateLimiterResponse> results,
+                                      RateLimiterRequest rateLimiterRequest, DecisionSource source) {
+        boolean cacheRejections = source != DecisionSource.FALLBACK;
+        RateLimiterResponse userResult = results.get(results.size() - 1);
+        if (!userResult.isAllowed() && cacheRejections) {
+            blockedKeyCache.markBlocked(plan.getUserBucket(), userResult.getResetAtMillis());
+        }
+        if (plan.getGlobalBucket() != null) {
+            RateLimiterResponse globalResult = results.get(0);
             if (!globalResult.isAllowed()) {
-                log.warn("Global rate limit exceeded");
-                globalResult.setReason("Global rate limit exceeded");
-                throw new RateLimitExceededException(globalResult);
+                if (cacheRejections) {
+                    blockedKeyCache.markBlocked(plan.getGlobalBucket(), globalResult.getResetAtMillis());
+                }
+                throw globalLimitExceeded(plan, globalResult, source);
             }
         }
-        RateLimiterResponse userResult = checkUserRateLimit(rateLimiterRequest);
         if (!userResult.isAllowed()) {
-            userResult.setReason("User rate limit exceeded");
-            throw new RateLimitExceededException(userResult);
+            throw userLimitExceeded(plan, userResult, source);
         }
         userResult.setIdentifier(rateLimiterRequest.getIdentifier());
+        rateLimiterMetrics.recordDecision(plan.getService(), userResult, source);
         return userResult;
     }
 
-    private RateLimiterResponse checkGlobalRateLimit(String endpoint) {
-        String requestPath = endpoint.replace("/gateway", "");
-        ServiceConfig targetService = serviceRegistry.findServiceByPath(requestPath);
-        String apiEndpoint = sanitize(requestPath);
-        String globalKey = GLOBAL_REDIS_BASE_KEY + apiEndpoint;
-        log.debug("Checking global rate limit - Key: {}, Limit: {}/{}s",
-                globalKey, targetService.getGlobalLimit(), globalWindowSeconds);
+    /**
+     * User bucket is checked first so rejected users never take from the global lease,
+     * and the user token is put back if the global bucket then rejects. With a sharded
+     * global limit, neighbouring sub-buckets are leased from when the caller's is empty
+     */
+    private RateLimiterResponse checkLeasedRateLimit(RateLimitPlan plan) {
+        BucketSpec userBucket = plan.getUserBucket();
+        BucketSpec globalBucket = plan.getGlobalBucket();
+        int maxLeaseTokens = plan.getService().getLeaseMaxTokens();
+        long leaseDurationMillis = plan.getService().getLeaseDurationMillis();
 
-        return tokenBucketAlgorithm.isAllowed(
-                globalKey,
-                targetService.getGlobalLimit(),
-                globalWindowSeconds
-        );
+        LeasedToken userToken = tokenLeaseManager.tryAcquire(userBucket, maxLeaseTokens, leaseDurationMillis);
+        RateLimiterResponse userResult = userToken.getResponse();
+        if (!userResult.isAllowed()) {
+            blockedKeyCache.markBlocked(userBucket, userResult.getResetAtMillis());
+            throw userLimitExceeded(plan, userResult, DecisionSource.LEASE);
+        }
+        if (globalBucket != null) {
+            RateLimiterResponse globalResult = tokenLeaseManager.tryAcquire(globalBucket, maxLeaseTokens, leaseDurationMillis)
+                    .getResponse();
+            for (BucketSpec neighbour : plan.getNeighbourGlobalBuckets()) {
+                if (globalResult.isAllowed()) {
+                    break;
+                }
+                globalResult = tokenLeaseManager.tryAcquire(neighbour, maxLeaseTokens, leaseDurationMillis).getResponse();
+            }
+            if (!globalResult.isAllowed()) {
+                tokenLeaseManager.release(userToken);
+                blockedKeyCache.markBlocked(globalBucket, globalResult.getResetAtMillis());
+                throw globalLimitExceeded(plan, globalResult, DecisionSource.LEASE);
+            }
+        }
+        rateLimiterMetrics.recordDecision(plan.getService(), userResult, DecisionSource.LEASE);
+        return userResult;
     }
 
-    private RateLimiterResponse checkUserRateLimit(RateLimiterRequest rateLimiterRequest) {
-        // Build key specific to this user
-        String requestPath = rateLimiterRequest.getEndpoint().replace("/gateway", "");
-        log.info("Request path: {}",requestPath);
-        String userKey = buildUserKey(rateLimiterRequest,requestPath);
-        ServiceConfig targetService = serviceRegistry.findServiceByPath(requestPath);
-        log.debug("Checking user rate limit - Key: {}, Limit: {}/{}s", userKey, defaultLimit, defaultWindowSeconds);
+    private RateLimitExceededException globalLimitExceeded(RateLimitPlan plan, RateLimiterResponse globalResult,
+                                                           DecisionSource source) {
+        log.debug("Global rate limit exceeded");
+        globalResult.setReason(GLOBAL_LIMIT_EXCEEDED);
+        rateLimiterMetrics.recordDecision(plan.getService(), globalResult, source);
+        return new RateLimitExceededException(globalResult);
+    }
 
-        return tokenBucketAlgorithm.isAllowed(
-                userKey,
-                targetService.getPerUserLimit(),
-                defaultWindowSeconds
-        );
+    private RateLimitExceededException userLimitExceeded(RateLimitPlan plan, RateLimiterResponse userResult,
+                                                         DecisionSource source) {
+        userResult.setReason(USER_LIMIT_EXCEEDED);
+        rateLimiterMetrics.recordDecision(plan.getService(), userResult, source);
+        return new RateLimitExceededException(userResult);
     }
 
-    private String buildUserKey(RateLimiterRequest rateLimiterRequest,String requestPath) {
+    private String userIdentifier(RateLimiterRequest rateLimiterRequest) {
         String identifier = rateLimiterRequest.getIdentifier();
-        String endPoint = sanitize(requestPath);
         if (identifier == null || identifier.isEmpty()) {
             // Fallback to IP if no identifier
             identifier = "ip:" + rateLimiterRequest.getIpAddress();
         }
-        return USER_REDIS_BASE_KEY + endPoint + ":" + sanitize(identifier);
-    }
-
-    private String sanitize(String input) {
-        if (input == null) {
-            return DEFAULT_USER_KEY;
-        }
-        return input.replaceAll(SANITIZE_REGEX, REPLACEMENT);
+        return identifier;
     }
 
-    private RateLimiterResponse createAllowedResponse() {
+    public RateLimiterResponse createAllowedResponse() {
         return RateLimiterResponse.builder()
                 .allowed(true)
                 .limit(Integer.MAX_VALUE)
@@ -133,17 +353,29 @@ public class RateLimiterService {
                 .build();
     }
 
+    /**
+     * Limits are kept per route, so the endpoint only selects the service
+     */
     public void resetUserRateLimit(RateLimiterRequest rateLimiterRequest) {
-        String endPoint = sanitize(rateLimiterRequest.getEndpoint());
-        String key = USER_REDIS_BASE_KEY + endPoint + ":" + sanitize(rateLimiterRequest.getIdentifier());
-        tokenBucketAlgorithm.reset(key);
+        ServiceConfig targetService = serviceRegistry.findServiceByPath(
+                GatewayPaths.toServicePath(rateLimiterRequest.getEndpoint()));
+        String key = keyBuilder.userKey(targetService, rateLimiterRequest.getIdentifier());
+        resetKey(key);
         log.info("Reset user rate limit for: {}", rateLimiterRequest.getUserId());
     }
 
     public void resetGlobalRateLimit(String apiEndPoint) {
-        String apiEndpoint = sanitize(apiEndPoint);
-        String globalKey = GLOBAL_REDIS_BASE_KEY + apiEndpoint;
-        tokenBucketAlgorithm.reset(globalKey);
-        log.info("Reset global rate limit for key:{}",globalKey);
+        ServiceConfig targetService = serviceRegistry.findServiceByPath(GatewayPaths.toServicePath(apiEndPoint));
+        for (String globalKey : keyBuilder.globalKeys(targetService)) {
+            resetKey(globalKey);
+            log.info("Reset global rate limit for key:{}",globalKey);
+        }
+    }
+
+    private void resetKey(String key) {
+        algorithmRegistry.resetAll(key);
+        tokenLeaseManager.invalidate(key);
+        localRateLimiter.reset(key);
+        blockedKeyCache.invalidate(key);
     }
 }
\ No newline at end of file
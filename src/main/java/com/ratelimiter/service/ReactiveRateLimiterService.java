@@ -0,0 +1,122 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.algorithm.RateLimitAlgorithm;
+import com.ratelimiter.algorithm.RedisScriptAlgorithm;
+import com.ratelimiter.algorithm.TokenBucketAlgorithm;
+import com.ratelimiter.exception.RedisUnavailableException;
+import com.ratelimiter.fallback.FallbackRateLimiter;
+import com.ratelimiter.fallback.RedisCircuitBreaker;
+import com.ratelimiter.metrics.DecisionSource;
+import com.ratelimiter.requestDto.RateLimiterRequest;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of RateLimiterService for the WebFlux runtime.
+ * Same plan and decision logic, but scripts run through ReactiveRedisTemplate.
+ * Leasing is not applied here since renewing a lease is a blocking call.
+ */
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRateLimiterService {
+
+    @Autowired
+    private RateLimiterService rateLimiterService;
+
+    @Autowired
+    private ReactiveStringRedisTemplate reactiveRedisTemplate;
+
+    @Autowired
+    private FallbackRateLimiter fallbackRateLimiter;
+
+    @Autowired
+    private RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * Emits the allowed response, or errors with RateLimitExceededException
+     */
+    public Mono<RateLimiterResponse> checkRateLimit(RateLimiterRequest rateLimiterRequest) {
+        if (!rateLimiterService.isEnabled()) {
+            return Mono.just(rateLimiterService.createAllowedResponse());
+        }
+        return Mono.defer(() -> {
+            RateLimitPlan plan = rateLimiterService.plan(rateLimiterRequest);
+            rateLimiterService.rejectIfBlocked(plan);
+            return evaluate(plan, rateLimiterRequest);
+        });
+    }
+
+    private Mono<RateLimiterResponse> evaluate(RateLimitPlan plan, RateLimiterRequest rateLimiterRequest) {
+        if (fallbackRateLimiter.isDegraded()) {
+            return Mono.fromCallable(() -> decideByFallback(plan, rateLimiterRequest));
+        }
+        RateLimitAlgorithm algorithm = plan.getAlgorithm();
+        if (!(algorithm instanceof RedisScriptAlgorithm scriptAlgorithm)) {
+            log.warn("Algorithm {} has no script, evaluating it off the event loop", algorithm.getType());
+            return Mono.fromCallable(() -> algorithm.isAllowed(plan.getBuckets()))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .map(results -> rateLimiterService.decide(plan, results, rateLimiterRequest, DecisionSource.REDIS))
+                    .onErrorResume(RedisUnavailableException.class,
+                            e -> Mono.fromCallable(() -> decideByFallback(plan, rateLimiterRequest)));
+        }
+        // Shaped plans run the token bucket's reserve script instead of its check
+        TokenBucketAlgorithm shaping = plan.isShaped() ? (TokenBucketAlgorithm) scriptAlgorithm : null;
+        long nowMillis = System.currentTimeMillis();
+        long start = System.nanoTime();
+        return reactiveRedisTemplate.execute(
+                        shaping != null ? shaping.getReserveScript() : scriptAlgorithm.getScript(),
+                        scriptAlgorithm.buildKeys(plan.getBuckets()),
+                        shaping != null
+                                ? shaping.buildReserveArgs(plan.getBuckets(), nowMillis, plan.getMaxDelayMillis())
+                                : scriptAlgorithm.buildArgs(plan.getBuckets(), nowMillis))
+                // The script result may arrive as one list or in several chunks
+                .reduce(new ArrayList<Long>(), (results, chunk) -> {
+                    for (Object value : (List<?>) chunk) {
+                        results.add((Long) value);
+                    }
+                    return results;
+                })
+                // Don't let a slow Redis hold the request past the budget
+                .timeout(circuitBreaker.getCallBudget())
+                .doOnSuccess(results -> {
+                    long elapsed = System.nanoTime() - start;
+                    circuitBreaker.recordSuccess(elapsed);
+                    (shaping != null ? shaping.getReserveTimer() : scriptAlgorithm.getScriptTimer())
+                            .record(elapsed, TimeUnit.NANOSECONDS);
+                })
+                .map(results -> shaping != null
+                        ? shaping.parseReservation(results, plan.getBuckets())
+                        : scriptAlgorithm.parseResult(results, plan.getBuckets()))
+                .onErrorResume(e -> {
+                    if (!(e instanceof RedisUnavailableException)) {
+                        circuitBreaker.recordFailure(System.nanoTime() - start);
+                    }
+                    log.debug("Redis could not decide for buckets {}, using fallback: {}", plan.getBuckets(), e.toString());
+                    return Mono.empty();
+                })
+                // Trying neighbouring global sub-buckets takes blocking calls
+                .flatMap(results -> rateLimiterService.canBorrowGlobal(plan, results)
+                        ? Mono.fromCallable(() -> rateLimiterService.borrowGlobal(plan, results))
+                                .subscribeOn(Schedulers.boundedElastic())
+                        : Mono.just(results))
+                // Decided outside the error handler so a rate limit rejection is never turned into a fallback
+                .map(results -> rateLimiterService.decide(plan, results, rateLimiterRequest, DecisionSource.REDIS))
+                .switchIfEmpty(Mono.fromCallable(() -> decideByFallback(plan, rateLimiterRequest)));
+    }
+
+    private RateLimiterResponse decideByFallback(RateLimitPlan plan, RateLimiterRequest rateLimiterRequest) {
+        return rateLimiterService.decide(plan, rateLimiterService.fallback(plan), rateLimiterRequest,
+                DecisionSource.FALLBACK);
+    }
+}
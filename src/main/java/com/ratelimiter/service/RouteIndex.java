@@ -0,0 +1,108 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable longest-prefix index of service routes, one trie node per path segment.
+ *
+ * Prefixes match whole segments, so /user-service matches /user-service/users/1
+ * but not /user-service-v2. Lookup cost depends on the depth of the path, not on
+ * the number of services. The registry builds a new index on every change.
+ */
+@Slf4j
+public final class RouteIndex {
+
+    private static final RouteIndex EMPTY = new RouteIndex(new Node(Map.of(), null));
+
+    private final Node root;
+
+    private RouteIndex(Node root) {
+        this.root = root;
+    }
+
+    public static RouteIndex empty() {
+        return EMPTY;
+    }
+
+    public static RouteIndex build(Collection<ServiceConfig> services) {
+        MutableNode root = new MutableNode();
+        // Sorted so that a duplicate prefix always resolves to the same service
+        List<ServiceConfig> sorted = services.stream()
+                .filter(service -> service.getPathPrefix() != null)
+                .sorted(Comparator.comparing(ServiceConfig::getName))
+                .toList();
+        for (ServiceConfig service : sorted) {
+            MutableNode node = root;
+            for (String segment : service.getPathPrefix().split("/")) {
+                if (!segment.isEmpty()) {
+                    node = node.children.computeIfAbsent(segment, s -> new MutableNode());
+                }
+            }
+            if (node.service != null) {
+                log.warn("Services {} and {} share path prefix {}, routing to {}",
+                        node.service.getName(), service.getName(), service.getPathPrefix(), node.service.getName());
+                continue;
+            }
+            node.service = service;
+        }
+        return new RouteIndex(root.freeze());
+    }
+
+    /**
+     * The service with the longest prefix matching the path, or null if none matches
+     */
+    public ServiceConfig find(String requestPath) {
+        if (requestPath == null) {
+            return null;
+        }
+        Node node = root;
+        ServiceConfig match = node.service;
+        int length = requestPath.length();
+        int start = 0;
+        while (start < length) {
+            int end = requestPath.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                node = node.children.get(requestPath.substring(start, end));
+                if (node == null) {
+                    break;
+                }
+                if (node.service != null) {
+                    match = node.service;
+                }
+            }
+            start = end + 1;
+        }
+        return match;
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children;
+        private final ServiceConfig service;
+
+        private Node(Map<String, Node> children, ServiceConfig service) {
+            this.children = children;
+            this.service = service;
+        }
+    }
+
+    private static final class MutableNode {
+        private final Map<String, MutableNode> children = new HashMap<>();
+        private ServiceConfig service;
+
+        private Node freeze() {
+            Map<String, Node> frozen = new HashMap<>(children.size() * 2);
+            children.forEach((segment, child) -> frozen.put(segment, child.freeze()));
+            return new Node(Map.copyOf(frozen), service);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -15,15 +16,19 @@ public class ServiceRegistry {
 
     private final Map<String, ServiceConfig> registeredServices = new ConcurrentHashMap<>();
 
+    // Rebuilt on every change, readers always see a complete index
+    private final AtomicReference<RouteIndex> routes = new AtomicReference<>(RouteIndex.empty());
+
     public void registerService(ServiceConfig serviceConfig) {
         if (serviceConfig == null || serviceConfig.getName() == null) {
             throw new IllegalArgumentException("Service configuration and service name cannot be null");
         }
         registeredServices.put(serviceConfig.getName(), serviceConfig);
+        rebuildRoutes();
         log.info("Service registered: {} | Path: {} | Target: {} | Per-User Limit: {} | Global Limit: {}",
                 serviceConfig.getName(),
                 serviceConfig.getPathPrefix(),
-                serviceConfig.getTargetUrl(),
+                serviceConfig.instanceUrls(),
                 serviceConfig.getPerUserLimit(),
                 serviceConfig.getGlobalLimit());
     }
@@ -39,13 +44,15 @@ public class ServiceRegistry {
         return config;
     }
 
+    /**
+     * Find the service with the longest path prefix matching the request path
+     */
     public ServiceConfig findServiceByPath(String requestPath) {
-        for (ServiceConfig config : registeredServices.values()) {
-            if (config.matches(requestPath)) {
-                return config;
-            }
+        ServiceConfig config = routes.get().find(requestPath);
+        if (config == null) {
+            throw new RuntimeException("No service found for path: " + requestPath);
         }
-        throw new RuntimeException("No service found for path: " + requestPath);
+        return config;
     }
 
     public boolean isServiceRegistered(String serviceName) {
@@ -67,6 +74,7 @@ public class ServiceRegistry {
             throw new RuntimeException("Service not found: " + serviceName);
         }
         registeredServices.put(serviceName, serviceConfig);
+        rebuildRoutes();
         log.info("Service updated: {}", serviceName);
     }
 
@@ -75,6 +83,7 @@ public class ServiceRegistry {
      */
     public void unregisterService(String serviceName) {
         if (registeredServices.remove(serviceName) != null) {
+            rebuildRoutes();
             log.info("Service unregistered: {}", serviceName);
         } else {
             throw new RuntimeException("Service not found: " + serviceName);
@@ -93,6 +102,14 @@ public class ServiceRegistry {
      */
     public void clearAllServices() {
         registeredServices.clear();
+        rebuildRoutes();
         log.info("All services cleared from registry");
     }
-}
\ No newline at end of file
+
+    /**
+     * Synchronized so that concurrent changes can't publish an index missing one of them
+     */
+    private synchronized void rebuildRoutes() {
+        routes.set(RouteIndex.build(registeredServices.values()));
+    }
+}
@@ -0,0 +1,102 @@
+package com.ratelimiter.shaping;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds requests admitted with a delay until their reserved token is due, for services
+ * with maxDelayMillis. Waiting requests are entries on a hashed timer wheel, not threads,
+ * so holding thousands costs a few objects each. Delays are rounded up to the tick.
+ *
+ * Each service may hold up to maxDelayedRequests. The rate limiter checks hasCapacity
+ * before reserving, so under contention the bound can be passed by the checks in flight.
+ *
+ * Publishes ratelimiter.shaping.delayed (counter) and ratelimiter.shaping.held (gauge)
+ * tagged with the service name.
+ */
+@Slf4j
+@Component
+public class RequestShaper {
+
+    private final HashedWheelTimer timer;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ServiceQueue> queues = new ConcurrentHashMap<>();
+
+    public RequestShaper(@Value("${rate-limiter.shaping.tick-millis:10}") long tickMillis,
+                         @Value("${rate-limiter.shaping.ticks-per-wheel:512}") int ticksPerWheel,
+                         MeterRegistry meterRegistry) {
+        this.timer = new HashedWheelTimer(new DefaultThreadFactory("request-shaper", true),
+                tickMillis, TimeUnit.MILLISECONDS, ticksPerWheel);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * True if the service can hold another request
+     */
+    public boolean hasCapacity(ServiceConfig service) {
+        return queue(service).held.get() < service.getMaxDelayedRequests();
+    }
+
+    /**
+     * Completes after delayMillis. Cancelling, e.g. when the client goes away, frees the slot at once
+     */
+    public Mono<Void> delay(ServiceConfig service, long delayMillis) {
+        ServiceQueue queue = queue(service);
+        return Mono.<Void>create(sink -> {
+                    queue.held.incrementAndGet();
+                    queue.delayed.increment();
+                    Timeout timeout = timer.newTimeout(t -> sink.success(), delayMillis, TimeUnit.MILLISECONDS);
+                    sink.onDispose(() -> {
+                        timeout.cancel();
+                        queue.held.decrementAndGet();
+                    });
+                })
+                // Continue off the wheel's single thread so it only ever fires timeouts
+                .publishOn(Schedulers.parallel());
+    }
+
+    @PreDestroy
+    public void close() {
+        timer.stop();
+    }
+
+    private ServiceQueue queue(ServiceConfig service) {
+        ServiceQueue queue = queues.get(service.getName());
+        if (queue == null) {
+            queue = queues.computeIfAbsent(service.getName(), ServiceQueue::new);
+        }
+        return queue;
+    }
+
+    private final class ServiceQueue {
+        private final AtomicInteger held = new AtomicInteger();
+        private final Counter delayed;
+
+        private ServiceQueue(String serviceName) {
+            this.delayed = Counter.builder("ratelimiter.shaping.delayed")
+                    .description("Requests held back until their token was due instead of rejected")
+                    .tag("service", serviceName)
+                    .register(meterRegistry);
+            Gauge.builder("ratelimiter.shaping.held", held, AtomicInteger::get)
+                    .description("Requests currently held back")
+                    .tag("service", serviceName)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.ratelimiter.utils;
+
+import static com.ratelimiter.constants.CommonConstants.GATEWAY_PREFIX;
+
+public final class GatewayPaths {
+
+    private GatewayPaths() {
+    }
+
+    /**
+     * Path as seen by the backend services: the request path without the leading /gateway, "/" if nothing is left
+     */
+    public static String toServicePath(String requestPath) {
+        if (requestPath == null || !requestPath.startsWith(GATEWAY_PREFIX)) {
+            return requestPath;
+        }
+        if (requestPath.length() == GATEWAY_PREFIX.length()) {
+            return "/";
+        }
+        return requestPath.substring(GATEWAY_PREFIX.length());
+    }
+}
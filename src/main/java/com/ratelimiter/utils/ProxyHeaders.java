@@ -0,0 +1,67 @@
+package com.ratelimiter.utils;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Header handling for the streaming proxy. Hop-by-hop headers only describe a single
+ * connection, so they are dropped on both legs along with any header the Connection
+ * header names. Everything else, including Content-Length, is passed through as is.
+ */
+public final class ProxyHeaders {
+
+    private static final Set<String> HOP_BY_HOP = Set.of(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade");
+
+    private ProxyHeaders() {
+    }
+
+    /**
+     * Client request headers to send to the backend. Host is left to the client for the target URL
+     */
+    public static void copyRequestHeaders(HttpHeaders from, HttpHeaders to) {
+        copy(from, to, true);
+    }
+
+    /**
+     * Backend response headers to send back to the client
+     */
+    public static HttpHeaders responseHeaders(HttpHeaders from) {
+        HttpHeaders to = new HttpHeaders();
+        copy(from, to, false);
+        return to;
+    }
+
+    /**
+     * True if the message announces a body, by length or by chunked transfer encoding
+     */
+    public static boolean hasBody(HttpHeaders headers) {
+        return headers.getContentLength() > 0 || headers.containsKey(HttpHeaders.TRANSFER_ENCODING);
+    }
+
+    private static void copy(HttpHeaders from, HttpHeaders to, boolean request) {
+        List<String> connectionOptions = from.getConnection();
+        from.forEach((name, values) -> {
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (HOP_BY_HOP.contains(lowerCaseName)
+                    || (request && lowerCaseName.equals("host"))
+                    || containsIgnoreCase(connectionOptions, name)) {
+                return;
+            }
+            to.addAll(name, values);
+        });
+    }
+
+    private static boolean containsIgnoreCase(List<String> values, String name) {
+        for (String value : values) {
+            if (value.trim().equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,166 @@
+package com.ratelimiter.utils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ratelimiter.requestDto.ServiceConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.ratelimiter.constants.CommonConstants.DEFAULT_USER_KEY;
+import static com.ratelimiter.constants.CommonConstants.GLOBAL_REDIS_BASE_KEY;
+import static com.ratelimiter.constants.CommonConstants.USER_REDIS_BASE_KEY;
+
+/**
+ * Builds the Redis keys of a request's buckets.
+ *
+ * Keys are per route: the user and global key prefixes of a service are computed
+ * once, and each route keeps a bounded cache of recently built user keys, so a
+ * repeat caller gets its key back without any string being built. Sanitizing
+ * scans the characters and only copies the string when something must change.
+ *
+ * Keys carry a Redis Cluster hash tag, the part in braces that picks the slot, so
+ * the keys one script evaluates together always share a slot:
+ *   rate_limit:global:{route}
+ *   rate_limit:user:{route}:id    with the global limit, next to the global key
+ *   rate_limit:user:{route:id}    without it, each user hashed on its own
+ * A service with globalShards splits its global bucket into sub-buckets, and each user
+ * is assigned one by a hash of the identifier, sharing its slot:
+ *   rate_limit:global:{route:shard}
+ *   rate_limit:user:{route:shard}:id
+ * Sanitizing removes braces, so an identifier can't pick its own slot. Turning the
+ * global limit on or off, or changing the shard count, moves every user key, which
+ * starts users on full buckets.
+ */
+@Component
+public class RateLimitKeyBuilder {
+
+    private static final char REPLACEMENT = '_';
+
+    private final Map<String, RouteKeys> routes = new ConcurrentHashMap<>();
+    private final long identifierCacheSize;
+    private final boolean globalEnabled;
+
+    public RateLimitKeyBuilder(@Value("${rate-limiter.keys.identifier-cache-size:10000}") long identifierCacheSize,
+                               @Value("${rate-limiter.global.enabled:false}") boolean globalEnabled) {
+        this.identifierCacheSize = identifierCacheSize;
+        this.globalEnabled = globalEnabled;
+    }
+
+    public String userKey(ServiceConfig service, String identifier) {
+        RouteKeys keys = routeKeys(service);
+        if (identifier == null) {
+            return keys.userPrefixes[keys.shardOf(DEFAULT_USER_KEY)] + DEFAULT_USER_KEY + keys.userSuffix;
+        }
+        String key = keys.userKeys.getIfPresent(identifier);
+        if (key == null) {
+            key = keys.userPrefixes[keys.shardOf(identifier)] + sanitize(identifier) + keys.userSuffix;
+            keys.userKeys.put(identifier, key);
+        }
+        return key;
+    }
+
+    /**
+     * The global key of a service whose global limit is not sharded
+     */
+    public String globalKey(ServiceConfig service) {
+        return globalKey(service, 0);
+    }
+
+    /**
+     * Key of one global sub-bucket, 0 up to the service's globalShardCount
+     */
+    public String globalKey(ServiceConfig service, int shard) {
+        return routeKeys(service).globalKeys[shard];
+    }
+
+    /**
+     * Keys of every global sub-bucket of a service
+     */
+    public List<String> globalKeys(ServiceConfig service) {
+        return List.of(routeKeys(service).globalKeys);
+    }
+
+    /**
+     * The global sub-bucket in the slot of the identifier's user key
+     */
+    public int globalShard(ServiceConfig service, String identifier) {
+        return routeKeys(service).shardOf(identifier == null ? DEFAULT_USER_KEY : identifier);
+    }
+
+    /**
+     * Replace every character outside [a-zA-Z0-9_:.-] with '_', returns the input itself if it is already clean
+     */
+    public static String sanitize(String input) {
+        if (input == null) {
+            return DEFAULT_USER_KEY;
+        }
+        int length = input.length();
+        int first = 0;
+        while (first < length && isAllowed(input.charAt(first))) {
+            first++;
+        }
+        if (first == length) {
+            return input;
+        }
+        char[] chars = input.toCharArray();
+        for (int i = first; i < length; i++) {
+            if (!isAllowed(chars[i])) {
+                chars[i] = REPLACEMENT;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static boolean isAllowed(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == ':' || c == '.' || c == '-';
+    }
+
+    private RouteKeys routeKeys(ServiceConfig service) {
+        RouteKeys keys = routes.get(service.getName());
+        int shards = globalEnabled ? service.globalShardCount() : 1;
+        if (keys == null || keys.globalKeys.length != shards) {
+            // First use, or the shard count changed
+            keys = routes.compute(service.getName(), (name, existing) ->
+                    existing != null && existing.globalKeys.length == shards
+                            ? existing
+                            : new RouteKeys(name, identifierCacheSize, globalEnabled, shards));
+        }
+        return keys;
+    }
+
+    private static final class RouteKeys {
+        private final String[] userPrefixes;
+        private final String userSuffix;
+        private final String[] globalKeys;
+        private final Cache<String, String> userKeys;
+
+        private RouteKeys(String serviceName, long identifierCacheSize, boolean globalEnabled, int shards) {
+            String route = sanitize(serviceName);
+            this.userPrefixes = new String[shards];
+            this.globalKeys = new String[shards];
+            for (int shard = 0; shard < shards; shard++) {
+                String tag = shards == 1 ? "{" + route + "}" : "{" + route + ":" + shard + "}";
+                // Users share the global key's slot only when a script takes from both
+                this.userPrefixes[shard] = USER_REDIS_BASE_KEY + (globalEnabled ? tag + ":" : "{" + route + ":");
+                this.globalKeys[shard] = GLOBAL_REDIS_BASE_KEY + tag;
+            }
+            this.userSuffix = globalEnabled ? "" : "}";
+            this.userKeys = Caffeine.newBuilder()
+                    .maximumSize(identifierCacheSize)
+                    .build();
+        }
+
+        private int shardOf(String identifier) {
+            if (globalKeys.length == 1) {
+                return 0;
+            }
+            int hash = identifier.hashCode();
+            return Math.floorMod(hash ^ (hash >>> 16), globalKeys.length);
+        }
+    }
+}
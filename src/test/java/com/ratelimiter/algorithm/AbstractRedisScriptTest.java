@@ -0,0 +1,75 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.config.RedisConfig;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.List;
+
+/**
+ * Runs rate limit scripts against a throwaway Redis in Docker, skipped where Docker is not available.
+ *
+ * Scripts are called with the algorithm's own keys and arguments but a clock the test
+ * picks, so no Spring context is needed and time never has to pass for real.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+abstract class AbstractRedisScriptTest {
+
+    // Some fixed instant, whole seconds so the token bucket's second clock lines up
+    static final long NOW = 1_700_000_000_000L;
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    static LettuceConnectionFactory connectionFactory;
+    static RedisTemplate<String, String> redisTemplate;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void flushAll() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Long> run(RedisScript<List> script, List<String> keys, List<String> args) {
+        return (List<Long>) redisTemplate.execute(script, keys, args.toArray());
+    }
+
+    /**
+     * One check of the buckets at the given time, parsed like the algorithm does
+     */
+    static List<RateLimiterResponse> check(RedisScriptAlgorithm algorithm, List<BucketSpec> buckets, long nowMillis) {
+        List<Long> result = run(algorithm.getScript(), algorithm.buildKeys(buckets), algorithm.buildArgs(buckets, nowMillis));
+        return algorithm.parseResult(result, buckets);
+    }
+
+    static RateLimiterResponse check(RedisScriptAlgorithm algorithm, BucketSpec bucket, long nowMillis) {
+        return check(algorithm, List.of(bucket), nowMillis).get(0);
+    }
+}
@@ -0,0 +1,46 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FixedWindowAlgorithmTest extends AbstractRedisScriptTest {
+
+    private final FixedWindowAlgorithm algorithm = new FixedWindowAlgorithm();
+
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 2, 10);
+
+    @Test
+    void countsUpToTheLimitWithinTheWindow() {
+        RateLimiterResponse first = check(algorithm, user, NOW);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getRemaining()).isEqualTo(1);
+        assertThat(first.getResetAtMillis()).isEqualTo(NOW + 10_000);
+
+        assertThat(check(algorithm, user, NOW).getRemaining()).isZero();
+
+        RateLimiterResponse rejected = check(algorithm, user, NOW);
+        assertThat(rejected.isAllowed()).isFalse();
+        // The window ends when the key expires, which Redis counts in real time
+        assertThat(rejected.getResetAtMillis()).isBetween(NOW + 9_000, NOW + 10_000);
+    }
+
+    @Test
+    void rejectionByOneBucketIsNotCountedInTheOthers() {
+        BucketSpec global = new BucketSpec("rate_limit:global:svc", 10, 10);
+        check(algorithm, List.of(global, user), NOW);
+        check(algorithm, List.of(global, user), NOW);
+
+        List<RateLimiterResponse> rejected = check(algorithm, List.of(global, user), NOW);
+        assertThat(rejected.get(1).isAllowed()).isFalse();
+        assertThat(rejected.get(0).getRemaining()).isEqualTo(8);
+    }
+
+    @Test
+    void keepsItsStateUnderItsOwnKey() {
+        assertThat(algorithm.buildKeys(List.of(user))).containsExactly("rate_limit:user:svc:alice:fw");
+    }
+}
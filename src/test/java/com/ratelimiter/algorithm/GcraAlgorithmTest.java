@@ -0,0 +1,57 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GcraAlgorithmTest extends AbstractRedisScriptTest {
+
+    private final GcraAlgorithm algorithm = new GcraAlgorithm();
+
+    // One request every 200 ms, bursts of up to 5
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 5, 1);
+
+    @Test
+    void allowsTheBurstThenOneRequestPerInterval() {
+        RateLimiterResponse first = check(algorithm, user, NOW);
+        assertThat(first.isAllowed()).isTrue();
+        assertThat(first.getRemaining()).isEqualTo(4);
+        for (int i = 1; i < 5; i++) {
+            assertThat(check(algorithm, user, NOW).isAllowed()).isTrue();
+        }
+
+        RateLimiterResponse rejected = check(algorithm, user, NOW);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getResetAtMillis()).isEqualTo(NOW + 200);
+
+        // Millisecond state, no rounding to the next second
+        assertThat(check(algorithm, user, NOW + 199).isAllowed()).isFalse();
+        assertThat(check(algorithm, user, NOW + 200).isAllowed()).isTrue();
+    }
+
+    @Test
+    void stateIsTheTheoreticalArrivalTime() {
+        for (int i = 0; i < 5; i++) {
+            check(algorithm, user, NOW);
+        }
+        String key = algorithm.buildKeys(List.of(user)).get(0);
+        assertThat(key).endsWith(":gcra");
+        assertThat(redisTemplate.opsForValue().get(key)).isEqualTo(String.valueOf(NOW + 1_000));
+    }
+
+    @Test
+    void rejectedRequestDoesNotMoveAnyBucket() {
+        BucketSpec global = new BucketSpec("rate_limit:global:svc", 100, 1);
+        for (int i = 0; i < 5; i++) {
+            check(algorithm, List.of(global, user), NOW);
+        }
+        String globalKey = algorithm.buildKeys(List.of(global)).get(0);
+        String before = redisTemplate.opsForValue().get(globalKey);
+
+        assertThat(check(algorithm, List.of(global, user), NOW).get(1).isAllowed()).isFalse();
+        assertThat(redisTemplate.opsForValue().get(globalKey)).isEqualTo(before);
+    }
+}
@@ -0,0 +1,170 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.config.RedisConfig;
+import com.ratelimiter.exception.RedisUnavailableException;
+import com.ratelimiter.fallback.RedisCircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisScriptExecutorTest extends AbstractRedisScriptTest {
+
+    private static final int CALLS = 16;
+
+    // Echoes ARGV[1] and counts how often it ran for its key
+    private static final RedisScript<List> ECHO = new DefaultRedisScript<>(
+            "return {tonumber(ARGV[1]), redis.call('INCR', KEYS[1])}", List.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<RedisScriptExecutor> executors = new ArrayList<>();
+    private final ExecutorService callers = Executors.newFixedThreadPool(CALLS);
+
+    @AfterEach
+    void stop() {
+        executors.forEach(RedisScriptExecutor::stop);
+        callers.shutdownNow();
+    }
+
+    @Test
+    void everyCallerGetsItsOwnResultFromASharedFlush() throws Exception {
+        RedisScriptExecutor executor = batching(redisTemplate);
+
+        List<CompletableFuture<List<Long>>> calls = callConcurrently(executor);
+
+        for (int i = 0; i < CALLS; i++) {
+            assertThat(calls.get(i).get(10, TimeUnit.SECONDS)).containsExactly((long) i, 1L);
+        }
+        assertThat(meterRegistry.get("ratelimiter.redis.batch.size").summary().max()).isGreaterThan(1);
+    }
+
+    @Test
+    void callsHittingNoscriptAfterAScriptFlushRunOnceMore() throws Exception {
+        RedisScriptExecutor executor = batching(redisTemplate);
+        for (CompletableFuture<List<Long>> call : callConcurrently(executor)) {
+            call.get(10, TimeUnit.SECONDS);
+        }
+
+        // As after a Redis restart or failover, the preloaded script is gone
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        List<CompletableFuture<List<Long>>> afterFlush = callConcurrently(executor);
+        for (int i = 0; i < CALLS; i++) {
+            // Each call ran exactly once more, none was lost or run twice
+            assertThat(afterFlush.get(i).get(10, TimeUnit.SECONDS)).containsExactly((long) i, 2L);
+        }
+        List<CompletableFuture<List<Long>>> reloaded = callConcurrently(executor);
+        for (int i = 0; i < CALLS; i++) {
+            assertThat(reloaded.get(i).get(10, TimeUnit.SECONDS)).containsExactly((long) i, 3L);
+        }
+    }
+
+    @Test
+    void aFailingCallKeepsItsErrorWithoutFailingTheRestOfItsBatch() throws Exception {
+        RedisScriptExecutor executor = batching(redisTemplate);
+        // INCR on a hash is a WRONGTYPE error for this one call
+        redisTemplate.opsForHash().put("counter:3", "field", "value");
+
+        List<CompletableFuture<List<Long>>> calls = callConcurrently(executor);
+
+        for (int i = 0; i < CALLS; i++) {
+            if (i == 3) {
+                CompletableFuture<List<Long>> failed = calls.get(i);
+                assertThatThrownBy(() -> failed.get(10, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(RedisUnavailableException.class);
+            } else {
+                assertThat(calls.get(i).get(10, TimeUnit.SECONDS)).containsExactly((long) i, 1L);
+            }
+        }
+    }
+
+    @Test
+    void aFlushThatFailsAsAWholeFailsEveryCallInIt() throws Exception {
+        // Nothing listens on port 1, so the flush can't reach Redis at all
+        LettuceConnectionFactory unreachable = new LettuceConnectionFactory("localhost", 1);
+        unreachable.afterPropertiesSet();
+        unreachable.start();
+        try {
+            RedisScriptExecutor executor = batching(new RedisConfig().redisTemplate(unreachable));
+
+            List<CompletableFuture<List<Long>>> calls = callConcurrently(executor);
+
+            for (CompletableFuture<List<Long>> call : calls) {
+                assertThatThrownBy(() -> call.get(10, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(RedisUnavailableException.class);
+            }
+            assertThat(meterRegistry.get("ratelimiter.redis.batch.size").summary().max()).isGreaterThan(1);
+        } finally {
+            unreachable.destroy();
+        }
+    }
+
+    /**
+     * Run ECHO on its own key with its own argument from CALLS threads at once
+     */
+    private List<CompletableFuture<List<Long>>> callConcurrently(RedisScriptExecutor executor) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<List<Long>>> calls = new ArrayList<>();
+        for (int i = 0; i < CALLS; i++) {
+            String argument = String.valueOf(i);
+            calls.add(CompletableFuture.supplyAsync(() -> {
+                awaitQuietly(start);
+                return executor.execute(ECHO, List.of("counter:" + argument), List.of(argument));
+            }, callers));
+        }
+        start.countDown();
+        return calls;
+    }
+
+    /**
+     * A started batching executor whose flush waits long enough to gather every concurrent call
+     */
+    private RedisScriptExecutor batching(RedisTemplate<String, String> template) {
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker();
+        ReflectionTestUtils.setField(circuitBreaker, "redisTemplate", template);
+        ReflectionTestUtils.setField(circuitBreaker, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(circuitBreaker, "callBudgetMillis", 5000L);
+        ReflectionTestUtils.setField(circuitBreaker, "windowSize", 200);
+        ReflectionTestUtils.setField(circuitBreaker, "minimumCalls", 100);
+        circuitBreaker.init();
+
+        RedisScriptExecutor executor = new RedisScriptExecutor();
+        ReflectionTestUtils.setField(executor, "redisTemplate", template);
+        ReflectionTestUtils.setField(executor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(executor, "circuitBreaker", circuitBreaker);
+        ReflectionTestUtils.setField(executor, "batchingEnabled", true);
+        ReflectionTestUtils.setField(executor, "maxBatchSize", CALLS);
+        ReflectionTestUtils.setField(executor, "maxWaitMicros", 50_000L);
+        ReflectionTestUtils.setField(executor, "queueCapacity", 1000);
+        executor.start();
+        executors.add(executor);
+        return executor;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowCounterAlgorithmTest extends AbstractRedisScriptTest {
+
+    private final SlidingWindowCounterAlgorithm algorithm = new SlidingWindowCounterAlgorithm();
+
+    // NOW is the start of a 10s window
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 10, 10);
+
+    @Test
+    void rejectsAtTheLimitUntilTheWindowEnds() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(check(algorithm, user, NOW).isAllowed()).isTrue();
+        }
+        RateLimiterResponse rejected = check(algorithm, user, NOW + 1_000);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getResetAtMillis()).isEqualTo(NOW + 10_000);
+    }
+
+    @Test
+    void weightsThePreviousWindowByItsOverlap() {
+        for (int i = 0; i < 10; i++) {
+            check(algorithm, user, NOW);
+        }
+        // A quarter into the next window, 10 * 0.75 = 7.5 of the previous count still applies
+        long next = NOW + 10_000;
+        assertThat(check(algorithm, user, next + 2_500).getRemaining()).isEqualTo(1);
+        assertThat(check(algorithm, user, next + 2_500).isAllowed()).isTrue();
+
+        RateLimiterResponse rejected = check(algorithm, user, next + 2_500);
+        assertThat(rejected.isAllowed()).isFalse();
+        // 7 of the previous 10 may remain next to the current 2, at 30% into the window
+        assertThat(rejected.getResetAtMillis()).isEqualTo(next + 3_000);
+        assertThat(check(algorithm, user, next + 3_000).isAllowed()).isTrue();
+    }
+}
@@ -0,0 +1,38 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlidingWindowLogAlgorithmTest extends AbstractRedisScriptTest {
+
+    private final SlidingWindowLogAlgorithm algorithm = new SlidingWindowLogAlgorithm();
+
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 2, 10);
+
+    @Test
+    void freesASlotWhenTheOldestRequestSlidesOut() {
+        assertThat(check(algorithm, user, NOW).isAllowed()).isTrue();
+        assertThat(check(algorithm, user, NOW + 4_000).isAllowed()).isTrue();
+
+        RateLimiterResponse rejected = check(algorithm, user, NOW + 5_000);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getResetAtMillis()).isEqualTo(NOW + 10_000);
+
+        assertThat(check(algorithm, user, NOW + 9_999).isAllowed()).isFalse();
+        assertThat(check(algorithm, user, NOW + 10_000).isAllowed()).isTrue();
+        // The request at +4s is still in the window
+        assertThat(check(algorithm, user, NOW + 10_000).isAllowed()).isFalse();
+    }
+
+    @Test
+    void requestsInTheSameMillisecondAreCountedSeparately() {
+        BucketSpec bucket = new BucketSpec("rate_limit:user:svc:bob", 3, 10);
+        check(algorithm, bucket, NOW);
+        check(algorithm, bucket, NOW);
+        check(algorithm, bucket, NOW);
+
+        assertThat(check(algorithm, bucket, NOW).isAllowed()).isFalse();
+    }
+}
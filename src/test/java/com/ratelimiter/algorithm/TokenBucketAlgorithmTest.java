@@ -0,0 +1,149 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.exception.RedisUnavailableException;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketAlgorithmTest extends AbstractRedisScriptTest {
+
+    private final TokenBucketAlgorithm algorithm = new TokenBucketAlgorithm();
+
+    private final BucketSpec global = new BucketSpec("rate_limit:global:svc", 5, 60);
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 2, 60);
+
+    @Test
+    void returnsAllowedThenThreeFieldsPerKey() {
+        List<BucketSpec> buckets = List.of(global, user);
+        List<Long> result = run(algorithm.getScript(), algorithm.buildKeys(buckets), algorithm.buildArgs(buckets, NOW));
+
+        assertThat(result).hasSize(1 + 2 * 3);
+        assertThat(result.get(0)).isEqualTo(1L);
+        // key_allowed, remaining, reset_at in ms for the global then the user bucket
+        assertThat(result.subList(1, 3)).containsExactly(1L, 4L);
+        assertThat(result.subList(4, 6)).containsExactly(1L, 1L);
+        assertThat(result.get(3)).isEqualTo(NOW + 12_000);
+        assertThat(result.get(6)).isEqualTo(NOW + 30_000);
+    }
+
+    @Test
+    void rejectionByOneBucketTakesNothingFromTheOthers() {
+        check(algorithm, List.of(global, user), NOW);
+        check(algorithm, List.of(global, user), NOW);
+
+        List<RateLimiterResponse> rejected = check(algorithm, List.of(global, user), NOW);
+        assertThat(rejected.get(1).isAllowed()).isFalse();
+        // The global bucket had a token and reports it, but kept it
+        assertThat(rejected.get(0).isAllowed()).isTrue();
+        assertThat(rejected.get(0).getRemaining()).isEqualTo(3);
+
+        BucketSpec bob = new BucketSpec("rate_limit:user:svc:bob", 2, 60);
+        assertThat(check(algorithm, List.of(global, bob), NOW).get(0).getRemaining()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectedBucketResetsWhenItsNextTokenRefills() {
+        check(algorithm, user, NOW);
+        check(algorithm, user, NOW);
+
+        RateLimiterResponse rejected = check(algorithm, user, NOW);
+        assertThat(rejected.isAllowed()).isFalse();
+        // 2 per 60s refills a token every 30s
+        assertThat(rejected.getResetAtMillis()).isEqualTo(NOW + 30_000);
+        assertThat(rejected.getResetAt()).isEqualTo((NOW + 30_000) / 1000);
+
+        assertThat(check(algorithm, user, NOW + 29_000).isAllowed()).isFalse();
+        assertThat(check(algorithm, user, NOW + 30_000).isAllowed()).isTrue();
+    }
+
+    @Test
+    void reserveTakesAnAvailableTokenWithoutDelay() {
+        List<Long> result = reserve(List.of(user), NOW, 10_000);
+
+        // delay_ms in place of allowed, then the same three fields per key
+        assertThat(result).containsExactly(0L, 1L, 1L, NOW + 30_000);
+        assertThat(algorithm.parseReservation(result, List.of(user)).get(0).getDelayMillis()).isZero();
+    }
+
+    @Test
+    void reserveTakesTheBucketBelowZeroWithinTheDelayBudget() {
+        check(algorithm, user, NOW);
+        check(algorithm, user, NOW);
+
+        List<Long> result = reserve(List.of(user), NOW, 30_000);
+        // The next token refills in 30s, after that the bucket is full again 60s later
+        assertThat(result).containsExactly(30_000L, 1L, 0L, NOW + 90_000);
+        RateLimiterResponse reserved = algorithm.parseReservation(result, List.of(user)).get(0);
+        assertThat(reserved.isAllowed()).isTrue();
+        assertThat(reserved.getDelayMillis()).isEqualTo(30_000);
+
+        // The reserved token is gone for the check script too
+        assertThat(check(algorithm, user, NOW + 30_000).isAllowed()).isFalse();
+        assertThat(check(algorithm, user, NOW + 60_000).isAllowed()).isTrue();
+    }
+
+    @Test
+    void reserveRejectsPastTheDelayBudgetWithoutTakingATokenTooSoon() {
+        check(algorithm, user, NOW);
+        check(algorithm, user, NOW);
+        reserve(List.of(user), NOW, 30_000);
+
+        List<Long> result = reserve(List.of(user), NOW, 30_000);
+        // 60s until a token, which fits the 30s budget again in 30s
+        assertThat(result).containsExactly(-1L, 0L, 0L, NOW + 30_000);
+        RateLimiterResponse rejected = algorithm.parseReservation(result, List.of(user)).get(0);
+        assertThat(rejected.isAllowed()).isFalse();
+        assertThat(rejected.getResetAtMillis()).isEqualTo(NOW + 30_000);
+
+        assertThat(reserve(List.of(user), NOW + 30_000, 30_000).get(0)).isEqualTo(30_000L);
+    }
+
+    @Test
+    void reserveWaitsForTheSlowestBucketAndRejectionTakesNothing() {
+        check(algorithm, user, NOW);
+        check(algorithm, user, NOW);
+
+        List<Long> rejected = reserve(List.of(global, user), NOW, 10_000);
+        assertThat(rejected.get(0)).isEqualTo(-1L);
+        // The global bucket could serve at once but keeps its token
+        assertThat(rejected.subList(1, 3)).containsExactly(1L, 5L);
+        assertThat(rejected.subList(4, 6)).containsExactly(0L, 0L);
+
+        List<Long> reserved = reserve(List.of(global, user), NOW, 30_000);
+        assertThat(reserved.get(0)).isEqualTo(30_000L);
+        assertThat(reserved.subList(1, 3)).containsExactly(1L, 4L);
+        List<RateLimiterResponse> responses = algorithm.parseReservation(reserved, List.of(global, user));
+        assertThat(responses).extracting(RateLimiterResponse::getDelayMillis).containsExactly(30_000L, 30_000L);
+    }
+
+    @Test
+    void scriptsSharingABucketRunOnTheSameClock() {
+        // One token a second
+        BucketSpec perSecond = new BucketSpec("rate_limit:user:svc:carol", 4, 4);
+        for (int i = 0; i < 4; i++) {
+            check(algorithm, perSecond, NOW);
+        }
+
+        // 2.5 tokens back, one taken
+        assertThat(reserve(List.of(perSecond), NOW + 2_500, 0).get(0)).isZero();
+        assertThat(check(algorithm, perSecond, NOW + 2_900).isAllowed()).isTrue();
+        // 0.9 left. A check on whole seconds would have set the bucket's clock back and
+        // handed out the same fraction of a second twice
+        assertThat(reserve(List.of(perSecond), NOW + 2_900, 0).get(0)).isEqualTo(-1L);
+    }
+
+    @Test
+    void unexpectedResultLayoutIsAnError() {
+        assertThatThrownBy(() -> algorithm.parseResult(List.of(1L, 1L, 0L), List.of(global, user)))
+                .isInstanceOf(RedisUnavailableException.class);
+    }
+
+    private List<Long> reserve(List<BucketSpec> buckets, long nowMillis, long maxDelayMillis) {
+        return run(algorithm.getReserveScript(), algorithm.buildKeys(buckets),
+                algorithm.buildReserveArgs(buckets, nowMillis, maxDelayMillis));
+    }
+}
@@ -0,0 +1,252 @@
+package com.ratelimiter.algorithm;
+
+import com.ratelimiter.algorithm.TokenLeaseManager.LeasedToken;
+import com.ratelimiter.metrics.RateLimiterMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TokenLeaseManagerTest extends AbstractRedisScriptTest {
+
+    private static final int MAX_LEASE_TOKENS = 10;
+    private static final long LEASE_MILLIS = 1000;
+
+    private final TokenLeaseManager leaseManager = new TokenLeaseManager();
+    private final AtomicInteger leaseCalls = new AtomicInteger();
+    private final AtomicInteger leasesInFlight = new AtomicInteger();
+    private final AtomicInteger maxLeasesInFlight = new AtomicInteger();
+    private volatile Consumer<String> beforeLease = key -> { };
+
+    // 100 per hour, so a second of refill is a small, known fraction of a token
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 100, 3600);
+
+    @BeforeEach
+    void wire() {
+        RateLimiterMetrics metrics = new RateLimiterMetrics();
+        ReflectionTestUtils.setField(metrics, "meterRegistry", new SimpleMeterRegistry());
+        TokenBucketAlgorithm algorithm = new TokenBucketAlgorithm();
+        ReflectionTestUtils.setField(algorithm, "rateLimiterMetrics", metrics);
+        ReflectionTestUtils.setField(algorithm, "scriptExecutor", new RedisScriptExecutor() {
+            @Override
+            public List<Long> execute(RedisScript<List> script, List<String> keys, List<String> args) {
+                leaseCalls.incrementAndGet();
+                maxLeasesInFlight.accumulateAndGet(leasesInFlight.incrementAndGet(), Math::max);
+                try {
+                    beforeLease.accept(keys.get(0));
+                    return run(script, keys, args);
+                } finally {
+                    leasesInFlight.decrementAndGet();
+                }
+            }
+        });
+        algorithm.registerMetrics();
+        ReflectionTestUtils.setField(leaseManager, "tokenBucketAlgorithm", algorithm);
+    }
+
+    @Test
+    void firstLeaseIsOneTokenThenSizedByTheObservedRate() {
+        assertThat(acquire(user, NOW).isAllowed()).isTrue();
+        assertThat(tokensInRedis(user)).isEqualTo(99.0);
+
+        // A second request at once is a high rate, the next lease is as big as allowed
+        for (int i = 0; i < MAX_LEASE_TOKENS; i++) {
+            assertThat(acquire(user, NOW).isAllowed()).isTrue();
+        }
+        assertThat(leaseCalls).hasValue(2);
+        assertThat(tokensInRedis(user)).isEqualTo(89.0);
+    }
+
+    @Test
+    void slowKeysKeepLeasingSingleTokens() {
+        acquire(user, NOW);
+        // One request per lease duration is one token per second
+        acquire(user, NOW + 10_000);
+        acquire(user, NOW + 20_000);
+
+        assertThat(leaseCalls).hasValue(3);
+        assertThat(tokensInRedis(user)).isCloseTo(97 + 20 / 36.0, within(1e-6));
+    }
+
+    @Test
+    void aNodeAdmitsAtMostMaxLeaseTokensBeyondWhatRedisAllows() {
+        for (int i = 0; i < 45; i++) {
+            acquire(user, NOW);
+        }
+        // Every lease after the first is capped, the other 44 requests take five of them
+        assertThat(leaseCalls).hasValue(6);
+        assertThat(tokensInRedis(user)).isEqualTo(100.0 - 1 - 5 * MAX_LEASE_TOKENS);
+
+        // Another node empties the bucket, this one only has what is left of its lease
+        redisTemplate.opsForHash().put(user.getKey(), "tokens", "0");
+        int admitted = 0;
+        while (acquire(user, NOW).isAllowed()) {
+            admitted++;
+        }
+        assertThat(admitted).isEqualTo(6).isLessThanOrEqualTo(MAX_LEASE_TOKENS);
+    }
+
+    @Test
+    void rejectedLeaseWaitsForTheResetInMilliseconds() {
+        BucketSpec small = new BucketSpec("rate_limit:user:svc:bob", 2, 60);
+        acquire(small, NOW);
+        acquire(small, NOW);
+
+        LeasedToken rejected = acquire(small, NOW);
+        assertThat(rejected.isAllowed()).isFalse();
+        // 2 per 60s refills a token every 30s
+        assertThat(rejected.getResponse().getResetAtMillis()).isEqualTo(NOW + 30_000);
+        assertThat(leaseCalls).hasValue(3);
+
+        // Until then the node answers without asking Redis
+        assertThat(acquire(small, NOW + 29_000).isAllowed()).isFalse();
+        assertThat(leaseCalls).hasValue(3);
+        assertThat(acquire(small, NOW + 30_000).isAllowed()).isTrue();
+    }
+
+    @Test
+    void unusedTokensGoBackToRedisWhenTheLeaseExpires() {
+        acquire(user, NOW);
+        acquire(user, NOW);
+        acquire(user, NOW);
+        // 1 + 10 leased, 3 taken, 8 still held
+        assertThat(tokensInRedis(user)).isEqualTo(89.0);
+
+        leaseManager.returnExpiredLeases(NOW + LEASE_MILLIS - 1);
+        assertThat(tokensInRedis(user)).isEqualTo(89.0);
+
+        leaseManager.returnExpiredLeases(NOW + LEASE_MILLIS);
+        assertThat(tokensInRedis(user)).isCloseTo(97 + 1 / 36.0, within(1e-6));
+        assertThat(leaseManager.getActiveLeaseCount()).isEqualTo(1);
+    }
+
+    @Test
+    void sweepForgetsIdleKeysAfterReturningTheirTokens() {
+        acquire(user, NOW);
+        acquire(user, NOW);
+
+        leaseManager.returnExpiredLeases(NOW + 61_000);
+
+        assertThat(leaseManager.getActiveLeaseCount()).isZero();
+        assertThat(tokensInRedis(user)).isCloseTo(98 + 61 / 36.0, within(1e-6));
+    }
+
+    @Test
+    void releasedTokenGoesBackToItsOwnLease() {
+        acquire(user, NOW);
+        LeasedToken token = acquire(user, NOW);
+
+        leaseManager.release(token, NOW);
+        for (int i = 0; i < MAX_LEASE_TOKENS; i++) {
+            assertThat(acquire(user, NOW).isAllowed()).isTrue();
+        }
+        assertThat(leaseCalls).hasValue(2);
+    }
+
+    @Test
+    void tokenOfAnEndedLeaseIsNotCreditedToTheNextOne() {
+        BucketSpec small = new BucketSpec("rate_limit:user:svc:bob", 2, 3600);
+        LeasedToken first = acquire(small, NOW);
+        // Renews into a second lease, which gets the last token in Redis
+        assertThat(acquire(small, NOW).isAllowed()).isTrue();
+
+        leaseManager.release(first, NOW);
+
+        assertThat(acquire(small, NOW).isAllowed()).isFalse();
+    }
+
+    @Test
+    void renewalsOfOneKeyNeverOverlap() throws Exception {
+        BucketSpec bucket = new BucketSpec("rate_limit:user:svc:carol", 1000, 3600);
+        beforeLease = key -> sleep(1);
+        AtomicInteger allowed = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                workers.add(pool.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        if (acquire(bucket, NOW).isAllowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(maxLeasesInFlight).hasValue(1);
+        // Every token in the bucket was handed out once, none lost or made up
+        assertThat(allowed).hasValue(1000);
+        assertThat(tokensInRedis(bucket)).isZero();
+    }
+
+    @Test
+    void renewalOfOneKeyDoesNotHoldUpOthers() throws Exception {
+        BucketSpec bob = new BucketSpec("rate_limit:user:svc:bob", 100, 3600);
+        CountDownLatch aliceRenewing = new CountDownLatch(1);
+        CountDownLatch bobRenewing = new CountDownLatch(1);
+        AtomicBoolean overlapped = new AtomicBoolean();
+        beforeLease = key -> {
+            if (key.equals(user.getKey())) {
+                aliceRenewing.countDown();
+                overlapped.set(await(bobRenewing));
+            } else {
+                bobRenewing.countDown();
+            }
+        };
+
+        CompletableFuture<LeasedToken> alice = CompletableFuture.supplyAsync(() -> acquire(user, NOW));
+        assertThat(aliceRenewing.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(acquire(bob, NOW).isAllowed()).isTrue();
+
+        assertThat(alice.get(5, TimeUnit.SECONDS).isAllowed()).isTrue();
+        assertThat(overlapped).isTrue();
+    }
+
+    private LeasedToken acquire(BucketSpec bucket, long now) {
+        return leaseManager.tryAcquire(bucket, MAX_LEASE_TOKENS, LEASE_MILLIS, now);
+    }
+
+    private static double tokensInRedis(BucketSpec bucket) {
+        return Double.parseDouble((String) redisTemplate.opsForHash().get(bucket.getKey(), "tokens"));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
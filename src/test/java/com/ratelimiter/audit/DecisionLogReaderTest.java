@@ -0,0 +1,119 @@
+package com.ratelimiter.audit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DecisionLogReaderTest {
+
+    // A 1 MB file holds this many records after its header
+    private static final int RECORDS_PER_FILE = (1024 * 1024 - DecisionRecord.HEADER_SIZE) / DecisionRecord.SIZE;
+
+    @TempDir
+    Path directory;
+
+    private final DecisionAuditLog auditLog = new DecisionAuditLog();
+
+    @BeforeEach
+    void startAuditLog() throws Exception {
+        ReflectionTestUtils.setField(auditLog, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(auditLog, "enabled", true);
+        ReflectionTestUtils.setField(auditLog, "directory", directory.toString());
+        ReflectionTestUtils.setField(auditLog, "fileSizeMb", 1);
+        ReflectionTestUtils.setField(auditLog, "maxFiles", 20);
+        ReflectionTestUtils.setField(auditLog, "ringCapacity", 65536);
+        auditLog.start();
+    }
+
+    @Test
+    void recordsReadBackAsWritten() throws Exception {
+        long before = System.currentTimeMillis();
+        auditLog.record("product-service", "user:42", Decision.USER_LIMITED, 3, TimeUnit.MICROSECONDS.toNanos(1500));
+        auditLog.stop();
+
+        List<DecisionRecord> records = readAll(DecisionLogReader.filter(null, null, null, null, null));
+        assertThat(records).hasSize(1);
+        DecisionRecord record = records.get(0);
+        assertThat(record.getRoute()).isEqualTo("product-service");
+        assertThat(record.getIdentifierHash()).isEqualTo(Long.toHexString(DecisionRecord.hashIdentifier("user:42")));
+        assertThat(record.getDecision()).isEqualTo(Decision.USER_LIMITED);
+        assertThat(record.getRemaining()).isEqualTo(3);
+        assertThat(record.getLatencyMicros()).isEqualTo(1500);
+        assertThat(record.getTimestampMillis()).isBetween(before, System.currentTimeMillis());
+    }
+
+    @Test
+    void filtersByIdentifierAndDecision() throws Exception {
+        auditLog.record("product-service", "user:42", Decision.ALLOWED, 9, 0);
+        auditLog.record("product-service", "user:42", Decision.USER_LIMITED, 0, 0);
+        auditLog.record("product-service", "user:7", Decision.USER_LIMITED, 0, 0);
+        auditLog.stop();
+
+        assertThat(readAll(DecisionLogReader.filter(null, "user:42", null, null, null))).hasSize(2);
+        assertThat(readAll(DecisionLogReader.filter(null, "user:42", Decision.USER_LIMITED, null, null))).hasSize(1);
+        assertThat(readAll(DecisionLogReader.filter("order-service", null, null, null, null))).isEmpty();
+    }
+
+    @Test
+    void longRouteNamesMatchTheirTruncatedRecords() throws Exception {
+        String route = "notification-preferences-service-v2";
+        auditLog.record(route, "user:42", Decision.ALLOWED, 1, 0);
+        auditLog.stop();
+
+        List<DecisionRecord> records = readAll(DecisionLogReader.filter(route, null, null, null, null));
+        assertThat(records).hasSize(1);
+        assertThat(records.get(0).getRoute()).isEqualTo(route.substring(0, DecisionRecord.MAX_ROUTE_BYTES));
+    }
+
+    @Test
+    void readLatestReturnsTheNewestRecordsOldestFirstAcrossFiles() throws Exception {
+        int total = RECORDS_PER_FILE + 10;
+        for (int i = 0; i < total; i++) {
+            auditLog.record("product-service", "user:42", Decision.ALLOWED, i, 0);
+        }
+        auditLog.stop();
+        assertThat(DecisionLogReader.listFiles(directory)).hasSize(2);
+
+        List<DecisionRecord> latest = DecisionLogReader.readLatest(directory,
+                DecisionLogReader.filter(null, null, null, null, null), 15);
+        assertThat(latest).extracting(DecisionRecord::getRemaining)
+                .containsExactly(longRange(total - 15, total));
+    }
+
+    @Test
+    void readLatestFindsOlderMatchesWhenFewerThanTheLimitMatch() throws Exception {
+        auditLog.record("product-service", "user:42", Decision.GLOBAL_LIMITED, 0, 0);
+        for (int i = 1; i < 100; i++) {
+            auditLog.record("product-service", "user:42", Decision.ALLOWED, i, 0);
+        }
+        auditLog.stop();
+
+        List<DecisionRecord> latest = DecisionLogReader.readLatest(directory,
+                DecisionLogReader.filter(null, null, Decision.GLOBAL_LIMITED, null, null), 10);
+        assertThat(latest).extracting(DecisionRecord::getRemaining).containsExactly(0L);
+    }
+
+    private List<DecisionRecord> readAll(Predicate<DecisionRecord> filter) throws Exception {
+        List<DecisionRecord> records = new ArrayList<>();
+        DecisionLogReader.read(directory, filter, records::add);
+        return records;
+    }
+
+    private static Long[] longRange(long from, long to) {
+        Long[] values = new Long[(int) (to - from)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = from + i;
+        }
+        return values;
+    }
+}
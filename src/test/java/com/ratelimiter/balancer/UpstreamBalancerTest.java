@@ -0,0 +1,194 @@
+package com.ratelimiter.balancer;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class UpstreamBalancerTest {
+
+    private static final String A = "http://a:8080";
+    private static final String B = "http://b:8080";
+    private static final String C = "http://c:8080";
+
+    private final UpstreamBalancer balancer = new UpstreamBalancer();
+
+    @Test
+    void ejectsAnInstanceAfterConsecutiveFailures() {
+        ServiceConfig service = service(LoadBalancingStrategy.POWER_OF_TWO_CHOICES, 60_000, A, B);
+        Upstream a = upstream(service, A);
+
+        fail(service, a, 2);
+        assertThat(a.isEjected()).isFalse();
+        fail(service, a, 1);
+        assertThat(a.isEjected()).isTrue();
+
+        for (int i = 0; i < 100; i++) {
+            Upstream chosen = balancer.acquire(service);
+            assertThat(chosen.getUrl()).isEqualTo(B);
+            balancer.release(service, chosen, 200, 1_000_000);
+        }
+    }
+
+    @Test
+    void successesAndCancellationsDoNotCountTowardsEjection() {
+        ServiceConfig service = service(LoadBalancingStrategy.POWER_OF_TWO_CHOICES, 60_000, A, B);
+        Upstream a = upstream(service, A);
+
+        fail(service, a, 2);
+        release(service, a, 200);
+        fail(service, a, 2);
+        assertThat(a.isEjected()).isFalse();
+
+        // Cancelled before an answer, neither success nor failure
+        release(service, a, -1);
+        fail(service, a, 1);
+        assertThat(a.isEjected()).isTrue();
+    }
+
+    @Test
+    void clientErrorsAreNotFailures() {
+        ServiceConfig service = service(LoadBalancingStrategy.POWER_OF_TWO_CHOICES, 60_000, A, B);
+        Upstream a = upstream(service, A);
+
+        for (int i = 0; i < 10; i++) {
+            release(service, a, 404);
+        }
+        assertThat(a.isEjected()).isFalse();
+    }
+
+    @Test
+    void spreadsOverEjectedInstancesWhenAllAreEjected() {
+        ServiceConfig service = service(LoadBalancingStrategy.LEAST_OUTSTANDING, 60_000, A, B);
+        fail(service, upstream(service, A), 3);
+        fail(service, upstream(service, B), 3);
+
+        Upstream chosen = balancer.acquire(service);
+        assertThat(chosen.getUrl()).isIn(A, B);
+        assertThat(chosen.getOutstanding()).isEqualTo(1);
+    }
+
+    @Test
+    void takesAnInstanceBackOnceItsEjectionRunsOut() throws InterruptedException {
+        ServiceConfig service = service(LoadBalancingStrategy.LEAST_OUTSTANDING, 1, A, B);
+        Upstream a = upstream(service, A);
+        fail(service, a, 3);
+        assertThat(a.isEjected()).isTrue();
+
+        Thread.sleep(5);
+        assertThat(a.isAvailable(System.nanoTime())).isTrue();
+        assertThat(a.isEjected()).isFalse();
+
+        // The failure count starts over after the ejection
+        fail(service, a, 2);
+        assertThat(a.isEjected()).isFalse();
+    }
+
+    @Test
+    void slowStartRampsTheWeightUpLinearly() {
+        Upstream upstream = new Upstream(A);
+        long slowStart = TimeUnit.SECONDS.toNanos(10);
+        long ejectedAt = 1_000;
+        upstream.recordFailure(1, 100, ejectedAt);
+        long back = ejectedAt + 100;
+        assertThat(upstream.isAvailable(back)).isTrue();
+
+        assertThat(upstream.weight(back, slowStart)).isCloseTo(0.1, within(1e-9));
+        assertThat(upstream.weight(back + slowStart / 2, slowStart)).isCloseTo(0.5, within(1e-9));
+        assertThat(upstream.weight(back + slowStart, slowStart)).isEqualTo(1);
+        // Warm, stays at full weight
+        assertThat(upstream.weight(back, slowStart)).isEqualTo(1);
+    }
+
+    @Test
+    void slowStartingInstancesLookMoreLoaded() {
+        Upstream warm = new Upstream(A);
+        Upstream warming = new Upstream(B);
+        long slowStart = TimeUnit.SECONDS.toNanos(10);
+        warming.recordFailure(1, 0, 0);
+        assertThat(warming.isAvailable(1)).isTrue();
+
+        long now = 1 + slowStart / 4;
+        assertThat(warming.load(now, slowStart)).isEqualTo(4 * warm.load(now, slowStart));
+        assertThat(warming.cost(now, slowStart)).isEqualTo(4 * warm.cost(now, slowStart));
+    }
+
+    @Test
+    void leastOutstandingPicksTheIdlestInstance() {
+        ServiceConfig service = service(LoadBalancingStrategy.LEAST_OUTSTANDING, 60_000, A, B, C);
+        Upstream a = upstream(service, A);
+        Upstream b = upstream(service, B);
+        a.acquire();
+        a.acquire();
+        b.acquire();
+
+        for (int i = 0; i < 20; i++) {
+            Upstream chosen = balancer.acquire(service);
+            assertThat(chosen.getUrl()).isEqualTo(C);
+            balancer.release(service, chosen, 200, 1_000_000);
+        }
+    }
+
+    @Test
+    void powerOfTwoChoicesPrefersTheFasterInstance() {
+        ServiceConfig service = service(LoadBalancingStrategy.POWER_OF_TWO_CHOICES, 60_000, A, B);
+        release(service, upstream(service, A), 200, TimeUnit.MILLISECONDS.toNanos(200));
+        release(service, upstream(service, B), 200, TimeUnit.MILLISECONDS.toNanos(2));
+
+        // With two instances both are always sampled
+        for (int i = 0; i < 20; i++) {
+            Upstream chosen = balancer.acquire(service);
+            assertThat(chosen.getUrl()).isEqualTo(B);
+            chosen.release();
+        }
+    }
+
+    @Test
+    void keepsTheStateOfInstancesThatStayListed() {
+        ServiceConfig service = service(LoadBalancingStrategy.LEAST_OUTSTANDING, 60_000, A, B);
+        fail(service, upstream(service, A), 3);
+
+        ServiceConfig reloaded = service(LoadBalancingStrategy.LEAST_OUTSTANDING, 60_000, A, C);
+        List<Upstream> upstreams = balancer.upstreams(reloaded);
+        assertThat(upstreams).extracting(Upstream::getUrl).containsExactly(A, C);
+        assertThat(upstreams.get(0).isEjected()).isTrue();
+        assertThat(upstreams.get(1).isEjected()).isFalse();
+    }
+
+    private static ServiceConfig service(LoadBalancingStrategy strategy, long ejectionMillis, String... urls) {
+        return ServiceConfig.builder()
+                .name("product-service")
+                .targetUrls(List.of(urls))
+                .loadBalancing(strategy)
+                .ejectAfterFailures(3)
+                .ejectionMillis(ejectionMillis)
+                .slowStartMillis(10_000)
+                .build();
+    }
+
+    private Upstream upstream(ServiceConfig service, String url) {
+        return balancer.upstreams(service).stream()
+                .filter(upstream -> upstream.getUrl().equals(url))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private void fail(ServiceConfig service, Upstream upstream, int times) {
+        for (int i = 0; i < times; i++) {
+            release(service, upstream, 503);
+        }
+    }
+
+    private void release(ServiceConfig service, Upstream upstream, int status) {
+        release(service, upstream, status, 1_000_000);
+    }
+
+    private void release(ServiceConfig service, Upstream upstream, int status, long elapsedNanos) {
+        upstream.acquire();
+        balancer.release(service, upstream, status, elapsedNanos);
+    }
+}
@@ -0,0 +1,386 @@
+package com.ratelimiter.benchmark;
+
+import com.ratelimiter.DistributedRateLimiterApplication;
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.service.ServiceRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test: stub backends, the gateway and an open-loop client in one JVM.
+ *
+ * Starts a StubBackend for every port the registered services point at, boots the
+ * gateway, then sends requests at a fixed Poisson arrival rate whether or not earlier
+ * ones have finished, like independent clients do. Latency is measured from when a
+ * request was due to be sent, so a stalled gateway shows up in the tail instead of
+ * slowing the client down.
+ *
+ * Callers follow production's shape: users drawn from a Zipfian distribution over
+ * -Dusers identities, plus a share of traffic from a few hot API keys. Every request
+ * is also run through an exact token bucket model of the configured limits, and the
+ * gateway's rejections are compared against it per service. Needs a reachable Redis,
+ * rate limit keys from earlier runs are deleted first.
+ *
+ * ./mvnw -Pbenchmark test -DskipTests -Dbenchmark.main=com.ratelimiter.benchmark.GatewayLoadBenchmark
+ *   -Drate=2000 -DdurationSeconds=60 -Dusers=100000 -DapiKeyShare=0.2 -DbackendLatencyMs=20
+ *   -Dexec.args="--services.user-service.globalLimit=100000"
+ * Backend latency and payload can be set per port, e.g. -DbackendLatencyMs.8083=200.
+ * Program arguments are passed to the gateway, so any application.yml value can be overridden.
+ */
+public class GatewayLoadBenchmark {
+
+    private static final int ALLOWED = 200;
+    private static final int REJECTED = 429;
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("rate", "500"));
+        int durationSeconds = Integer.getInteger("durationSeconds", 60);
+        int warmupSeconds = Integer.getInteger("warmupSeconds", 5);
+        int users = Integer.getInteger("users", 100_000);
+        double zipfExponent = Double.parseDouble(System.getProperty("zipfExponent", "1.1"));
+        int apiKeys = Integer.getInteger("apiKeys", 20);
+        double apiKeyShare = Double.parseDouble(System.getProperty("apiKeyShare", "0.2"));
+        long seed = Long.getLong("seed", 42);
+
+        String[] gatewayArgs = Arrays.copyOf(args, args.length + 2);
+        gatewayArgs[args.length] = "--server.port=0";
+        gatewayArgs[args.length + 1] = "--logging.level.com.ratelimiter=WARN";
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DistributedRateLimiterApplication.class)
+                .run(gatewayArgs);
+        List<StubBackend> backends = new ArrayList<>();
+        try {
+            List<ServiceConfig> services = context.getBean(ServiceRegistry.class).getAllServices();
+            for (int port : backendPorts(services)) {
+                backends.add(new StubBackend(port,
+                        Long.getLong("backendLatencyMs." + port, Long.getLong("backendLatencyMs", 20)),
+                        Integer.getInteger("payloadBytes." + port, Integer.getInteger("payloadBytes", 512))));
+            }
+            clearRateLimitKeys(context);
+
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            Workload workload = new Workload(services, users, zipfExponent, apiKeys, apiKeyShare, seed);
+            Run run = drive(port, workload, rate, warmupSeconds, durationSeconds);
+
+            System.out.printf("%nrate=%.0f/s duration=%ds users=%d zipf=%.2f apiKeys=%d apiKeyShare=%.2f%n",
+                    rate, durationSeconds, users, zipfExponent, apiKeys, apiKeyShare);
+            System.out.printf("%-18s %-22s %9s %9s %9s %9s %8s %10s %10s %9s %9s%n", "service", "algorithm",
+                    "req/s", "p50 ms", "p99 ms", "p999 ms", "errors", "rejected", "expected", "over", "accuracy");
+            LimitModel model = new LimitModel(context.getEnvironment());
+            for (int s = 0; s < services.size(); s++) {
+                run.report(s, services.get(s), model, durationSeconds);
+            }
+        } finally {
+            context.close();
+            backends.forEach(StubBackend::close);
+        }
+    }
+
+    private static Set<Integer> backendPorts(List<ServiceConfig> services) {
+        Set<Integer> ports = new TreeSet<>();
+        for (ServiceConfig service : services) {
+            for (String url : service.instanceUrls()) {
+                URI uri = URI.create(url);
+                if ("localhost".equals(uri.getHost()) || "127.0.0.1".equals(uri.getHost())) {
+                    ports.add(uri.getPort() < 0 ? 80 : uri.getPort());
+                }
+            }
+        }
+        return ports;
+    }
+
+    /**
+     * Start from full buckets so the model and the gateway agree on the initial state
+     */
+    @SuppressWarnings("unchecked")
+    private static void clearRateLimitKeys(ConfigurableApplicationContext context) {
+        RedisTemplate<String, String> redisTemplate = context.getBean("redisTemplate", RedisTemplate.class);
+        Set<String> keys = redisTemplate.keys("rate_limit:*");
+        if (keys != null && !keys.isEmpty()) {
+            redisTemplate.delete(keys);
+        }
+    }
+
+    /**
+     * Open loop: request i is due at the i-th Poisson arrival and is sent then,
+     * regardless of how many requests are still in flight
+     */
+    private static Run drive(int port, Workload workload, double rate, int warmupSeconds, int durationSeconds)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, rate * (warmupSeconds + durationSeconds) * 1.2 + 1024);
+        Run run = new Run(capacity, workload);
+        String baseUrl = "http://localhost:" + port + "/gateway";
+        SplittableRandom random = new SplittableRandom(workload.seed + 1);
+
+        long startNanos = System.nanoTime();
+        long startMillis = System.currentTimeMillis();
+        long measureFrom = startNanos + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        double dueNanos = startNanos;
+        while (run.sent < capacity) {
+            dueNanos += -Math.log(1 - random.nextDouble()) / rate * 1_000_000_000.0;
+            long due = (long) dueNanos;
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int i = run.sent++;
+            int service = workload.nextService();
+            int caller = workload.nextCaller();
+            run.service[i] = service;
+            run.caller[i] = caller;
+            run.sentAtMillis[i] = startMillis + TimeUnit.NANOSECONDS.toMillis(due - startNanos);
+            run.measured[i] = due >= measureFrom;
+
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl
+                            + workload.services.get(service).getPathPrefix() + "/items/" + (i & 1023)))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET();
+            workload.identify(request, caller);
+            client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> run.complete(i, error == null ? response.statusCode() : 0,
+                            System.nanoTime() - due));
+        }
+        run.awaitCompletion(Duration.ofSeconds(60));
+        return run;
+    }
+
+    /**
+     * Who sends each request and to which service
+     */
+    private static final class Workload {
+        private final List<ServiceConfig> services;
+        private final int users;
+        private final double apiKeyShare;
+        private final long seed;
+        private final ZipfSampler userSampler;
+        private final ZipfSampler apiKeySampler;
+        private final SplittableRandom random;
+
+        private Workload(List<ServiceConfig> services, int users, double zipfExponent, int apiKeys,
+                         double apiKeyShare, long seed) {
+            this.services = services;
+            this.users = users;
+            this.apiKeyShare = apiKeyShare;
+            this.seed = seed;
+            this.userSampler = new ZipfSampler(users, zipfExponent);
+            // A handful of integrations send most of the API key traffic
+            this.apiKeySampler = new ZipfSampler(Math.max(1, apiKeys), 1.5);
+            this.random = new SplittableRandom(seed);
+        }
+
+        int nextService() {
+            return random.nextInt(services.size());
+        }
+
+        /**
+         * Users are 0 to users - 1, API keys come after them
+         */
+        int nextCaller() {
+            if (random.nextDouble() < apiKeyShare) {
+                return users + apiKeySampler.sample(random);
+            }
+            return userSampler.sample(random);
+        }
+
+        void identify(HttpRequest.Builder request, int caller) {
+            if (caller >= users) {
+                request.header("X-API-Key", "load-test-key-" + (caller - users));
+            } else {
+                request.header("X-User-Id", "user-" + caller);
+            }
+        }
+    }
+
+    /**
+     * Samples ranks 0 to n - 1 with probability proportional to 1 / (rank + 1)^exponent
+     */
+    private static final class ZipfSampler {
+        private final double[] cumulative;
+
+        private ZipfSampler(int n, double exponent) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int rank = 0; rank < n; rank++) {
+                sum += 1 / Math.pow(rank + 1, exponent);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < n; rank++) {
+                cumulative[rank] /= sum;
+            }
+        }
+
+        int sample(SplittableRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(cumulative.length - 1, index >= 0 ? index : -index - 1);
+        }
+    }
+
+    /**
+     * Exact token bucket per user and per service, with the gateway's limits and the
+     * same millisecond clock as the scripts. Shaped services follow the reserve script
+     * instead, assuming they never hold maxDelayedRequests.
+     * A sharded global limit is modelled as one bucket, which the gateway only approaches
+     * as callers spread evenly over the sub-buckets
+     */
+    private static final class LimitModel {
+        private final int userWindowSeconds;
+        private final boolean globalEnabled;
+        private final int globalWindowSeconds;
+
+        private LimitModel(Environment environment) {
+            userWindowSeconds = environment.getProperty("rate-limiter.default-window-seconds", Integer.class, 60);
+            globalEnabled = environment.getProperty("rate-limiter.global.enabled", Boolean.class, false);
+            globalWindowSeconds = environment.getProperty("rate-limiter.global.window-seconds", Integer.class, 60);
+        }
+
+        /**
+         * Whether each request of the service should have been allowed, in send order
+         */
+        boolean[] expected(Run run, int service, ServiceConfig config) {
+            Map<Integer, double[]> userBuckets = new HashMap<>();
+            double[] globalBucket = null;
+            boolean[] allowed = new boolean[run.sent];
+            boolean shaped = config.getMaxDelayMillis() > 0;
+            double maxDelaySeconds = config.getMaxDelayMillis() / 1000.0;
+            for (int i = 0; i < run.sent; i++) {
+                if (run.service[i] != service) {
+                    continue;
+                }
+                double now = run.sentAtMillis[i] / 1000.0;
+                double[] user = userBuckets.computeIfAbsent(run.caller[i],
+                        c -> new double[]{config.getPerUserLimit(), now});
+                refill(user, config.getPerUserLimit(), userWindowSeconds, now);
+                boolean ok = canTake(user, config.getPerUserLimit(), userWindowSeconds, maxDelaySeconds);
+                if (globalEnabled) {
+                    if (globalBucket == null) {
+                        globalBucket = new double[]{config.getGlobalLimit(), now};
+                    }
+                    refill(globalBucket, config.getGlobalLimit(), globalWindowSeconds, now);
+                    ok &= canTake(globalBucket, config.getGlobalLimit(), globalWindowSeconds, maxDelaySeconds);
+                }
+                if (ok) {
+                    user[0] -= 1;
+                    if (globalBucket != null) {
+                        globalBucket[0] -= 1;
+                    }
+                }
+                allowed[i] = ok;
+            }
+            return allowed;
+        }
+
+        /**
+         * A token is there, or with a wait budget, refills within it
+         */
+        private static boolean canTake(double[] bucket, int limit, int windowSeconds, double maxDelaySeconds) {
+            return (1 - bucket[0]) * windowSeconds / limit <= maxDelaySeconds;
+        }
+
+        private static void refill(double[] bucket, int limit, int windowSeconds, double now) {
+            double elapsed = Math.max(0, now - bucket[1]);
+            bucket[0] = Math.min(limit, bucket[0] + elapsed * limit / windowSeconds);
+            bucket[1] = now;
+        }
+    }
+
+    /**
+     * What was sent and what came back, indexed by request number
+     */
+    private static final class Run {
+        private final Workload workload;
+        private final int[] service;
+        private final int[] caller;
+        private final long[] sentAtMillis;
+        private final boolean[] measured;
+        private final int[] status;
+        private final long[] latencyNanos;
+        private final AtomicInteger completed = new AtomicInteger();
+        private int sent;
+
+        private Run(int capacity, Workload workload) {
+            this.workload = workload;
+            this.service = new int[capacity];
+            this.caller = new int[capacity];
+            this.sentAtMillis = new long[capacity];
+            this.measured = new boolean[capacity];
+            this.status = new int[capacity];
+            this.latencyNanos = new long[capacity];
+        }
+
+        void complete(int i, int statusCode, long latency) {
+            status[i] = statusCode;
+            latencyNanos[i] = latency;
+            completed.incrementAndGet();
+        }
+
+        void awaitCompletion(Duration timeout) throws InterruptedException {
+            long deadline = System.nanoTime() + timeout.toNanos();
+            while (completed.get() < sent && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+        }
+
+        void report(int s, ServiceConfig config, LimitModel model, int durationSeconds) {
+            boolean[] expectedAllowed = model.expected(this, s, config);
+            int count = 0;
+            for (int i = 0; i < sent; i++) {
+                if (service[i] == s && measured[i]) {
+                    count++;
+                }
+            }
+            LatencyRecorder recorder = new LatencyRecorder(Math.max(1, count));
+            int errors = 0;
+            int rejected = 0;
+            int expectedRejected = 0;
+            int overAdmitted = 0;
+            for (int i = 0; i < sent; i++) {
+                if (service[i] != s || !measured[i]) {
+                    continue;
+                }
+                recorder.record(latencyNanos[i]);
+                if (status[i] == REJECTED) {
+                    rejected++;
+                } else if (status[i] != ALLOWED) {
+                    errors++;
+                }
+                if (!expectedAllowed[i]) {
+                    expectedRejected++;
+                    if (status[i] == ALLOWED) {
+                        overAdmitted++;
+                    }
+                }
+            }
+            double[] p = recorder.percentiles(50, 99, 99.9);
+            double accuracy = count == 0 ? 1 : 1 - (double) Math.abs(rejected - expectedRejected) / count;
+            System.out.printf("%-18s %-22s %9.0f %9.2f %9.2f %9.2f %8d %10d %10d %9d %8.2f%%%n",
+                    config.getName(), config.getAlgorithm(), (double) count / durationSeconds,
+                    p[0], p[1], p[2], errors, rejected, expectedRejected, overAdmitted, accuracy * 100);
+        }
+    }
+}
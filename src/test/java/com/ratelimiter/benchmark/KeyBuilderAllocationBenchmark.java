@@ -0,0 +1,80 @@
+package com.ratelimiter.benchmark;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.utils.GatewayPaths;
+import com.ratelimiter.utils.RateLimitKeyBuilder;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Bytes allocated and time spent per rate limit key, comparing the old regex based
+ * key building with RateLimitKeyBuilder.
+ *
+ * Callers come from a pool of identifiers, some of which need sanitizing, and are
+ * picked round robin so the identifier cache sees repeat callers like real traffic.
+ *
+ * ./mvnw -Pbenchmark test -DskipTests -Dbenchmark.main=com.ratelimiter.benchmark.KeyBuilderAllocationBenchmark
+ *   -Diterations=5000000 -Didentifiers=5000
+ */
+public class KeyBuilderAllocationBenchmark {
+
+    private static final String SANITIZE_REGEX = "[^a-zA-Z0-9_:.-]";
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int iterations = Integer.getInteger("iterations", 5_000_000);
+        int identifierCount = Integer.getInteger("identifiers", 5_000);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        ServiceConfig service = ServiceConfig.builder()
+                .name("product-service")
+                .pathPrefix("/product-service")
+                .build();
+        RateLimitKeyBuilder keyBuilder = new RateLimitKeyBuilder(10_000, true);
+        String endpoint = "/gateway/product-service/products/42";
+        String[] identifiers = new String[identifierCount];
+        for (int i = 0; i < identifierCount; i++) {
+            identifiers[i] = i % 2 == 0 ? "user:" + i : "apikey:key/" + i + "@example.com";
+        }
+
+        Runnable regex = () -> {
+            for (int i = 0; i < iterations; i++) {
+                String path = endpoint.replace("/gateway", "");
+                String identifier = identifiers[i % identifierCount];
+                String key = "rate_limit:user:" + path.replaceAll(SANITIZE_REGEX, "_")
+                        + ":" + identifier.replaceAll(SANITIZE_REGEX, "_");
+                String globalKey = "rate_limit:global:" + path.replaceAll(SANITIZE_REGEX, "_");
+                sink += key.length() + globalKey.length();
+            }
+        };
+        Runnable builder = () -> {
+            for (int i = 0; i < iterations; i++) {
+                String path = GatewayPaths.toServicePath(endpoint);
+                String identifier = identifiers[i % identifierCount];
+                String key = keyBuilder.userKey(service, identifier);
+                String globalKey = keyBuilder.globalKey(service);
+                sink += path.length() + key.length() + globalKey.length();
+            }
+        };
+
+        // Warm up both so the JIT has compiled them before measuring
+        regex.run();
+        builder.run();
+
+        System.out.printf("%n%-12s %14s %12s%n", "approach", "bytes/op", "ns/op");
+        report("regex", regex, iterations, threads);
+        report("keyBuilder", builder, iterations, threads);
+        System.out.println("(sink " + sink + ")");
+    }
+
+    private static void report(String name, Runnable run, int iterations, com.sun.management.ThreadMXBean threads) {
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        run.run();
+        long elapsed = System.nanoTime() - start;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - bytesBefore;
+        System.out.printf("%-12s %14.1f %12.1f%n", name, (double) bytes / iterations, (double) elapsed / iterations);
+    }
+}
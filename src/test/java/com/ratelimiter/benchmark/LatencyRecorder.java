@@ -0,0 +1,46 @@
+package com.ratelimiter.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free recorder for a fixed number of latency samples, in nanoseconds
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+    private final AtomicInteger count = new AtomicInteger();
+
+    public LatencyRecorder(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    public void record(long nanos) {
+        int index = count.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = nanos;
+        }
+    }
+
+    public int getCount() {
+        return Math.min(count.get(), samples.length);
+    }
+
+    /**
+     * Percentiles in milliseconds, e.g. percentiles(50, 99, 99.9)
+     */
+    public double[] percentiles(double... percentiles) {
+        int size = getCount();
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        double[] result = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (size == 0) {
+                continue;
+            }
+            int index = (int) Math.min(size - 1, Math.ceil(percentiles[i] / 100.0 * size) - 1);
+            result[i] = sorted[Math.max(0, index)] / 1_000_000.0;
+        }
+        return result;
+    }
+}
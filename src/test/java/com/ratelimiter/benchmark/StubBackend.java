@@ -0,0 +1,60 @@
+package com.ratelimiter.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Minimal HTTP backend for benchmarks: answers every request after a fixed
+ * latency with a JSON payload of the configured size
+ */
+@Slf4j
+public class StubBackend implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public StubBackend(int port, long latencyMillis, int payloadBytes) throws IOException {
+        byte[] payload = buildPayload(payloadBytes);
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress(port), 4096);
+        this.server.setExecutor(executor);
+        this.server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody(); OutputStream out = exchange.getResponseBody()) {
+                body.readAllBytes();
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, payload.length);
+                out.write(payload);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        this.server.start();
+        log.info("Stub backend listening on {} (latency {} ms, payload {} bytes)", port, latencyMillis, payloadBytes);
+    }
+
+    private static byte[] buildPayload(int size) {
+        String prefix = "{\"data\":\"";
+        String suffix = "\"}";
+        int fill = Math.max(0, size - prefix.length() - suffix.length());
+        char[] chars = new char[fill];
+        Arrays.fill(chars, 'x');
+        return (prefix + new String(chars) + suffix).getBytes();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,123 @@
+package com.ratelimiter.benchmark;
+
+import com.ratelimiter.DistributedRateLimiterApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the servlet gateway on Tomcat's platform-thread pool against virtual threads.
+ *
+ * Starts a stub backend on port 8081 (user-service in application.yml), then boots the
+ * gateway once per thread model and keeps a fixed number of requests in flight against it.
+ * Needs a reachable Redis and JDK 21 for the virtual-thread run.
+ *
+ * ./mvnw -Pbenchmark test -DskipTests -Dbenchmark.main=com.ratelimiter.benchmark.ThreadModelBenchmark
+ *   -Dconcurrency=2000 -Drequests=100000 -DbackendLatencyMs=50 -Dredis.host=localhost
+ */
+public class ThreadModelBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("concurrency", 2000);
+        int requests = Integer.getInteger("requests", 100_000);
+        long backendLatencyMs = Long.getLong("backendLatencyMs", 50);
+        int payloadBytes = Integer.getInteger("payloadBytes", 512);
+        String redisHost = System.getProperty("redis.host", "localhost");
+
+        if (Runtime.version().feature() < 21) {
+            System.out.println("WARNING: JDK " + Runtime.version().feature()
+                    + " has no virtual threads, both runs will use platform threads");
+        }
+
+        try (StubBackend ignored = new StubBackend(8081, backendLatencyMs, payloadBytes)) {
+            Result platform = run(false, concurrency, requests, redisHost);
+            Result virtual = run(true, concurrency, requests, redisHost);
+
+            System.out.printf("%nconcurrency=%d requests=%d backendLatency=%dms%n", concurrency, requests, backendLatencyMs);
+            System.out.printf("%-10s %12s %10s %10s %10s %8s%n", "threads", "req/s", "p50 ms", "p99 ms", "p999 ms", "errors");
+            platform.print("platform");
+            virtual.print("virtual");
+        }
+    }
+
+    private static Result run(boolean virtualThreads, int concurrency, int requests, String redisHost) throws Exception {
+        // Passed as command line arguments so they override application.yml
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DistributedRateLimiterApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.data.redis.host=" + redisHost,
+                        // Measure the thread model, not rejections
+                        "--services.user-service.perUserLimit=1000000000",
+                        "--services.user-service.globalLimit=1000000000",
+                        "--logging.level.com.ratelimiter=WARN");
+        try {
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            String baseUrl = "http://localhost:" + port + "/gateway/user-service/users/";
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .build();
+
+            // Warm up connections, JIT and the Redis connection
+            drive(client, baseUrl, Math.min(concurrency, 200), Math.min(requests, 5_000), new LatencyRecorder(5_000));
+
+            LatencyRecorder recorder = new LatencyRecorder(requests);
+            long start = System.nanoTime();
+            int errors = drive(client, baseUrl, concurrency, requests, recorder);
+            long elapsed = System.nanoTime() - start;
+            return new Result(recorder, requests * 1_000_000_000.0 / elapsed, errors);
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Closed loop: keeps exactly `concurrency` requests in flight until all are sent
+     */
+    private static int drive(HttpClient client, String baseUrl, int concurrency, int requests,
+                             LatencyRecorder recorder) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requests);
+        AtomicInteger errors = new AtomicInteger();
+        for (int i = 0; i < requests; i++) {
+            inFlight.acquire();
+            String userId = "user-" + ThreadLocalRandom.current().nextInt(10_000);
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + userId))
+                    .header("X-User-Id", userId)
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            long sentAt = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        recorder.record(System.nanoTime() - sentAt);
+                        if (error != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                        done.countDown();
+                    });
+        }
+        done.await();
+        return errors.get();
+    }
+
+    private record Result(LatencyRecorder recorder, double throughput, int errors) {
+
+        void print(String name) {
+            double[] p = recorder.percentiles(50, 99, 99.9);
+            System.out.printf("%-10s %12.0f %10.2f %10.2f %10.2f %8d%n", name, throughput, p[0], p[1], p[2], errors);
+        }
+    }
+}
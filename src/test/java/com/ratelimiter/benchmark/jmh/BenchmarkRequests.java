@@ -0,0 +1,68 @@
+package com.ratelimiter.benchmark.jmh;
+
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Requests with a realistic set of headers for each way of identifying a caller
+ */
+final class BenchmarkRequests {
+
+    private static final Base64.Encoder BASE64_URL = Base64.getUrlEncoder().withoutPadding();
+
+    private BenchmarkRequests() {
+    }
+
+    /**
+     * A request from caller number n, identified the way the caller kind says:
+     * jwt, api-key, user-header or anonymous (by IP only)
+     */
+    static MockHttpServletRequest request(String callerKind, int n, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("Host", "gateway.example.com");
+        request.addHeader("User-Agent", "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) "
+                + "Chrome/126.0.0.0 Safari/537.36");
+        request.addHeader("Accept", "application/json, text/plain, */*");
+        request.addHeader("Accept-Encoding", "gzip, deflate, br");
+        request.addHeader("Accept-Language", "en-US,en;q=0.9");
+        request.addHeader("Cookie", "_ga=GA1.2.1234567890.1700000000; theme=dark");
+        request.addHeader("X-Forwarded-For", "203.0." + (n >> 8 & 0xff) + "." + (n & 0xff) + ", 10.0.0.1");
+        request.addHeader("X-Request-Id", "req-" + n);
+        switch (callerKind) {
+            case "jwt" -> request.addHeader("Authorization", "Bearer " + jwt("user-" + n));
+            case "api-key" -> request.addHeader("X-API-Key", "key_live_" + n + "_9f2c1d7e5a");
+            case "user-header" -> request.addHeader("X-User-Id", "user-" + n);
+            case "anonymous" -> {
+            }
+            default -> throw new IllegalArgumentException("Unknown caller kind: " + callerKind);
+        }
+        return request;
+    }
+
+    /**
+     * HS256 token for the subject, signed with the benchmark secret and valid for an hour
+     */
+    static String jwt(String subject) {
+        long now = System.currentTimeMillis() / 1000;
+        String header = encode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}");
+        String payload = encode("{\"sub\":\"" + subject + "\",\"iat\":" + now + ",\"exp\":" + (now + 3600) + "}");
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(GatewayContext.JWT_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] signature = mac.doFinal((header + "." + payload).getBytes(StandardCharsets.UTF_8));
+            return header + "." + payload + "." + BASE64_URL.encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign benchmark token", e);
+        }
+    }
+
+    private static String encode(String json) {
+        return BASE64_URL.encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
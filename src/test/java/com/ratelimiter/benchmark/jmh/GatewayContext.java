@@ -0,0 +1,74 @@
+package com.ratelimiter.benchmark.jmh;
+
+import com.ratelimiter.DistributedRateLimiterApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * The gateway booted once per fork, with the Redis templates swapped for
+ * InProcessRedisTemplate and InProcessReactiveRedisTemplate so script calls never
+ * leave the JVM.
+ *
+ * Everything else is the real application context, so benchmarks pick up the
+ * same beans, caches and configuration as production.
+ */
+@State(Scope.Benchmark)
+public class GatewayContext {
+
+    public static final String JWT_SECRET = "benchmark-jwt-secret-0123456789abcdef";
+
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        String auditDirectory = Files.createTempDirectory("jmh-audit").toString();
+        context = new SpringApplicationBuilder(DistributedRateLimiterApplication.class)
+                .initializers(applicationContext -> applicationContext.getBeanFactory()
+                        .addBeanPostProcessor(new RedisStandInPostProcessor()))
+                // Passed as command line arguments so they override application.yml
+                .run(
+                        "--server.port=0",
+                        "--rate-limiter.identity.jwt.secret=" + JWT_SECRET,
+                        "--rate-limiter.audit.directory=" + auditDirectory,
+                        "--logging.level.root=WARN");
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    private static final class RedisStandInPostProcessor implements BeanPostProcessor {
+
+        private volatile InProcessRedisTemplate standIn;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if ("redisTemplate".equals(beanName) && bean instanceof RedisTemplate) {
+                standIn = InProcessRedisTemplate.replacing((RedisTemplate<String, String>) bean);
+                return standIn;
+            }
+            if (bean instanceof ReactiveStringRedisTemplate template) {
+                // Both templates may be created in either order, the stand-in is looked up per call
+                return new InProcessReactiveRedisTemplate(template.getConnectionFactory(), () -> standIn);
+            }
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ratelimiter.benchmark.jmh;
+
+import com.ratelimiter.identity.IdentityResolverChain;
+import com.ratelimiter.identity.RequestIdentity;
+import com.ratelimiter.identity.ServletRequestView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IdentityResolverChain.resolve for each kind of caller, on requests carrying the
+ * usual browser and proxy headers. This is what IdentifierExtractor used to do.
+ *
+ * Callers repeat, so JWT verification is mostly served from the claims cache as
+ * it would be for returning clients.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IdentityBenchmark {
+
+    private static final int CALLERS = 1024;
+
+    @Param({"jwt", "api-key", "user-header", "anonymous"})
+    private String callerKind;
+
+    private IdentityResolverChain identityResolverChain;
+    private MockHttpServletRequest[] requests;
+    private int next;
+
+    @Setup
+    public void setUp(GatewayContext gateway) {
+        identityResolverChain = gateway.getBean(IdentityResolverChain.class);
+        requests = new MockHttpServletRequest[CALLERS];
+        for (int i = 0; i < CALLERS; i++) {
+            requests[i] = BenchmarkRequests.request(callerKind, i, "/gateway/user-service/users/" + i);
+        }
+    }
+
+    @Benchmark
+    public RequestIdentity resolve() {
+        MockHttpServletRequest request = requests[next];
+        next = (next + 1) & (CALLERS - 1);
+        return identityResolverChain.resolve(new ServletRequestView(request));
+    }
+}
@@ -0,0 +1,30 @@
+package com.ratelimiter.benchmark.jmh;
+
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Reactive side of InProcessRedisTemplate: script calls are answered by the same
+ * in-process buckets, so single and batched calls see one state. Everything else
+ * goes to the wrapped connection factory as usual.
+ */
+public class InProcessReactiveRedisTemplate extends ReactiveStringRedisTemplate {
+
+    private final Supplier<InProcessRedisTemplate> scripts;
+
+    public InProcessReactiveRedisTemplate(ReactiveRedisConnectionFactory connectionFactory,
+                                          Supplier<InProcessRedisTemplate> scripts) {
+        super(connectionFactory);
+        this.scripts = scripts;
+    }
+
+    @Override
+    public <T> Flux<T> execute(RedisScript<T> script, List<String> keys, List<?> args) {
+        return Flux.defer(() -> Flux.just(scripts.get().execute(script, keys, args.toArray())));
+    }
+}
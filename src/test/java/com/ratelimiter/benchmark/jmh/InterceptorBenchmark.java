@@ -0,0 +1,77 @@
+package com.ratelimiter.benchmark.jmh;
+
+import com.ratelimiter.interceptor.RateLimitInterceptor;
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.service.ServiceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole RateLimitInterceptor.preHandle path: identity, route lookup, keys,
+ * blocked key cache, token bucket script, metrics, audit log and response headers.
+ *
+ * allowed runs against limits that are never reached. blocked allows one request
+ * per caller a minute, so after the first round every call is a rejection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class InterceptorBenchmark {
+
+    private static final int CALLERS = 1024;
+
+    @Param({"allowed", "blocked"})
+    private String scenario;
+
+    @Param({"user-header", "jwt"})
+    private String callerKind;
+
+    private RateLimitInterceptor interceptor;
+    private MockHttpServletRequest[] requests;
+    private int next;
+
+    @Setup
+    public void setUp(GatewayContext gateway) {
+        interceptor = gateway.getBean(RateLimitInterceptor.class);
+        String serviceName = "benchmark-" + scenario;
+        boolean blocked = "blocked".equals(scenario);
+        ServiceRegistry serviceRegistry = gateway.getBean(ServiceRegistry.class);
+        if (!serviceRegistry.isServiceRegistered(serviceName)) {
+            serviceRegistry.registerService(ServiceConfig.builder()
+                    .name(serviceName)
+                    .pathPrefix("/" + serviceName)
+                    .targetUrl("http://localhost:8081")
+                    .stripPrefix(true)
+                    .perUserLimit(blocked ? 1 : 1_000_000_000)
+                    .globalLimit(1_000_000_000)
+                    .build());
+        }
+        requests = new MockHttpServletRequest[CALLERS];
+        for (int i = 0; i < CALLERS; i++) {
+            requests[i] = BenchmarkRequests.request(callerKind, i, "/gateway/" + serviceName + "/items/" + i);
+        }
+    }
+
+    @Benchmark
+    public boolean preHandle() throws Exception {
+        MockHttpServletRequest request = requests[next];
+        next = (next + 1) & (CALLERS - 1);
+        return interceptor.preHandle(request, new MockHttpServletResponse(), this);
+    }
+}
@@ -0,0 +1,34 @@
+package com.ratelimiter.benchmark.jmh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks in this package with the GC profiler, so every result
+ * comes with gc.alloc.rate.norm (bytes allocated per operation) next to its time.
+ *
+ * Takes the usual JMH command line, e.g. a benchmark regex or -f/-wi/-i. Results
+ * are also written to target/jmh-result.json, the baseline to compare changes against.
+ *
+ * ./mvnw -Pjmh test -DskipTests -Djmh.args="InterceptorBenchmark"
+ */
+public class JmhRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(JmhRunner.class.getPackageName() + "\\..*Benchmark");
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("target/jmh-result.json").resultFormat(ResultFormatType.JSON);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,77 @@
+package com.ratelimiter.benchmark.jmh;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.service.ServiceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ServiceRegistry.findServiceByPath as the number of registered services grows.
+ *
+ * Every other service also has a versioned sub-route (/service-7/v2), so lookups
+ * have to pick the longest of two matching prefixes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RouteLookupBenchmark {
+
+    private static final int PATHS = 1024;
+
+    @Param({"10", "100", "1000"})
+    private int services;
+
+    private ServiceRegistry serviceRegistry;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        serviceRegistry = new ServiceRegistry();
+        for (int i = 0; i < services; i++) {
+            serviceRegistry.registerService(service("service-" + i, "/service-" + i));
+            if (i % 2 == 0) {
+                serviceRegistry.registerService(service("service-" + i + "-v2", "/service-" + i + "/v2"));
+            }
+        }
+        paths = new String[PATHS];
+        for (int i = 0; i < PATHS; i++) {
+            int service = i % services;
+            paths[i] = i % 4 == 0
+                    ? "/service-" + service + "/v2/orders/" + i + "/items"
+                    : "/service-" + service + "/users/" + i;
+        }
+    }
+
+    @Benchmark
+    public ServiceConfig findServiceByPath() {
+        String path = paths[next];
+        next = (next + 1) & (PATHS - 1);
+        return serviceRegistry.findServiceByPath(path);
+    }
+
+    private static ServiceConfig service(String name, String pathPrefix) {
+        return ServiceConfig.builder()
+                .name(name)
+                .pathPrefix(pathPrefix)
+                .targetUrl("http://localhost:8081")
+                .stripPrefix(true)
+                .perUserLimit(100)
+                .globalLimit(1000)
+                .build();
+    }
+}
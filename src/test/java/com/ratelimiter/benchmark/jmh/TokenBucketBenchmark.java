@@ -0,0 +1,63 @@
+package com.ratelimiter.benchmark.jmh;
+
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.algorithm.TokenBucketAlgorithm;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TokenBucketAlgorithm.isAllowed for a user and a global bucket, through the real
+ * RedisScriptExecutor and circuit breaker with the in-process Redis templates behind them.
+ *
+ * Limits are high enough that every call is allowed, so this is the cost of an
+ * allowed decision minus the Redis round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenBucketBenchmark {
+
+    private static final int LIMIT = 1_000_000_000;
+
+    @Param({"1", "10000"})
+    private int callers;
+
+    private TokenBucketAlgorithm algorithm;
+    private List<BucketSpec>[] requests;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp(GatewayContext gateway) {
+        algorithm = gateway.getBean(TokenBucketAlgorithm.class);
+        BucketSpec global = new BucketSpec("rate_limit:global:{benchmark-service}", LIMIT, 1);
+        requests = new List[callers];
+        for (int i = 0; i < callers; i++) {
+            BucketSpec user = new BucketSpec("rate_limit:user:{benchmark-service}:user:" + i, LIMIT, 1);
+            requests[i] = List.of(global, user);
+        }
+    }
+
+    @Benchmark
+    public List<RateLimiterResponse> isAllowed() {
+        List<BucketSpec> buckets = requests[next];
+        next = next + 1 == callers ? 0 : next + 1;
+        return algorithm.isAllowed(buckets);
+    }
+}
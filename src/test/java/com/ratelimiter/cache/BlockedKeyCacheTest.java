@@ -0,0 +1,64 @@
+package com.ratelimiter.cache;
+
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockedKeyCacheTest {
+
+    private final BlockedKeyCache cache = new BlockedKeyCache(true, 1000, new SimpleMeterRegistry());
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 5, 60);
+
+    @Test
+    void rejectsFromTheCacheUntilTheResetTime() throws InterruptedException {
+        long resetAtMillis = System.currentTimeMillis() + 200;
+        cache.markBlocked(user, resetAtMillis);
+
+        RateLimiterResponse blocked = cache.getBlocked(user);
+        assertThat(blocked.isAllowed()).isFalse();
+        assertThat(blocked.getLimit()).isEqualTo(5);
+        assertThat(blocked.getResetAtMillis()).isEqualTo(resetAtMillis);
+
+        Thread.sleep(resetAtMillis - System.currentTimeMillis() + 20);
+        assertThat(cache.getBlocked(user)).isNull();
+    }
+
+    @Test
+    void laterRejectionMovesTheResetTime() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        cache.markBlocked(user, now + 100);
+        cache.markBlocked(user, now + 400);
+
+        Thread.sleep(200);
+
+        assertThat(cache.getBlocked(user).getResetAtMillis()).isEqualTo(now + 400);
+    }
+
+    @Test
+    void resetTimesInThePastAreNotCached() {
+        cache.markBlocked(user, System.currentTimeMillis() - 1);
+
+        assertThat(cache.getBlocked(user)).isNull();
+    }
+
+    @Test
+    void invalidateForgetsTheRejection() {
+        cache.markBlocked(user, System.currentTimeMillis() + 60_000);
+
+        cache.invalidate(user.getKey());
+
+        assertThat(cache.getBlocked(user)).isNull();
+    }
+
+    @Test
+    void disabledCacheNeverRejects() {
+        BlockedKeyCache disabled = new BlockedKeyCache(false, 1000, new SimpleMeterRegistry());
+
+        disabled.markBlocked(user, System.currentTimeMillis() + 60_000);
+
+        assertThat(disabled.getBlocked(user)).isNull();
+    }
+}
@@ -0,0 +1,352 @@
+package com.ratelimiter.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ratelimiter.requestDto.ServiceConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResponseCacheTest {
+
+    private static final String PATH = "/products/1";
+
+    private final ResponseCache cache = new ResponseCache(true, 10_000, 5_000, 600, new SimpleMeterRegistry());
+    private final ServiceConfig service = ServiceConfig.builder()
+            .name("svc")
+            .responseCacheEnabled(true)
+            .build();
+
+    // Conditional headers of every call that reached the backend
+    private final List<HttpHeaders> backendCalls = new CopyOnWriteArrayList<>();
+
+    @Test
+    void freshResponseIsServedFromTheCache() {
+        Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend =
+                answering(200, "max-age=60", "product");
+
+        ResponseEntity<Flux<DataBuffer>> miss = get(backend);
+        ResponseEntity<Flux<DataBuffer>> hit = get(backend);
+
+        assertThat(backendCalls).hasSize(1);
+        assertThat(miss.getHeaders().getFirst("X-Cache")).isEqualTo("MISS");
+        assertThat(hit.getHeaders().getFirst("X-Cache")).isEqualTo("HIT");
+        assertThat(hit.getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+        assertThat(body(hit)).isEqualTo("product");
+    }
+
+    @Test
+    void responsesASharedCacheMustNotKeepAreNotStored() {
+        assertNotStored(withHeader(HttpHeaders.VARY, "Accept-Encoding"), new HttpHeaders());
+        assertNotStored(withHeader(HttpHeaders.SET_COOKIE, "session=1"), new HttpHeaders());
+        assertNotStored(withCacheControl("private, max-age=60"), new HttpHeaders());
+        assertNotStored(withCacheControl("no-store, max-age=60"), new HttpHeaders());
+        // No explicit lifetime, nothing is guessed
+        assertNotStored(new HttpHeaders(), new HttpHeaders());
+        assertNotStored(withCacheControl("max-age=60"), withHeader(HttpHeaders.AUTHORIZATION, "Bearer token"));
+    }
+
+    @Test
+    void authorizedRequestsAreStoredWhenTheResponseAllowsSharing() {
+        HttpHeaders authorized = withHeader(HttpHeaders.AUTHORIZATION, "Bearer token");
+
+        get("/public", authorized, answering(200, "public, max-age=60", "a"));
+        get("/public", authorized, answering(200, "public, max-age=60", "a"));
+        get("/shared", authorized, answering(200, "s-maxage=60", "b"));
+        get("/shared", authorized, answering(200, "s-maxage=60", "b"));
+
+        assertThat(backendCalls).hasSize(2);
+    }
+
+    @Test
+    void requestsThatAskForTheBackendBypassTheCache() {
+        Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend =
+                answering(200, "max-age=60", "product");
+        get(backend);
+
+        ResponseEntity<Flux<DataBuffer>> bypassed = get(PATH, withCacheControl("no-cache"), backend);
+        get(PATH, withHeader(HttpHeaders.RANGE, "bytes=0-3"), backend);
+
+        assertThat(backendCalls).hasSize(3);
+        assertThat(bypassed.getHeaders().containsKey("X-Cache")).isFalse();
+    }
+
+    @Test
+    void upstreamAgeCountsAgainstTheLifetime() {
+        HttpHeaders aged = withCacheControl("max-age=60");
+        aged.set(HttpHeaders.AGE, "45");
+        ResponseEntity<Flux<DataBuffer>> hit = getTwice(answering(200, aged, "product"));
+        assertThat(backendCalls).hasSize(1);
+        assertThat(Long.parseLong(hit.getHeaders().getFirst(HttpHeaders.AGE))).isBetween(45L, 46L);
+
+        backendCalls.clear();
+        HttpHeaders expired = withCacheControl("max-age=60");
+        expired.set(HttpHeaders.AGE, "60");
+        expired.setETag("\"v1\"");
+        getTwice("/expired", answering(200, expired, "product"));
+        // Already stale when it arrived, so the second request revalidates
+        assertThat(backendCalls).hasSize(2);
+        assertThat(backendCalls.get(1).getIfNoneMatch()).containsExactly("\"v1\"");
+    }
+
+    @Test
+    void notModifiedRefreshesTheEntryWithItsHeadersMergedIn() {
+        HttpHeaders original = withCacheControl("max-age=0");
+        original.setETag("\"v1\"");
+        original.set("X-Version", "1");
+        original.set(HttpHeaders.CONTENT_TYPE, "application/json");
+        get(answering(200, original, "product"));
+
+        HttpHeaders notModified = withCacheControl("max-age=60");
+        notModified.setETag("\"v1\"");
+        notModified.set("X-Version", "2");
+        ResponseEntity<Flux<DataBuffer>> revalidated = get(answering(304, notModified, ""));
+
+        assertThat(backendCalls.get(1).getIfNoneMatch()).containsExactly("\"v1\"");
+        assertThat(revalidated.getStatusCode().value()).isEqualTo(200);
+        assertThat(revalidated.getHeaders().getFirst("X-Cache")).isEqualTo("REVALIDATED");
+        assertThat(revalidated.getHeaders().getFirst("X-Version")).isEqualTo("2");
+        assertThat(revalidated.getHeaders().getCacheControl()).isEqualTo("max-age=60");
+        assertThat(revalidated.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE)).isEqualTo("application/json");
+        assertThat(revalidated.getHeaders().getContentLength()).isEqualTo("product".length());
+        assertThat(body(revalidated)).isEqualTo("product");
+
+        // Fresh again for the next 60 seconds
+        ResponseEntity<Flux<DataBuffer>> hit = get(answering(500, "no-store", ""));
+        assertThat(backendCalls).hasSize(2);
+        assertThat(hit.getHeaders().getFirst("X-Version")).isEqualTo("2");
+    }
+
+    @Test
+    void staleEntryWithoutAValidatorIsFetchedAgain() {
+        get(answering(200, "max-age=0", "v1"));
+
+        ResponseEntity<Flux<DataBuffer>> refetched = get(answering(200, "max-age=60", "v2"));
+
+        assertThat(backendCalls.get(1).isEmpty()).isTrue();
+        assertThat(refetched.getHeaders().getFirst("X-Cache")).isEqualTo("MISS");
+        assertThat(body(refetched)).isEqualTo("v2");
+    }
+
+    @Test
+    void evictsByBodyBytesNotByEntries() {
+        String large = "x".repeat(4000);
+        for (int i = 0; i < 3; i++) {
+            get("/large/" + i, new HttpHeaders(), answering(200, "max-age=60", large));
+        }
+        // Too big for the cache at all
+        get("/huge", new HttpHeaders(), answering(200, "max-age=60", "x".repeat(6000)));
+
+        Cache<?, ?> entries = entries();
+        entries.cleanUp();
+        // 10000 bytes hold two 4000 byte bodies, not three
+        assertThat(entries.estimatedSize()).isEqualTo(2);
+        assertThat(entries.policy().eviction().orElseThrow().weightedSize().getAsLong()).isLessThanOrEqualTo(10_000);
+        assertThat(entries.asMap().keySet()).noneMatch(key -> key.toString().endsWith("/huge"));
+    }
+
+    @Test
+    void concurrentMissesShareOneBackendFetch() throws Exception {
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> fetch = new CompletableFuture<>();
+        Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend = pending(fetch);
+
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> leader = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> follower = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> another = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        fetch.complete(response(200, withCacheControl("max-age=60"), "product"));
+
+        assertThat(leader.get(5, TimeUnit.SECONDS).getHeaders().getFirst("X-Cache")).isEqualTo("MISS");
+        for (CompletableFuture<ResponseEntity<Flux<DataBuffer>>> coalesced : List.of(follower, another)) {
+            ResponseEntity<Flux<DataBuffer>> response = coalesced.get(5, TimeUnit.SECONDS);
+            assertThat(response.getHeaders().getFirst("X-Cache")).isEqualTo("HIT");
+            assertThat(body(response)).isEqualTo("product");
+        }
+        assertThat(backendCalls).hasSize(1);
+    }
+
+    @Test
+    void followersFailWithTheLeadersError() {
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> fetch = new CompletableFuture<>();
+        Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend = pending(fetch);
+
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> leader = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> follower = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        fetch.completeExceptionally(new IllegalStateException("backend down"));
+
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("backend down");
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("backend down");
+        // The failing backend was asked once, not once per waiting request
+        assertThat(backendCalls).hasSize(1);
+    }
+
+    @Test
+    void followersFetchTheirOwnWhenTheSharedResponseCannotBeStored() throws Exception {
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> fetch = new CompletableFuture<>();
+        // The first call waits on fetch, later ones answer at once
+        Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend = conditional -> {
+            backendCalls.add(conditional);
+            return backendCalls.size() == 1
+                    ? Mono.fromFuture(fetch)
+                    : Mono.just(response(200, withCacheControl("no-store"), "own"));
+        };
+
+        cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> follower = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        fetch.complete(response(200, withCacheControl("no-store"), "shared"));
+
+        ResponseEntity<Flux<DataBuffer>> own = follower.get(5, TimeUnit.SECONDS);
+        assertThat(own.getHeaders().getFirst("X-Cache")).isEqualTo("MISS");
+        assertThat(body(own)).isEqualTo("own");
+        assertThat(backendCalls).hasSize(2);
+    }
+
+    @Test
+    void oneFollowerTakesOverWhenTheLeaderGoesAway() throws Exception {
+        List<CompletableFuture<ResponseEntity<Flux<DataBuffer>>>> fetches = new CopyOnWriteArrayList<>();
+        Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend = conditional -> {
+            backendCalls.add(conditional);
+            CompletableFuture<ResponseEntity<Flux<DataBuffer>>> fetch = new CompletableFuture<>();
+            fetches.add(fetch);
+            return Mono.fromFuture(fetch);
+        };
+
+        Disposable leader = cache.get(service, PATH, new HttpHeaders(), backend).subscribe();
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> follower = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> another = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        leader.dispose();
+
+        assertThat(fetches).hasSize(2);
+        fetches.get(1).complete(response(200, withCacheControl("max-age=60"), "product"));
+
+        assertThat(body(follower.get(5, TimeUnit.SECONDS))).isEqualTo("product");
+        assertThat(body(another.get(5, TimeUnit.SECONDS))).isEqualTo("product");
+        assertThat(backendCalls).hasSize(2);
+    }
+
+    @Test
+    void followerGoingAwayLeavesTheSharedFetchRunning() throws Exception {
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> fetch = new CompletableFuture<>();
+        Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend = pending(fetch);
+
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> leader = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        cache.get(service, PATH, new HttpHeaders(), backend).subscribe().dispose();
+        CompletableFuture<ResponseEntity<Flux<DataBuffer>>> follower = cache.get(service, PATH, new HttpHeaders(), backend).toFuture();
+        fetch.complete(response(200, withCacheControl("max-age=60"), "product"));
+
+        assertThat(body(leader.get(5, TimeUnit.SECONDS))).isEqualTo("product");
+        assertThat(body(follower.get(5, TimeUnit.SECONDS))).isEqualTo("product");
+        assertThat(backendCalls).hasSize(1);
+    }
+
+    private void assertNotStored(HttpHeaders responseHeaders, HttpHeaders requestHeaders) {
+        backendCalls.clear();
+        String path = "/not-stored/" + responseHeaders.hashCode() + "/" + requestHeaders.hashCode();
+
+        ResponseEntity<Flux<DataBuffer>> second = getTwice(path, requestHeaders, answering(200, responseHeaders, "body"));
+
+        assertThat(backendCalls).hasSize(2);
+        assertThat(second.getHeaders().getFirst("X-Cache")).isEqualTo("MISS");
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> get(Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend) {
+        return get(PATH, new HttpHeaders(), backend);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> get(String path, HttpHeaders requestHeaders,
+                                                 Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend) {
+        return cache.get(service, path, requestHeaders, backend).block(Duration.ofSeconds(5));
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> getTwice(Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend) {
+        return getTwice(PATH, backend);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> getTwice(String path,
+                                                      Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend) {
+        return getTwice(path, new HttpHeaders(), backend);
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> getTwice(String path, HttpHeaders requestHeaders,
+                                                      Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> backend) {
+        get(path, requestHeaders, backend);
+        return get(path, requestHeaders, backend);
+    }
+
+    /**
+     * A backend that answers every call with the same response
+     */
+    private Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> answering(int status, String cacheControl,
+                                                                                    String body) {
+        return answering(status, withCacheControl(cacheControl), body);
+    }
+
+    private Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> answering(int status, HttpHeaders headers,
+                                                                                    String body) {
+        return conditional -> {
+            backendCalls.add(conditional);
+            return Mono.just(response(status, headers, body));
+        };
+    }
+
+    /**
+     * A backend whose first call answers when fetch completes
+     */
+    private Function<HttpHeaders, Mono<ResponseEntity<Flux<DataBuffer>>>> pending(
+            CompletableFuture<ResponseEntity<Flux<DataBuffer>>> fetch) {
+        return conditional -> {
+            backendCalls.add(conditional);
+            return Mono.fromFuture(fetch);
+        };
+    }
+
+    private static ResponseEntity<Flux<DataBuffer>> response(int status, HttpHeaders headers, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        HttpHeaders responseHeaders = new HttpHeaders();
+        responseHeaders.putAll(headers);
+        if (status != 304) {
+            responseHeaders.setContentLength(bytes.length);
+        }
+        return ResponseEntity.status(status)
+                .headers(responseHeaders)
+                .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(bytes)));
+    }
+
+    private static String body(ResponseEntity<Flux<DataBuffer>> response) {
+        return DataBufferUtils.join(response.getBody())
+                .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+                .defaultIfEmpty("")
+                .block(Duration.ofSeconds(5));
+    }
+
+    private static HttpHeaders withCacheControl(String cacheControl) {
+        return withHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    }
+
+    private static HttpHeaders withHeader(String name, String value) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(name, value);
+        return headers;
+    }
+
+    private Cache<?, ?> entries() {
+        return (Cache<?, ?>) ReflectionTestUtils.getField(cache, "entries");
+    }
+}
@@ -0,0 +1,132 @@
+package com.ratelimiter.concurrency;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimitTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void clampsTheInitialLimit() {
+        assertThat(new GradientLimit("svc", 500, 5, 200).getLimit()).isEqualTo(200);
+        assertThat(new GradientLimit("svc", 1, 5, 200).getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void admitsUpToTheLimit() {
+        GradientLimit limit = new GradientLimit("svc", 3, 1, 10);
+
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+
+        limit.release();
+        assertThat(limit.getInFlight()).isEqualTo(2);
+        assertThat(limit.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void dropsCutTheLimitByATenthDownToTheMinimum() {
+        GradientLimit limit = new GradientLimit("svc", 100, 5, 200);
+
+        limit.tryAcquire();
+        limit.release(RTT, true);
+        assertThat(limit.getLimit()).isEqualTo(90);
+
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(RTT, true);
+        }
+        assertThat(limit.getLimit()).isEqualTo(5);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void dropsBackOffWhileALatencySampleIsBeingApplied() throws InterruptedException {
+        GradientLimit limit = new GradientLimit("svc", 100, 5, 200);
+        ReentrantLock lock = (ReentrantLock) ReflectionTestUtils.getField(limit, "lock");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            lock.lock();
+            try {
+                locked.countDown();
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        holder.start();
+        locked.await();
+        try {
+            limit.tryAcquire();
+            limit.release(RTT, true);
+            limit.tryAcquire();
+            limit.release(RTT, true);
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(81);
+    }
+
+    @Test
+    void growsWhileLatencyHoldsAndShrinksWhenItRises() {
+        GradientLimit limit = new GradientLimit("svc", 20, 5, 200);
+        for (int i = 0; i < 50; i++) {
+            sampleAtFullLoad(limit, RTT);
+        }
+        int grown = limit.getLimit();
+        assertThat(grown).isGreaterThan(20);
+
+        for (int i = 0; i < 30; i++) {
+            sampleAtFullLoad(limit, 4 * RTT);
+        }
+        assertThat(limit.getLimit()).isLessThan(grown);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        GradientLimit limit = new GradientLimit("svc", 20, 5, 200);
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire();
+            limit.release(RTT, false);
+        }
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void neverGrowsPastTheMaximum() {
+        GradientLimit limit = new GradientLimit("svc", 20, 5, 30);
+        for (int i = 0; i < 200; i++) {
+            sampleAtFullLoad(limit, RTT);
+        }
+        assertThat(limit.getLimit()).isEqualTo(30);
+    }
+
+    /**
+     * Fills every slot, then answers one request with a sample and cancels the rest
+     */
+    private static void sampleAtFullLoad(GradientLimit limit, long rttNanos) {
+        int acquired = 0;
+        while (limit.tryAcquire()) {
+            acquired++;
+        }
+        limit.release(rttNanos, false);
+        for (int i = 1; i < acquired; i++) {
+            limit.release();
+        }
+    }
+}
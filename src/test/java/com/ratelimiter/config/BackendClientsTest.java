@@ -0,0 +1,120 @@
+package com.ratelimiter.config;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BackendClientsTest {
+
+    private final BackendClients backendClients = new BackendClients();
+
+    private HttpServer server;
+    // Client port of every request the backend answered, one port per connection
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startBackend() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = "{}".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        backendClients.close();
+        server.stop(0);
+    }
+
+    @Test
+    void sameServiceGetsTheSameClient() {
+        ServiceConfig service = service(100, 1000);
+
+        assertThat(backendClients.forService(service)).isSameAs(backendClients.forService(service));
+    }
+
+    @Test
+    void updatedServiceWithTheSameSettingsKeepsItsPool() {
+        WebClient client = backendClients.forService(service(100, 1000));
+        ConnectionProvider pool = pool();
+
+        ServiceConfig updated = service(100, 1000);
+        updated.setTargetUrl("http://elsewhere");
+
+        assertThat(backendClients.forService(updated)).isSameAs(client);
+        assertThat(pool()).isSameAs(pool);
+        assertThat(pool.isDisposed()).isFalse();
+    }
+
+    @Test
+    void changedSettingsReplaceThePoolAndDisposeTheOldOne() {
+        WebClient client = backendClients.forService(service(100, 1000));
+        ConnectionProvider pool = pool();
+
+        WebClient replaced = backendClients.forService(service(50, 1000));
+
+        assertThat(replaced).isNotSameAs(client);
+        assertThat(pool()).isNotSameAs(pool);
+        // Disposal runs in the background, give it a moment
+        pool.disposeLater().block(Duration.ofSeconds(5));
+        assertThat(pool.isDisposed()).isTrue();
+        assertThat(backendClients.forService(service(50, 1000))).isSameAs(replaced);
+    }
+
+    @Test
+    void idlePooledConnectionOutlivesTheResponseTimeout() throws InterruptedException {
+        WebClient client = backendClients.forService(service(1, 100));
+
+        get(client);
+        // Idle for three response timeouts, no request in flight to time out
+        Thread.sleep(300);
+        get(client);
+
+        assertThat(clientPorts).hasSize(2);
+        assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+    }
+
+    private void get(WebClient client) {
+        String body = client.get()
+                .uri("http://localhost:" + server.getAddress().getPort() + "/")
+                .retrieve()
+                .bodyToMono(String.class)
+                .block(Duration.ofSeconds(5));
+        assertThat(body).isEqualTo("{}");
+    }
+
+    private ConnectionProvider pool() {
+        Map<?, ?> backends = (Map<?, ?>) ReflectionTestUtils.getField(backendClients, "backends");
+        return (ConnectionProvider) ReflectionTestUtils.getField(backends.get("svc"), "connectionProvider");
+    }
+
+    private static ServiceConfig service(int maxConnections, long responseTimeoutMillis) {
+        return ServiceConfig.builder()
+                .name("svc")
+                .targetUrl("http://localhost")
+                .maxConnections(maxConnections)
+                .responseTimeoutMillis(responseTimeoutMillis)
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.ratelimiter.config;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode.NodeFlag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisConfigTest {
+
+    @Test
+    void clusterNodeFilterKeepsTheOptionsBootBuilt() {
+        ClusterTopologyRefreshOptions refreshOptions = ClusterTopologyRefreshOptions.builder()
+                .enablePeriodicRefresh(Duration.ofSeconds(30))
+                .enableAllAdaptiveRefreshTriggers()
+                .build();
+        ClusterClientOptions.Builder builder = ClusterClientOptions.builder()
+                .maxRedirects(5)
+                .topologyRefreshOptions(refreshOptions);
+
+        new RedisConfig().clusterNodeFilter().customize(builder);
+
+        ClusterClientOptions options = builder.build();
+        assertThat(options.getMaxRedirects()).isEqualTo(5);
+        assertThat(options.getTopologyRefreshOptions()).isSameAs(refreshOptions);
+        assertThat(options.getNodeFilter().test(node(NodeFlag.UPSTREAM))).isTrue();
+        assertThat(options.getNodeFilter().test(node(NodeFlag.REPLICA))).isTrue();
+        assertThat(options.getNodeFilter().test(node(NodeFlag.FAIL))).isFalse();
+        assertThat(options.getNodeFilter().test(node(NodeFlag.EVENTUAL_FAIL))).isFalse();
+        assertThat(options.getNodeFilter().test(node(NodeFlag.NOADDR))).isFalse();
+    }
+
+    @Test
+    void standaloneOptionsAreLeftAsTheyAre() {
+        ClientOptions.Builder builder = ClientOptions.builder().autoReconnect(false);
+
+        new RedisConfig().clusterNodeFilter().customize(builder);
+
+        assertThat(builder.build().isAutoReconnect()).isFalse();
+    }
+
+    private static RedisClusterNode node(NodeFlag flag) {
+        RedisClusterNode node = new RedisClusterNode();
+        node.setFlags(EnumSet.of(flag));
+        return node;
+    }
+}
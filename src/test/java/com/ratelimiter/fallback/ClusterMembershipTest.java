@@ -0,0 +1,119 @@
+package com.ratelimiter.fallback;
+
+import com.ratelimiter.config.RedisConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static com.ratelimiter.constants.CommonConstants.NODES_REDIS_KEY;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ClusterMembershipTest {
+
+    @Container
+    static final GenericContainer<?> REDIS = new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+            .withExposedPorts(6379);
+
+    static LettuceConnectionFactory connectionFactory;
+    static RedisTemplate<String, String> redisTemplate;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void flushAll() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    @Test
+    void usesTheDefaultCountBeforeTheFirstHeartbeat() {
+        assertThat(member(3).getLiveNodeCount()).isEqualTo(3);
+        assertThat(member(0).getLiveNodeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void countsEveryNodeThatHeartbeats() {
+        ClusterMembership first = member(1);
+        ClusterMembership second = member(1);
+
+        first.heartbeat();
+        second.heartbeat();
+        first.heartbeat();
+
+        assertThat(first.getLiveNodeCount()).isEqualTo(2);
+        assertThat(second.getLiveNodeCount()).isEqualTo(2);
+    }
+
+    @Test
+    void nodesThatStopHeartbeatingDropOut() {
+        ClusterMembership node = member(1);
+        redisTemplate.opsForZSet().add(NODES_REDIS_KEY, "gone", System.currentTimeMillis() - 20_000);
+
+        node.heartbeat();
+
+        assertThat(node.getLiveNodeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void nodeThatLeavesIsNoLongerCounted() {
+        ClusterMembership first = member(1);
+        ClusterMembership second = member(1);
+        first.heartbeat();
+        second.heartbeat();
+
+        second.leave();
+        first.heartbeat();
+
+        assertThat(first.getLiveNodeCount()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsTheLastCountWhileRedisIsDown() {
+        ClusterMembership first = member(1);
+        member(1).heartbeat();
+        first.heartbeat();
+
+        LettuceConnectionFactory unreachable = new LettuceConnectionFactory("localhost", 1);
+        unreachable.afterPropertiesSet();
+        unreachable.start();
+        try {
+            ReflectionTestUtils.setField(first, "redisTemplate", new RedisConfig().redisTemplate(unreachable));
+            first.heartbeat();
+
+            assertThat(first.getLiveNodeCount()).isEqualTo(2);
+        } finally {
+            unreachable.destroy();
+        }
+    }
+
+    private static ClusterMembership member(int defaultNodeCount) {
+        ClusterMembership membership = new ClusterMembership();
+        ReflectionTestUtils.setField(membership, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(membership, "nodeTtlMillis", 15_000L);
+        ReflectionTestUtils.setField(membership, "defaultNodeCount", defaultNodeCount);
+        return membership;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ratelimiter.fallback;
+
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FallbackRateLimiterTest {
+
+    private final BucketSpec global = new BucketSpec("rate_limit:global:svc", 10, 60);
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 4, 60);
+
+    @Test
+    void allowPolicyLetsEveryRequestThrough() {
+        FallbackRateLimiter fallback = fallback(FallbackPolicy.ALLOW, 1);
+
+        for (int i = 0; i < 100; i++) {
+            List<RateLimiterResponse> responses = fallback.isAllowed(List.of(global, user));
+            assertThat(responses).allMatch(RateLimiterResponse::isAllowed);
+            assertThat(responses.get(1).getRemaining()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void denyPolicyRejectsEveryRequestWithAShortRetry() {
+        FallbackRateLimiter fallback = fallback(FallbackPolicy.DENY, 1);
+        long before = System.currentTimeMillis();
+
+        List<RateLimiterResponse> responses = fallback.isAllowed(List.of(global, user));
+
+        assertThat(responses).noneMatch(RateLimiterResponse::isAllowed);
+        assertThat(responses.get(1).getResetAtMillis()).isBetween(before, System.currentTimeMillis() + 1000);
+    }
+
+    @Test
+    void localPolicyEnforcesThisNodesShare() {
+        FallbackRateLimiter fallback = fallback(FallbackPolicy.LOCAL, 2);
+
+        int admitted = 0;
+        while (fallback.isAllowed(List.of(user)).get(0).isAllowed()) {
+            admitted++;
+        }
+        assertThat(admitted).isEqualTo(2);
+    }
+
+    @Test
+    void localPolicyWithoutAKnownNodeCountEnforcesTheWholeLimit() {
+        FallbackRateLimiter fallback = fallback(FallbackPolicy.LOCAL, 0);
+
+        int admitted = 0;
+        while (fallback.isAllowed(List.of(user)).get(0).isAllowed()) {
+            admitted++;
+        }
+        assertThat(admitted).isEqualTo(4);
+    }
+
+    /**
+     * A fallback limiter whose membership has not heartbeat yet, so it reports defaultNodeCount
+     */
+    private static FallbackRateLimiter fallback(FallbackPolicy policy, int defaultNodeCount) {
+        ClusterMembership membership = new ClusterMembership();
+        ReflectionTestUtils.setField(membership, "defaultNodeCount", defaultNodeCount);
+
+        FallbackRateLimiter fallback = new FallbackRateLimiter();
+        ReflectionTestUtils.setField(fallback, "localRateLimiter", new LocalRateLimiter(1000, 600));
+        ReflectionTestUtils.setField(fallback, "clusterMembership", membership);
+        ReflectionTestUtils.setField(fallback, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fallback, "policy", policy);
+        fallback.registerMetrics();
+        return fallback;
+    }
+}
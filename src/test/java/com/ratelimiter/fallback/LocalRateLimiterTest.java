@@ -0,0 +1,105 @@
+package com.ratelimiter.fallback;
+
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalRateLimiterTest {
+
+    // Some fixed instant, the cells run on nanos and report resets in wall time
+    private static final long NOW = 1_000_000_000_000L;
+    private static final long EPOCH_MILLIS = 1_700_000_000_000L;
+    private static final long SECOND = 1_000_000_000L;
+
+    private final LocalRateLimiter limiter = new LocalRateLimiter(1000, 600);
+
+    private final BucketSpec global = new BucketSpec("rate_limit:global:svc", 10, 60);
+    private final BucketSpec user = new BucketSpec("rate_limit:user:svc:alice", 4, 60);
+
+    @Test
+    void eachNodeEnforcesItsShareOfTheLimit() {
+        assertThat(admitted(global, 2, NOW)).isEqualTo(5);
+        assertThat(check(global, 2, NOW).getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void noOrOneLiveNodeEnforcesTheWholeLimit() {
+        assertThat(admitted(global, 0, NOW)).isEqualTo(10);
+        assertThat(admitted(user, 1, NOW)).isEqualTo(4);
+    }
+
+    @Test
+    void shareIsNeverLessThanOneRequest() {
+        assertThat(admitted(user, 10, NOW)).isEqualTo(1);
+    }
+
+    @Test
+    void rejectedBucketResetsWhenItsNextRequestIsDue() {
+        admitted(user, 1, NOW);
+
+        RateLimiterResponse rejected = check(user, 1, NOW);
+        assertThat(rejected.isAllowed()).isFalse();
+        // 4 per 60s admits one every 15s
+        assertThat(rejected.getResetAtMillis()).isEqualTo(EPOCH_MILLIS + 15_000);
+
+        assertThat(check(user, 1, NOW + 15 * SECOND - 1).isAllowed()).isFalse();
+        assertThat(check(user, 1, NOW + 15 * SECOND).isAllowed()).isTrue();
+        assertThat(check(user, 1, NOW + 15 * SECOND).isAllowed()).isFalse();
+    }
+
+    @Test
+    void rejectionByOneBucketTakesNothingFromTheOthers() {
+        BucketSpec single = new BucketSpec("rate_limit:user:svc:bob", 1, 60);
+        assertThat(limiter.isAllowed(List.of(global, single), 1, NOW, EPOCH_MILLIS).get(0).getRemaining()).isEqualTo(9);
+
+        List<RateLimiterResponse> rejected = limiter.isAllowed(List.of(global, single), 1, NOW, EPOCH_MILLIS);
+        assertThat(rejected.get(1).isAllowed()).isFalse();
+        // The global bucket had room and reports it, but gave its request back
+        assertThat(rejected.get(0).isAllowed()).isTrue();
+
+        assertThat(limiter.isAllowed(List.of(global, user), 1, NOW, EPOCH_MILLIS).get(0).getRemaining()).isEqualTo(8);
+    }
+
+    @Test
+    void keepsAtMostMaxKeysBuckets() throws InterruptedException {
+        LocalRateLimiter bounded = new LocalRateLimiter(100, 600);
+        for (int i = 0; i < 10_000; i++) {
+            bounded.isAllowed(List.of(new BucketSpec("rate_limit:user:svc:" + i, 10, 60)), 1, NOW, EPOCH_MILLIS);
+        }
+
+        // Eviction runs in the background, give it a moment
+        long deadline = System.currentTimeMillis() + 5000;
+        while (bounded.size() > 100 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(bounded.size()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void resetStartsTheBucketOver() {
+        admitted(user, 1, NOW);
+
+        limiter.reset(user.getKey());
+
+        assertThat(check(user, 1, NOW).isAllowed()).isTrue();
+    }
+
+    private RateLimiterResponse check(BucketSpec bucket, int nodeCount, long now) {
+        return limiter.isAllowed(List.of(bucket), nodeCount, now, EPOCH_MILLIS).get(0);
+    }
+
+    /**
+     * Requests admitted in a burst at the given time
+     */
+    private int admitted(BucketSpec bucket, int nodeCount, long now) {
+        int admitted = 0;
+        while (check(bucket, nodeCount, now).isAllowed()) {
+            admitted++;
+        }
+        return admitted;
+    }
+}
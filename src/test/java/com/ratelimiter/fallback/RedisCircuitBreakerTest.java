@@ -0,0 +1,214 @@
+package com.ratelimiter.fallback;
+
+import com.ratelimiter.algorithm.RedisScriptExecutor;
+import com.ratelimiter.exception.RedisUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisCircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(30);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // What the probe's PING runs into
+    private volatile boolean redisDown;
+    private volatile long pingMillis;
+
+    private final RedisTemplate<String, String> redisTemplate = new RedisTemplate<>() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisCallback<T> action) {
+            if (redisDown) {
+                throw new RedisConnectionFailureException("Connection refused");
+            }
+            sleep(pingMillis);
+            return (T) "PONG";
+        }
+    };
+
+    private final RedisCircuitBreaker breaker = breaker();
+
+    @Test
+    void opensOnTheFailureRateOnceEnoughCallsAreIn() {
+        for (int i = 0; i < 9; i++) {
+            breaker.recordFailure(FAST);
+        }
+        // Below minimum-calls, however bad
+        assertThat(breaker.isOpen()).isFalse();
+
+        breaker.recordFailure(FAST);
+
+        assertThat(breaker.isOpen()).isTrue();
+        assertThat(meterRegistry.get("ratelimiter.redis.circuit.trips").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("ratelimiter.redis.circuit.open").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void onlyTheLastWindowSizeCallsCount() {
+        record(4, false, FAST);
+        record(20, true, FAST);
+        // The four failures have rolled out of the 20 call window
+        record(9, false, FAST);
+        assertThat(breaker.isOpen()).isFalse();
+
+        // 10 of the last 20, counting the early failures too it would be 14 of 34
+        breaker.recordFailure(FAST);
+        assertThat(breaker.isOpen()).isTrue();
+    }
+
+    @Test
+    void opensWhenTheLatencyPercentileGoesOverTheThreshold() {
+        record(20, true, FAST);
+        record(2, true, SLOW);
+        // Fewer than minimum-slow-calls
+        assertThat(breaker.isOpen()).isFalse();
+
+        record(1, true, SLOW);
+
+        assertThat(breaker.isOpen()).isTrue();
+    }
+
+    @Test
+    void slowCallsWithinThePercentileKeepItClosed() {
+        for (int i = 0; i < 10; i++) {
+            record(9, true, FAST);
+            record(1, true, SLOW);
+        }
+
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    void probeClosesAfterEnoughQuickPingsInARow() {
+        record(10, false, FAST);
+        assertThat(breaker.isOpen()).isTrue();
+
+        redisDown = true;
+        probe(5);
+        assertThat(breaker.isOpen()).isTrue();
+
+        redisDown = false;
+        probe(2);
+        pingMillis = 30;
+        // A slow answer starts the count over
+        probe(1);
+        pingMillis = 0;
+        probe(2);
+        assertThat(breaker.isOpen()).isTrue();
+
+        probe(1);
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    void closedBreakerStartsOverWithAnEmptyWindow() {
+        record(10, false, FAST);
+        probe(3);
+        assertThat(breaker.isOpen()).isFalse();
+
+        record(9, false, FAST);
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(meterRegistry.get("ratelimiter.redis.circuit.trips").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void probeDoesNothingWhileClosed() {
+        redisDown = true;
+
+        breaker.probe();
+
+        assertThat(breaker.isOpen()).isFalse();
+    }
+
+    @Test
+    void callsOverTheBudgetFailAtTheBudgetAndCountAsFailures() {
+        RedisScriptExecutor executor = new RedisScriptExecutor();
+        ReflectionTestUtils.setField(executor, "circuitBreaker", breaker);
+        // Redis never answers
+        ReflectionTestUtils.setField(executor, "reactiveRedisTemplate",
+                new ReactiveStringRedisTemplate(new LettuceConnectionFactory()) {
+                    @Override
+                    public <T> Flux<T> execute(RedisScript<T> script, List<String> keys, List<?> args) {
+                        return Flux.never();
+                    }
+                });
+        RedisScript<List> script = new DefaultRedisScript<>("return {1}", List.class);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> executor.execute(script, List.of("key"), List.of()))
+                .isInstanceOf(RedisUnavailableException.class)
+                .hasMessageContaining("50ms budget");
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isBetween(50L, 1000L);
+
+        for (int i = 0; i < 9; i++) {
+            assertThatThrownBy(() -> executor.execute(script, List.of("key"), List.of()))
+                    .isInstanceOf(RedisUnavailableException.class);
+        }
+        assertThat(breaker.isOpen()).isTrue();
+        // Once open, calls fail without waiting on Redis
+        assertThatThrownBy(() -> executor.execute(script, List.of("key"), List.of()))
+                .hasMessageContaining("circuit breaker is open");
+        assertThat(meterRegistry.get("ratelimiter.redis.call").timer().count()).isEqualTo(10);
+    }
+
+    private void record(int calls, boolean success, long elapsedNanos) {
+        for (int i = 0; i < calls; i++) {
+            if (success) {
+                breaker.recordSuccess(elapsedNanos);
+            } else {
+                breaker.recordFailure(elapsedNanos);
+            }
+        }
+    }
+
+    private void probe(int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.probe();
+        }
+    }
+
+    /**
+     * A breaker over a 20 call window: opens at 50% failures of at least 10 calls, or at
+     * a p90 above 25ms with at least 3 slow calls, and closes after 3 quick probes
+     */
+    private RedisCircuitBreaker breaker() {
+        RedisCircuitBreaker circuitBreaker = new RedisCircuitBreaker();
+        ReflectionTestUtils.setField(circuitBreaker, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(circuitBreaker, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(circuitBreaker, "callBudgetMillis", 50L);
+        ReflectionTestUtils.setField(circuitBreaker, "windowSize", 20);
+        ReflectionTestUtils.setField(circuitBreaker, "minimumCalls", 10);
+        ReflectionTestUtils.setField(circuitBreaker, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(circuitBreaker, "latencyPercentile", 0.9);
+        ReflectionTestUtils.setField(circuitBreaker, "latencyThresholdMillis", 25L);
+        ReflectionTestUtils.setField(circuitBreaker, "minimumSlowCalls", 3);
+        ReflectionTestUtils.setField(circuitBreaker, "probeSuccessesToClose", 3);
+        circuitBreaker.init();
+        return circuitBreaker;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.ratelimiter.identity;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JwtIdentityResolverTest {
+
+    private static final String SECRET = "test-jwt-secret-0123456789abcdef";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtIdentityResolver resolver = new JwtIdentityResolver(SECRET, "sub", 1000, 300, meterRegistry);
+
+    @Test
+    void resolvesTheSubjectOfAValidToken() {
+        String token = sign(header("HS256"), "{\"sub\":\"alice\",\"exp\":" + (nowSeconds() + 60) + "}", SECRET);
+
+        assertThat(resolver.resolve(bearer(token))).isEqualTo("alice");
+    }
+
+    @Test
+    void rejectsATamperedPayload() {
+        String token = sign(header("HS256"), "{\"sub\":\"alice\"}", SECRET);
+        String[] parts = token.split("\\.");
+        String forged = parts[0] + "." + encode("{\"sub\":\"admin\"}") + "." + parts[2];
+
+        assertThat(resolver.resolve(bearer(forged))).isNull();
+    }
+
+    @Test
+    void rejectsATamperedSignature() {
+        String token = sign(header("HS256"), "{\"sub\":\"alice\"}", SECRET);
+        int signatureStart = token.lastIndexOf('.') + 1;
+        // The first character is all signature bits, unlike the last one which carries padding
+        char first = token.charAt(signatureStart);
+        String forged = token.substring(0, signatureStart) + (first == 'A' ? 'B' : 'A')
+                + token.substring(signatureStart + 1);
+
+        assertThat(resolver.resolve(bearer(forged))).isNull();
+    }
+
+    @Test
+    void rejectsATokenSignedWithAnotherSecret() {
+        String token = sign(header("HS256"), "{\"sub\":\"alice\"}", "some-other-secret-0123456789abcdef");
+
+        assertThat(resolver.resolve(bearer(token))).isNull();
+    }
+
+    @Test
+    void rejectsAlgNone() {
+        String token = encode(header("none")) + "." + encode("{\"sub\":\"alice\"}") + ".";
+
+        assertThat(resolver.resolve(bearer(token))).isNull();
+    }
+
+    @Test
+    void rejectsOtherAlgorithmsEvenWithTheRightKey() {
+        String token = sign(header("HS512"), "{\"sub\":\"alice\"}", SECRET, "HmacSHA512");
+
+        assertThat(resolver.resolve(bearer(token))).isNull();
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        String token = sign(header("HS256"), "{\"sub\":\"alice\",\"exp\":" + (nowSeconds() - 1) + "}", SECRET);
+
+        assertThat(resolver.resolve(bearer(token))).isNull();
+    }
+
+    @Test
+    void rejectsTokensNotValidYet() {
+        String token = sign(header("HS256"), "{\"sub\":\"alice\",\"nbf\":" + (nowSeconds() + 60) + "}", SECRET);
+
+        assertThat(resolver.resolve(bearer(token))).isNull();
+    }
+
+    @Test
+    void cachedTokenStopsResolvingOnceItExpires() throws InterruptedException {
+        long expiresAt = nowSeconds() + 1;
+        String token = sign(header("HS256"), "{\"sub\":\"alice\",\"exp\":" + expiresAt + "}", SECRET);
+        assertThat(resolver.resolve(bearer(token))).isEqualTo("alice");
+
+        while (System.currentTimeMillis() < expiresAt * 1000) {
+            Thread.sleep(50);
+        }
+        assertThat(resolver.resolve(bearer(token))).isNull();
+        assertThat(cacheHits()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidTokensAreCachedAsInvalid() {
+        String forged = sign(header("HS256"), "{\"sub\":\"alice\"}", "some-other-secret-0123456789abcdef");
+
+        assertThat(resolver.resolve(bearer(forged))).isNull();
+        assertThat(resolver.resolve(bearer(forged))).isNull();
+        assertThat(cacheHits()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresMissingOrMalformedTokens() {
+        assertThat(resolver.resolve(headers(Map.of()))).isNull();
+        assertThat(resolver.resolve(headers(Map.of("Authorization", "Basic YWxpY2U6c2VjcmV0")))).isNull();
+        assertThat(resolver.resolve(bearer("not-a-jwt"))).isNull();
+        assertThat(resolver.resolve(bearer("a.b.c.d"))).isNull();
+        assertThat(resolver.resolve(bearer("%%%.%%%.%%%"))).isNull();
+    }
+
+    @Test
+    void tokensWithoutTheUserClaimAreRejected() {
+        String token = sign(header("HS256"), "{\"name\":\"alice\"}", SECRET);
+
+        assertThat(resolver.resolve(bearer(token))).isNull();
+    }
+
+    @Test
+    void readsTheConfiguredUserClaim() {
+        JwtIdentityResolver customClaim = new JwtIdentityResolver(SECRET, "uid", 1000, 300, new SimpleMeterRegistry());
+        String token = sign(header("HS256"), "{\"sub\":\"alice\",\"uid\":\"42\"}", SECRET);
+
+        assertThat(customClaim.resolve(bearer(token))).isEqualTo("42");
+    }
+
+    @Test
+    void disabledWithoutASecret() {
+        JwtIdentityResolver disabled = new JwtIdentityResolver("", "sub", 1000, 300, new SimpleMeterRegistry());
+        String token = sign(header("HS256"), "{\"sub\":\"alice\"}", SECRET);
+
+        assertThat(disabled.resolve(bearer(token))).isNull();
+    }
+
+    private double cacheHits() {
+        return meterRegistry.get("cache.gets").tag("cache", "jwt-claims").tag("result", "hit")
+                .functionCounter().count();
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String header(String alg) {
+        return "{\"alg\":\"" + alg + "\",\"typ\":\"JWT\"}";
+    }
+
+    private static String sign(String header, String claims, String secret) {
+        return sign(header, claims, secret, "HmacSHA256");
+    }
+
+    private static String sign(String header, String claims, String secret, String algorithm) {
+        String signingInput = encode(header) + "." + encode(claims);
+        try {
+            Mac mac = Mac.getInstance(algorithm);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm));
+            byte[] signature = mac.doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+            return signingInput + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static RequestView bearer(String token) {
+        return headers(Map.of("Authorization", "Bearer " + token));
+    }
+
+    private static RequestView headers(Map<String, String> headers) {
+        return new RequestView() {
+            @Override
+            public String getHeader(String name) {
+                return headers.get(name);
+            }
+
+            @Override
+            public String getQueryParam(String name) {
+                return null;
+            }
+
+            @Override
+            public String getRemoteAddress() {
+                return "10.0.0.1";
+            }
+
+            @Override
+            public Object getSessionAttribute(String name) {
+                return null;
+            }
+
+            @Override
+            public String getSessionId() {
+                return null;
+            }
+
+            @Override
+            public String getPath() {
+                return "/user-service/users";
+            }
+        };
+    }
+}
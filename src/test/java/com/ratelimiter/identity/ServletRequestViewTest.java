@@ -0,0 +1,40 @@
+package com.ratelimiter.identity;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ServletRequestViewTest {
+
+    @Test
+    void readsDecodedParametersFromTheQueryString() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+        request.setQueryString("page=2&api_key=k%2B1%3D&user+id=a+b&flag");
+        ServletRequestView view = new ServletRequestView(request);
+
+        assertThat(view.getQueryParam("page")).isEqualTo("2");
+        assertThat(view.getQueryParam("api_key")).isEqualTo("k+1=");
+        assertThat(view.getQueryParam("user id")).isEqualTo("a b");
+        assertThat(view.getQueryParam("flag")).isEmpty();
+        assertThat(view.getQueryParam("missing")).isNull();
+    }
+
+    @Test
+    void returnsTheFirstValueOfARepeatedParameter() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/products");
+        request.setQueryString("api_key=first&api_key=second");
+
+        assertThat(new ServletRequestView(request).getQueryParam("api_key")).isEqualTo("first");
+    }
+
+    @Test
+    void ignoresFormBodyParameters() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/orders");
+        request.setContentType("application/x-www-form-urlencoded");
+        request.setContent("api_key=from-body".getBytes());
+        request.addParameter("api_key", "from-body");
+
+        assertThat(new ServletRequestView(request).getQueryParam("api_key")).isNull();
+    }
+}
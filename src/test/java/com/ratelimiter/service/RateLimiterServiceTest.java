@@ -0,0 +1,75 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.algorithm.BucketSpec;
+import com.ratelimiter.cache.BlockedKeyCache;
+import com.ratelimiter.exception.RateLimitExceededException;
+import com.ratelimiter.metrics.DecisionSource;
+import com.ratelimiter.metrics.RateLimiterMetrics;
+import com.ratelimiter.requestDto.RateLimiterRequest;
+import com.ratelimiter.requestDto.ServiceConfig;
+import com.ratelimiter.responseDto.RateLimiterResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RateLimiterServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockedKeyCache blockedKeyCache = new BlockedKeyCache(true, 1000, meterRegistry);
+    private final RateLimiterService rateLimiterService = new RateLimiterService();
+
+    private final ServiceConfig service = ServiceConfig.builder().name("user-service").globalLimit(100).build();
+    private final BucketSpec global = new BucketSpec("rate_limit:global:user-service", 100, 60);
+    private final BucketSpec user = new BucketSpec("rate_limit:user:user-service:alice", 5, 60);
+    private final RateLimitPlan plan = RateLimitPlan.of(service, null, user, global);
+    private final RateLimiterRequest request = RateLimiterRequest.builder().identifier("alice").build();
+
+    @BeforeEach
+    void wire() {
+        RateLimiterMetrics rateLimiterMetrics = new RateLimiterMetrics();
+        ReflectionTestUtils.setField(rateLimiterMetrics, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(rateLimiterService, "blockedKeyCache", blockedKeyCache);
+        ReflectionTestUtils.setField(rateLimiterService, "rateLimiterMetrics", rateLimiterMetrics);
+    }
+
+    @Test
+    void redisRejectionsAreCachedUntilTheirReset() {
+        long resetAtMillis = System.currentTimeMillis() + 60_000;
+
+        assertThatThrownBy(() -> rateLimiterService.decide(plan, List.of(allowed(), blocked(resetAtMillis)),
+                request, DecisionSource.REDIS)).isInstanceOf(RateLimitExceededException.class);
+        assertThatThrownBy(() -> rateLimiterService.decide(plan, List.of(blocked(resetAtMillis), allowed()),
+                request, DecisionSource.REDIS)).isInstanceOf(RateLimitExceededException.class);
+
+        assertThat(blockedKeyCache.getBlocked(user).getResetAtMillis()).isEqualTo(resetAtMillis);
+        assertThat(blockedKeyCache.getBlocked(global).getResetAtMillis()).isEqualTo(resetAtMillis);
+        assertThatThrownBy(() -> rateLimiterService.rejectIfBlocked(plan)).isInstanceOf(RateLimitExceededException.class);
+    }
+
+    @Test
+    void fallbackRejectionsAreNotCached() {
+        long resetAtMillis = System.currentTimeMillis() + 1000;
+
+        assertThatThrownBy(() -> rateLimiterService.decide(plan, List.of(blocked(resetAtMillis), blocked(resetAtMillis)),
+                request, DecisionSource.FALLBACK)).isInstanceOf(RateLimitExceededException.class);
+
+        assertThat(blockedKeyCache.getBlocked(user)).isNull();
+        assertThat(blockedKeyCache.getBlocked(global)).isNull();
+        assertThatCode(() -> rateLimiterService.rejectIfBlocked(plan)).doesNotThrowAnyException();
+    }
+
+    private static RateLimiterResponse allowed() {
+        return RateLimiterResponse.allowedUntil(100, 50, System.currentTimeMillis() + 60_000);
+    }
+
+    private static RateLimiterResponse blocked(long resetAtMillis) {
+        return RateLimiterResponse.blockedUntil(5, resetAtMillis, "Rate limit exceeded");
+    }
+}
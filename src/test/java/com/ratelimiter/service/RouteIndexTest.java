@@ -0,0 +1,65 @@
+package com.ratelimiter.service;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteIndexTest {
+
+    private final ServiceConfig users = service("user-service", "/user-service");
+    private final ServiceConfig usersV2 = service("user-service-v2", "/user-service-v2");
+    private final ServiceConfig admin = service("user-admin", "/user-service/admin");
+
+    private final RouteIndex index = RouteIndex.build(List.of(users, usersV2, admin));
+
+    @Test
+    void matchesWholeSegmentsOnly() {
+        assertThat(index.find("/user-service")).isSameAs(users);
+        assertThat(index.find("/user-service/users/1")).isSameAs(users);
+        assertThat(index.find("/user-service-v2/users/1")).isSameAs(usersV2);
+        assertThat(index.find("/user-serv")).isNull();
+        assertThat(index.find("/user-services/users")).isNull();
+    }
+
+    @Test
+    void longestPrefixWins() {
+        assertThat(index.find("/user-service/admin/settings")).isSameAs(admin);
+        assertThat(index.find("/user-service/administrators")).isSameAs(users);
+    }
+
+    @Test
+    void ignoresEmptySegments() {
+        assertThat(index.find("//user-service//admin/")).isSameAs(admin);
+        assertThat(index.find("user-service/users")).isSameAs(users);
+    }
+
+    @Test
+    void unknownAndMissingPathsMatchNothing() {
+        assertThat(index.find("/order-service/orders")).isNull();
+        assertThat(index.find("/")).isNull();
+        assertThat(index.find(null)).isNull();
+        assertThat(RouteIndex.empty().find("/user-service")).isNull();
+    }
+
+    @Test
+    void duplicatePrefixAlwaysResolvesToTheSameService() {
+        ServiceConfig other = service("another-user-service", "/user-service");
+
+        assertThat(RouteIndex.build(List.of(users, other)).find("/user-service/users")).isSameAs(other);
+        assertThat(RouteIndex.build(List.of(other, users)).find("/user-service/users")).isSameAs(other);
+    }
+
+    @Test
+    void servicesWithoutPrefixAreSkipped() {
+        RouteIndex withoutPrefix = RouteIndex.build(List.of(service("no-prefix", null), users));
+
+        assertThat(withoutPrefix.find("/user-service")).isSameAs(users);
+    }
+
+    private static ServiceConfig service(String name, String pathPrefix) {
+        return ServiceConfig.builder().name(name).pathPrefix(pathPrefix).build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.ratelimiter.shaping;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestShaperTest {
+
+    private static final long TICK_MILLIS = 10;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestShaper shaper = new RequestShaper(TICK_MILLIS, 512, meterRegistry);
+    private final ServiceConfig service = ServiceConfig.builder()
+            .name("svc")
+            .maxDelayMillis(1000)
+            .maxDelayedRequests(3)
+            .build();
+
+    @AfterEach
+    void close() {
+        shaper.close();
+    }
+
+    @Test
+    void releasesOnceTheDelayHasPassed() {
+        long start = System.nanoTime();
+
+        shaper.delay(service, 200).block(Duration.ofSeconds(5));
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // Rounded up to the tick, never released early
+        assertThat(elapsedMillis).isBetween(200L, 200L + 20 * TICK_MILLIS);
+        assertThat(meterRegistry.get("ratelimiter.shaping.delayed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void releasesInDelayOrder() throws Exception {
+        List<Long> released = new ArrayList<>();
+        CompletableFuture<Void> late = shaper.delay(service, 150)
+                .doOnTerminate(() -> add(released, 150L))
+                .toFuture();
+        CompletableFuture<Void> early = shaper.delay(service, 50)
+                .doOnTerminate(() -> add(released, 50L))
+                .toFuture();
+
+        CompletableFuture.allOf(late, early).get(5, TimeUnit.SECONDS);
+
+        assertThat(released).containsExactly(50L, 150L);
+    }
+
+    @Test
+    void holdsUpToMaxDelayedRequests() {
+        List<Disposable> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            assertThat(shaper.hasCapacity(service)).isTrue();
+            held.add(shaper.delay(service, 60_000).subscribe());
+        }
+
+        assertThat(shaper.hasCapacity(service)).isFalse();
+        assertThat(held()).isEqualTo(3);
+
+        // Each service has its own queue
+        ServiceConfig other = ServiceConfig.builder().name("other").maxDelayedRequests(3).build();
+        assertThat(shaper.hasCapacity(other)).isTrue();
+
+        held.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void releasedRequestFreesItsSlot() throws InterruptedException {
+        Disposable first = shaper.delay(service, 60_000).subscribe();
+        Disposable second = shaper.delay(service, 60_000).subscribe();
+        shaper.delay(service, 50).block(Duration.ofSeconds(5));
+
+        awaitHeld(2);
+        assertThat(shaper.hasCapacity(service)).isTrue();
+
+        first.dispose();
+        second.dispose();
+    }
+
+    @Test
+    void cancelledRequestFreesItsSlotAtOnce() {
+        List<Disposable> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            held.add(shaper.delay(service, 60_000).subscribe());
+        }
+
+        // As when the client goes away
+        held.get(0).dispose();
+
+        assertThat(shaper.hasCapacity(service)).isTrue();
+        assertThat(held()).isEqualTo(2);
+        held.forEach(Disposable::dispose);
+        assertThat(held()).isZero();
+    }
+
+    @Test
+    void holdsThousandsOnTheWheelWithoutAThreadEach() throws InterruptedException {
+        int threadsBefore = Thread.activeCount();
+        List<CompletableFuture<Void>> released = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            released.add(shaper.delay(service, 300).toFuture());
+        }
+
+        assertThat(held()).isEqualTo(5000);
+        assertThat(Thread.activeCount() - threadsBefore).isLessThan(100);
+
+        CompletableFuture.allOf(released.toArray(CompletableFuture[]::new)).join();
+        awaitHeld(0);
+    }
+
+    @Test
+    void continuesOffTheWheelThread() {
+        String thread = shaper.delay(service, 20)
+                .then(Mono.fromCallable(() -> Thread.currentThread().getName()))
+                .block(Duration.ofSeconds(5));
+
+        assertThat(thread).doesNotStartWith("request-shaper");
+    }
+
+    /**
+     * Wait for the held count, a slot is freed on the wheel thread just after the release
+     */
+    private void awaitHeld(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (held() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(held()).isEqualTo(expected);
+    }
+
+    private double held() {
+        return meterRegistry.get("ratelimiter.shaping.held").gauge().value();
+    }
+
+    private static synchronized void add(List<Long> released, long delayMillis) {
+        released.add(delayMillis);
+    }
+}
@@ -0,0 +1,110 @@
+package com.ratelimiter.utils;
+
+import com.ratelimiter.requestDto.ServiceConfig;
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitKeyBuilderTest {
+
+    private final ServiceConfig service = ServiceConfig.builder()
+            .name("user-service")
+            .globalLimit(100)
+            .build();
+
+    @Test
+    void sanitizeReplacesCharactersOutsideTheKeyAlphabet() {
+        assertThat(RateLimitKeyBuilder.sanitize("user:alice-1.2_x")).isEqualTo("user:alice-1.2_x");
+        assertThat(RateLimitKeyBuilder.sanitize("ip:10.0.0.1 {evil}*")).isEqualTo("ip:10.0.0.1__evil__");
+        assertThat(RateLimitKeyBuilder.sanitize(null)).isEqualTo("unknown");
+    }
+
+    @Test
+    void sanitizeReturnsCleanInputItself() {
+        String clean = "user:alice";
+        assertThat(RateLimitKeyBuilder.sanitize(clean)).isSameAs(clean);
+    }
+
+    @Test
+    void userKeysShareTheGlobalKeysTagWhenTheGlobalLimitIsOn() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, true);
+
+        assertThat(keys.globalKey(service)).isEqualTo("rate_limit:global:{user-service}");
+        assertThat(keys.userKey(service, "user:alice")).isEqualTo("rate_limit:user:{user-service}:user:alice");
+        assertThat(keys.userKey(service, null)).isEqualTo("rate_limit:user:{user-service}:unknown");
+    }
+
+    @Test
+    void userKeysAreTaggedOnTheirOwnWithoutTheGlobalLimit() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, false);
+
+        assertThat(keys.userKey(service, "user:alice")).isEqualTo("rate_limit:user:{user-service:user:alice}");
+    }
+
+    @Test
+    void sanitizesIdentifiers() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, true);
+
+        assertThat(keys.userKey(service, "key/1@example.com")).isEqualTo("rate_limit:user:{user-service}:key_1_example.com");
+    }
+
+    @Test
+    void identifiersCannotPickTheirOwnSlot() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, false);
+
+        assertThat(keys.userKey(service, "}{other")).isEqualTo("rate_limit:user:{user-service:__other}");
+    }
+
+    @Test
+    void repeatCallersGetTheCachedKey() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, true);
+
+        String first = keys.userKey(service, "user:alice");
+        assertThat(keys.userKey(service, "user:alice")).isSameAs(first);
+    }
+
+    @Test
+    void shardedGlobalLimitSpreadsOverSlotsWithEachUserOnItsShardsSlot() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, true);
+        ServiceConfig sharded = ServiceConfig.builder().name("user-service").globalLimit(100).globalShards(4).build();
+
+        List<String> globalKeys = keys.globalKeys(sharded);
+        assertThat(globalKeys).containsExactly("rate_limit:global:{user-service:0}", "rate_limit:global:{user-service:1}",
+                "rate_limit:global:{user-service:2}", "rate_limit:global:{user-service:3}");
+        assertThat(globalKeys.stream().map(SlotHash::getSlot).distinct()).hasSizeGreaterThan(1);
+
+        for (String identifier : List.of("user:alice", "user:bob", "ip:10.0.0.1", "key:abc")) {
+            int shard = keys.globalShard(sharded, identifier);
+            // The user and global buckets of one request always share a slot
+            assertThat(SlotHash.getSlot(keys.userKey(sharded, identifier)))
+                    .isEqualTo(SlotHash.getSlot(keys.globalKey(sharded, shard)));
+            assertThat(keys.globalShard(sharded, identifier)).isEqualTo(shard);
+        }
+    }
+
+    @Test
+    void globalLimitIsOneKeyUnlessTheServiceShardsIt() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, true);
+
+        assertThat(keys.globalKeys(service)).containsExactly("rate_limit:global:{user-service}");
+        assertThat(keys.globalShard(service, "user:alice")).isZero();
+        // Never more sub-buckets than tokens
+        ServiceConfig tiny = ServiceConfig.builder().name("tiny").globalLimit(2).globalShards(8).build();
+        assertThat(keys.globalKeys(tiny)).hasSize(2);
+        // Without the global limit there is nothing to shard
+        ServiceConfig sharded = ServiceConfig.builder().name("user-service").globalLimit(100).globalShards(4).build();
+        assertThat(new RateLimitKeyBuilder(100, false).globalKeys(sharded)).hasSize(1);
+    }
+
+    @Test
+    void keysArePerRoute() {
+        RateLimitKeyBuilder keys = new RateLimitKeyBuilder(100, true);
+        ServiceConfig other = ServiceConfig.builder().name("order-service").globalLimit(100).build();
+
+        assertThat(keys.userKey(other, "user:alice")).isEqualTo("rate_limit:user:{order-service}:user:alice");
+        assertThat(keys.userKey(service, "user:alice")).isEqualTo("rate_limit:user:{user-service}:user:alice");
+    }
+}